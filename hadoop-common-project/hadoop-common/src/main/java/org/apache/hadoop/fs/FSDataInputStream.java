@@ -25,6 +25,8 @@
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -38,7 +40,7 @@
 public class FSDataInputStream extends DataInputStream
     implements Seekable, PositionedReadable, 
       ByteBufferReadable, HasFileDescriptor, CanSetDropBehind, CanSetReadahead,
-      HasEnhancedByteBufferAccess, CanUnbuffer {
+      HasEnhancedByteBufferAccess, CanUnbuffer, VectoredReadable {
   /**
    * Map ByteBuffers that we have handed out to readers to ByteBufferPool 
    * objects
@@ -120,6 +122,33 @@ public void readFully(long position, byte[] buffer)
     ((PositionedReadable)in).readFully(position, buffer, 0, buffer.length);
   }
   
+  /**
+   * Read the given ranges of the stream. If the wrapped stream does not
+   * implement {@link VectoredReadable}, the ranges are read one after
+   * another with {@link #readFully(long, byte[], int, int)} before this
+   * call returns.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    if (in instanceof VectoredReadable) {
+      ((VectoredReadable)in).readVectored(ranges, allocate);
+      return;
+    }
+    for (FileRange range : ranges) {
+      try {
+        byte[] bytes = new byte[range.getLength()];
+        readFully(range.getOffset(), bytes, 0, bytes.length);
+        ByteBuffer buf = allocate.apply(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+        range.getData().complete(buf);
+      } catch (IOException e) {
+        range.getData().completeExceptionally(e);
+      }
+    }
+  }
+
   /**
    * Seek to the given position on an alternate copy of the data.
    *
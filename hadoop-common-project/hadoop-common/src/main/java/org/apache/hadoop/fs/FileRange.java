@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A range of bytes in a file, to be read by
+ * {@link VectoredReadable#readVectored}. The data is handed back through
+ * a future, which completes once the range has been read.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class FileRange {
+  private final long offset;
+  private final int length;
+  private final CompletableFuture<ByteBuffer> data =
+      new CompletableFuture<ByteBuffer>();
+
+  /**
+   * @param offset the position of the first byte of the range in the file
+   * @param length the number of bytes in the range
+   */
+  public FileRange(long offset, int length) {
+    Preconditions.checkArgument(offset >= 0, "Negative offset: %s", offset);
+    Preconditions.checkArgument(length >= 0, "Negative length: %s", length);
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /** @return the position of the first byte of the range in the file. */
+  public long getOffset() {
+    return offset;
+  }
+
+  /** @return the number of bytes in the range. */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return a future for the data of the range. The returned buffer is
+   *         positioned at the first byte of the range, and its remaining
+   *         bytes are the data of the range. The future fails if the range
+   *         could not be read.
+   */
+  public CompletableFuture<ByteBuffer> getData() {
+    return data;
+  }
+
+  @Override
+  public String toString() {
+    return "range[" + offset + "," + (offset + length) + ")";
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Implementers of this interface can read several ranges of a file with a
+ * single call, which lets them combine nearby ranges and read ranges in
+ * parallel, rather than issue one positional read per range.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public interface VectoredReadable {
+  /**
+   * Read the given ranges of the file. This does not change the current
+   * offset of the stream. The call may return before the data has been
+   * read; the data of each range is handed back through
+   * {@link FileRange#getData()}, which fails if the range cannot be read,
+   * for example because it extends past the end of the file.
+   * <p/>
+   * The ranges may be given in any order, but must not overlap.
+   *
+   * @param ranges the ranges to read
+   * @param allocate allocates a buffer of the given size to hold the data
+   *                 of a range
+   * @throws IOException if the read could not be started
+   * @throws IllegalArgumentException if ranges overlap
+   */
+  void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException;
+}
@@ -100,6 +100,31 @@ static void resetOutputBuffers(byte[][] buffers, int[] offsets,
     }
   }
 
+  /**
+   * XOR the remaining bytes of the input into the output, from their current
+   * positions. Eight bytes are done at a time, which is much cheaper than
+   * getting and putting each byte of direct buffers.
+   * @param input the buffer to read
+   * @param output the buffer to XOR into, with at least as many bytes
+   *               remaining as the input
+   */
+  static void xorBuffer(ByteBuffer input, ByteBuffer output) {
+    // Duplicates share a byte order, and leave the positions alone.
+    ByteBuffer in = input.duplicate();
+    ByteBuffer out = output.duplicate();
+    int iPos = in.position();
+    int oPos = out.position();
+    final int end = in.limit() - in.remaining() % 8;
+
+    for (; iPos < end; iPos += 8, oPos += 8) {
+      out.putLong(oPos, out.getLong(oPos) ^ in.getLong(iPos));
+    }
+
+    for (; iPos < in.limit(); iPos++, oPos++) {
+      out.put(oPos, (byte) (out.get(oPos) ^ in.get(iPos)));
+    }
+  }
+
   /**
    * Convert an array of this chunks to an array of ByteBuffers
    * @param chunks chunks to convertToByteArrayState into buffers
@@ -45,19 +45,13 @@ protected void doDecode(ByteBufferDecodingState decodingState) {
     int erasedIdx = decodingState.erasedIndexes[0];
 
     // Process the inputs.
-    int iIdx, oIdx;
     for (int i = 0; i < decodingState.inputs.length; i++) {
       // Skip the erased location.
       if (i == erasedIdx) {
         continue;
       }
 
-      for (iIdx = decodingState.inputs[i].position(), oIdx = output.position();
-           iIdx < decodingState.inputs[i].limit();
-           iIdx++, oIdx++) {
-        output.put(oIdx, (byte) (output.get(oIdx) ^
-            decodingState.inputs[i].get(iIdx)));
-      }
+      CoderUtil.xorBuffer(decodingState.inputs[i], output);
     }
   }
 
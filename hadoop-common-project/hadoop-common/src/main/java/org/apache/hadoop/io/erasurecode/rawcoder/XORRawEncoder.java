@@ -41,21 +41,9 @@ protected void doEncode(ByteBufferEncodingState encodingState) {
         encodingState.encodeLength);
     ByteBuffer output = encodingState.outputs[0];
 
-    // Get the first buffer's data.
-    int iIdx, oIdx;
-    for (iIdx = encodingState.inputs[0].position(), oIdx = output.position();
-         iIdx < encodingState.inputs[0].limit(); iIdx++, oIdx++) {
-      output.put(oIdx, encodingState.inputs[0].get(iIdx));
-    }
-
-    // XOR with everything else.
-    for (int i = 1; i < encodingState.inputs.length; i++) {
-      for (iIdx = encodingState.inputs[i].position(), oIdx = output.position();
-           iIdx < encodingState.inputs[i].limit();
-           iIdx++, oIdx++) {
-        output.put(oIdx, (byte) (output.get(oIdx) ^
-            encodingState.inputs[i].get(iIdx)));
-      }
+    // The output is reset, so XOR with every input, the first one included.
+    for (int i = 0; i < encodingState.inputs.length; i++) {
+      CoderUtil.xorBuffer(encodingState.inputs[i], output);
     }
   }
 
@@ -75,6 +75,14 @@ public static void genCauchyMatrix(byte[] a, int m, int k) {
     }
   }
 
+  /**
+   * The number of bytes of each input and output encoded at a time. The
+   * slices of all the inputs and outputs are meant to fit in the L1 cache
+   * together, so that each output slice stays there while every input is
+   * multiplied into it.
+   */
+  private static final int SLICE_SIZE = 2048;
+
   /**
    * Encode a group of inputs data and generate the outputs. It's also used for
    * decoding because, in this implementation, encoding and decoding are
@@ -88,44 +96,14 @@ public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
       int[] outputOffsets) {
     int numInputs = inputs.length;
     int numOutputs = outputs.length;
-    int l, i, j, iPos, oPos;
-    byte[] input, output;
-    byte s;
-    final int times = dataLen / 8;
-    final int extra = dataLen - dataLen % 8;
-    byte[] tableLine;
-
-    for (l = 0; l < numOutputs; l++) {
-      output = outputs[l];
-
-      for (j = 0; j < numInputs; j++) {
-        input = inputs[j];
-        iPos = inputOffsets[j];
-        oPos = outputOffsets[l];
-
-        s = gfTables[j * 32 + l * numInputs * 32 + 1];
-        tableLine = GF256.gfMulTab()[s & 0xff];
-
-        /**
-         * Purely for performance, assuming we can use 8 bytes in the SIMD
-         * instruction. Subject to be improved.
-         */
-        for (i = 0; i < times; i++, iPos += 8, oPos += 8) {
-          output[oPos + 0] ^= tableLine[0xff & input[iPos + 0]];
-          output[oPos + 1] ^= tableLine[0xff & input[iPos + 1]];
-          output[oPos + 2] ^= tableLine[0xff & input[iPos + 2]];
-          output[oPos + 3] ^= tableLine[0xff & input[iPos + 3]];
-          output[oPos + 4] ^= tableLine[0xff & input[iPos + 4]];
-          output[oPos + 5] ^= tableLine[0xff & input[iPos + 5]];
-          output[oPos + 6] ^= tableLine[0xff & input[iPos + 6]];
-          output[oPos + 7] ^= tableLine[0xff & input[iPos + 7]];
-        }
-
-        /**
-         * For the left bytes, do it one by one.
-         */
-        for (i = extra; i < dataLen; i++, iPos++, oPos++) {
-          output[oPos] ^= tableLine[0xff & input[iPos]];
+    byte[][][] tableLines = getTableLines(gfTables, numInputs, numOutputs);
+
+    for (int off = 0; off < dataLen; off += SLICE_SIZE) {
+      int len = Math.min(SLICE_SIZE, dataLen - off);
+      for (int l = 0; l < numOutputs; l++) {
+        for (int j = 0; j < numInputs; j++) {
+          mulAndAdd(tableLines[l][j], inputs[j], inputOffsets[j] + off,
+              outputs[l], outputOffsets[l] + off, len);
         }
       }
     }
@@ -133,55 +111,121 @@ public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
 
   /**
    * See above. Try to use the byte[] version when possible.
+   *
+   * Array backed buffers are encoded in place. The data of direct buffers is
+   * copied a slice at a time with bulk gets and puts, which are much cheaper
+   * than getting and putting each byte.
    */
   public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
       ByteBuffer[] outputs) {
     int numInputs = inputs.length;
     int numOutputs = outputs.length;
     int dataLen = inputs[0].remaining();
-    int l, i, j, iPos, oPos;
-    ByteBuffer input, output;
-    byte s;
-    final int times = dataLen / 8;
-    final int extra = dataLen - dataLen % 8;
-    byte[] tableLine;
-
-    for (l = 0; l < numOutputs; l++) {
-      output = outputs[l];
-
-      for (j = 0; j < numInputs; j++) {
-        input = inputs[j];
-        iPos = input.position();
-        oPos = output.position();
-
-        s = gfTables[j * 32 + l * numInputs * 32 + 1];
-        tableLine = GF256.gfMulTab()[s & 0xff];
-
-        for (i = 0; i < times; i++, iPos += 8, oPos += 8) {
-          output.put(oPos + 0, (byte) (output.get(oPos + 0) ^
-              tableLine[0xff & input.get(iPos + 0)]));
-          output.put(oPos + 1, (byte) (output.get(oPos + 1) ^
-              tableLine[0xff & input.get(iPos + 1)]));
-          output.put(oPos + 2, (byte) (output.get(oPos + 2) ^
-              tableLine[0xff & input.get(iPos + 2)]));
-          output.put(oPos + 3, (byte) (output.get(oPos + 3) ^
-              tableLine[0xff & input.get(iPos + 3)]));
-          output.put(oPos + 4, (byte) (output.get(oPos + 4) ^
-              tableLine[0xff & input.get(iPos + 4)]));
-          output.put(oPos + 5, (byte) (output.get(oPos + 5) ^
-              tableLine[0xff & input.get(iPos + 5)]));
-          output.put(oPos + 6, (byte) (output.get(oPos + 6) ^
-              tableLine[0xff & input.get(iPos + 6)]));
-          output.put(oPos + 7, (byte) (output.get(oPos + 7) ^
-              tableLine[0xff & input.get(iPos + 7)]));
-        }
 
-        for (i = extra; i < dataLen; i++, iPos++, oPos++) {
-          output.put(oPos, (byte) (output.get(oPos) ^
-              tableLine[0xff & input.get(iPos)]));
+    if (hasArrays(inputs) && hasArrays(outputs)) {
+      byte[][] inputArrays = new byte[numInputs][];
+      int[] inputOffsets = new int[numInputs];
+      for (int j = 0; j < numInputs; j++) {
+        inputArrays[j] = inputs[j].array();
+        inputOffsets[j] = inputs[j].arrayOffset() + inputs[j].position();
+      }
+      byte[][] outputArrays = new byte[numOutputs][];
+      int[] outputOffsets = new int[numOutputs];
+      for (int l = 0; l < numOutputs; l++) {
+        outputArrays[l] = outputs[l].array();
+        outputOffsets[l] = outputs[l].arrayOffset() + outputs[l].position();
+      }
+      encodeData(gfTables, dataLen, inputArrays, inputOffsets, outputArrays,
+          outputOffsets);
+      return;
+    }
+
+    byte[][][] tableLines = getTableLines(gfTables, numInputs, numOutputs);
+    int sliceSize = Math.min(SLICE_SIZE, dataLen);
+    // Duplicates, so that the positions of the buffers are left alone.
+    ByteBuffer[] inputReaders = new ByteBuffer[numInputs];
+    byte[][] inputSlices = new byte[numInputs][sliceSize];
+    for (int j = 0; j < numInputs; j++) {
+      inputReaders[j] = inputs[j].duplicate();
+    }
+    ByteBuffer[] outputReaders = new ByteBuffer[numOutputs];
+    ByteBuffer[] outputWriters = new ByteBuffer[numOutputs];
+    byte[][] outputSlices = new byte[numOutputs][sliceSize];
+    for (int l = 0; l < numOutputs; l++) {
+      outputReaders[l] = outputs[l].duplicate();
+      outputWriters[l] = outputs[l].duplicate();
+    }
+
+    for (int off = 0; off < dataLen; off += sliceSize) {
+      int len = Math.min(sliceSize, dataLen - off);
+      for (int j = 0; j < numInputs; j++) {
+        inputReaders[j].get(inputSlices[j], 0, len);
+      }
+      for (int l = 0; l < numOutputs; l++) {
+        byte[] outputSlice = outputSlices[l];
+        outputReaders[l].get(outputSlice, 0, len);
+        for (int j = 0; j < numInputs; j++) {
+          mulAndAdd(tableLines[l][j], inputSlices[j], 0, outputSlice, 0, len);
         }
+        outputWriters[l].put(outputSlice, 0, len);
+      }
+    }
+  }
+
+  /**
+   * @return the lines of the multiplication table for the coefficient of
+   *         each output and input, indexed by output and then input.
+   */
+  private static byte[][][] getTableLines(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    byte[][][] tableLines = new byte[numOutputs][numInputs][];
+    for (int l = 0; l < numOutputs; l++) {
+      for (int j = 0; j < numInputs; j++) {
+        byte s = gfTables[j * 32 + l * numInputs * 32 + 1];
+        tableLines[l][j] = GF256.gfMulTab()[s & 0xff];
+      }
+    }
+    return tableLines;
+  }
+
+  /**
+   * Multiply len bytes of an input by a coefficient, given by its line of
+   * the multiplication table, and add them to an output.
+   */
+  private static void mulAndAdd(byte[] tableLine, byte[] input, int iPos,
+      byte[] output, int oPos, int len) {
+    final int end = iPos + len - len % 8;
+
+    /**
+     * Purely for performance, assuming we can use 8 bytes in the SIMD
+     * instruction. Subject to be improved.
+     */
+    for (; iPos < end; iPos += 8, oPos += 8) {
+      output[oPos + 0] ^= tableLine[0xff & input[iPos + 0]];
+      output[oPos + 1] ^= tableLine[0xff & input[iPos + 1]];
+      output[oPos + 2] ^= tableLine[0xff & input[iPos + 2]];
+      output[oPos + 3] ^= tableLine[0xff & input[iPos + 3]];
+      output[oPos + 4] ^= tableLine[0xff & input[iPos + 4]];
+      output[oPos + 5] ^= tableLine[0xff & input[iPos + 5]];
+      output[oPos + 6] ^= tableLine[0xff & input[iPos + 6]];
+      output[oPos + 7] ^= tableLine[0xff & input[iPos + 7]];
+    }
+
+    /**
+     * For the left bytes, do it one by one.
+     */
+    for (; iPos < end + len % 8; iPos++, oPos++) {
+      output[oPos] ^= tableLine[0xff & input[iPos]];
+    }
+  }
+
+  private static boolean hasArrays(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.hasArray()) {
+        return false;
       }
     }
+    return true;
   }
 
 }
@@ -18,6 +18,7 @@
 package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.junit.Before;
+import org.junit.Test;
 
 /**
  * Test the new raw Reed-solomon coder implemented in Java.
@@ -30,4 +31,12 @@ public void setup() {
     this.decoderClass = RSRawDecoder.class;
     setAllowDump(false);
   }
+
+  @Test
+  public void testCodingLargeChunks() {
+    // Spans several slices encoded at a time, with a partial last one.
+    baseChunkSize = 5 * 1024 + 3;
+    prepare(null, 6, 3, new int[] {0, 4}, new int[] {1});
+    testCodingDoMixAndTwice();
+  }
 }
@@ -18,6 +18,7 @@
 package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.junit.Before;
+import org.junit.Test;
 
 /**
  * Test pure Java XOR encoding and decoding.
@@ -29,4 +30,12 @@ public void setup() {
     this.encoderClass = XORRawEncoder.class;
     this.decoderClass = XORRawDecoder.class;
   }
+
+  @Test
+  public void testCodingLargeChunks() {
+    // Longer than the empty chunk, and not a multiple of 8 bytes.
+    baseChunkSize = 5 * 1024 + 3;
+    prepare(null, 10, 1, new int[] {5}, new int[0]);
+    testCodingDoMixAndTwice();
+  }
 }
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Asynchronous versions of the data path calls of
+ * {@link DistributedFileSystem}. Each call returns at once with a
+ * {@link CompletableFuture}, and the work is done on a small thread pool of
+ * the client, sized by
+ * {@link org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.AsyncIo}.
+ * This lets a caller keep many streams busy without dedicating a thread
+ * of its own to each of them. The streams still use their own threads to
+ * talk to the DataNodes, such as the DataStreamer of an output stream.
+ * <p/>
+ * Calls on the same stream run one at a time, in the order they were made,
+ * so that, for example, a close made after an hflush follows it. A stream
+ * which stalls, for example in pipeline recovery, thus takes up only one
+ * thread of the pool.
+ * <p/>
+ * At most dfs.client.async.max-pending-calls calls may be queued or running
+ * at once. Calls beyond that fail at once with a
+ * {@link RejectedExecutionException}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class AsyncDistributedFileSystem {
+  private final DistributedFileSystem dfs;
+  private final int maxPendingCalls;
+  private final AtomicInteger pendingCalls = new AtomicInteger(0);
+  /** The executors of the streams calls have been made on. */
+  private final Map<Object, StreamExecutor> streamExecutors =
+      new WeakHashMap<>();
+
+  AsyncDistributedFileSystem(DistributedFileSystem dfs) {
+    this.dfs = dfs;
+    this.maxPendingCalls =
+        dfs.getClient().getConf().getAsyncIoMaxPendingCalls();
+  }
+
+  /**
+   * Open a file for reading.
+   * @see DistributedFileSystem#open(Path)
+   */
+  public CompletableFuture<FSDataInputStream> open(final Path f) {
+    return submit(null, new Callable<FSDataInputStream>() {
+      @Override
+      public FSDataInputStream call() throws IOException {
+        return dfs.open(f);
+      }
+    });
+  }
+
+  /**
+   * Read up to length bytes from the given position of a stream.
+   * @return a future for the number of bytes read, or -1 at the end of the
+   *         file
+   * @see FSDataInputStream#read(long, byte[], int, int)
+   */
+  public CompletableFuture<Integer> pread(final FSDataInputStream in,
+      final long position, final byte[] buffer, final int offset,
+      final int length) {
+    return submit(in, new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return in.read(position, buffer, offset, length);
+      }
+    });
+  }
+
+  /**
+   * Open a file for appending.
+   * @see DistributedFileSystem#append(Path)
+   */
+  public CompletableFuture<FSDataOutputStream> append(final Path f) {
+    return submit(null, new Callable<FSDataOutputStream>() {
+      @Override
+      public FSDataOutputStream call() throws IOException {
+        return dfs.append(f);
+      }
+    });
+  }
+
+  /**
+   * Flush the data written to a stream out to the DataNodes.
+   * @see FSDataOutputStream#hflush()
+   */
+  public CompletableFuture<Void> hflush(final FSDataOutputStream out) {
+    return submit(out, new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        out.hflush();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Close a stream opened through this or the synchronous API.
+   */
+  public CompletableFuture<Void> close(final Closeable stream) {
+    return submit(stream, new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        stream.close();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Run a call on the thread pool of the client.
+   * @param stream the stream the call is made on, or null. The call runs
+   *               after the earlier calls made on the same stream.
+   */
+  private <T> CompletableFuture<T> submit(Object stream, Callable<T> call) {
+    AsyncCall<T> asyncCall = new AsyncCall<>(call);
+    if (pendingCalls.incrementAndGet() > maxPendingCalls) {
+      asyncCall.fail(new RejectedExecutionException("Too many pending " +
+          "asynchronous calls, the maximum is " + maxPendingCalls));
+      return asyncCall.result;
+    }
+    try {
+      Executor pool = dfs.getClient().getAsyncIoThreadPool();
+      if (stream == null) {
+        pool.execute(asyncCall);
+      } else {
+        StreamExecutor executor;
+        synchronized (streamExecutors) {
+          executor = streamExecutors.get(stream);
+          if (executor == null) {
+            executor = new StreamExecutor();
+            streamExecutors.put(stream, executor);
+          }
+        }
+        executor.execute(asyncCall, pool);
+      }
+    } catch (IOException | RejectedExecutionException e) {
+      asyncCall.fail(e);
+    }
+    return asyncCall.result;
+  }
+
+  /** A call, and the future it completes. */
+  private final class AsyncCall<T> implements Runnable {
+    private final Callable<T> call;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    AsyncCall(Callable<T> call) {
+      this.call = call;
+    }
+
+    @Override
+    public void run() {
+      try {
+        result.complete(call.call());
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      } finally {
+        pendingCalls.decrementAndGet();
+      }
+    }
+
+    void fail(Throwable t) {
+      result.completeExceptionally(t);
+      pendingCalls.decrementAndGet();
+    }
+  }
+
+  /**
+   * Runs the calls made on one stream on the pool one at a time, in the
+   * order they were made.
+   */
+  private static final class StreamExecutor {
+    private final Queue<AsyncCall<?>> calls = new ArrayDeque<>();
+    private boolean running = false;
+
+    synchronized void execute(AsyncCall<?> call, Executor pool) {
+      calls.add(call);
+      if (!running) {
+        running = true;
+        runNext(pool);
+      }
+    }
+
+    private synchronized void runNext(final Executor pool) {
+      final AsyncCall<?> call = calls.poll();
+      if (call == null) {
+        running = false;
+        return;
+      }
+      try {
+        pool.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              call.run();
+            } finally {
+              runNext(pool);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The client has been closed.
+        call.fail(e);
+        for (AsyncCall<?> queued : calls) {
+          queued.fail(e);
+        }
+        calls.clear();
+        running = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A bounded, time limited cache of the file status and block locations of
+ * files, kept by a {@link DFSClient} to save NameNode round trips when the
+ * same files are opened over and over.
+ *
+ * Only closed regular files are cached. A file status is cached only while
+ * the block locations of the file are, with the same length, since the
+ * status itself does not tell whether the file is still being written.
+ * Entries are dropped when they expire, and when the path or one of
+ * its ancestors is changed through the owning client. Changes made by other
+ * clients are not seen until the entry expires.
+ *
+ * The cached paths are also kept sorted, so that the entries below a
+ * changed directory are found without looking at the others. Changes to the
+ * cache are made under the lock of the cache, lookups are not.
+ */
+@InterfaceAudience.Private
+class ClientMetadataCache {
+  private final Cache<String, HdfsFileStatus> fileStatuses;
+  private final Cache<String, LocatedBlocks> blockLocations;
+  /** The paths with an entry in either cache. */
+  private final NavigableSet<String> paths = new TreeSet<>();
+  private volatile DFSOpsCountStatistics opsStatistics;
+
+  ClientMetadataCache(long expiryMs, int maxEntries) {
+    fileStatuses = newCache(expiryMs, maxEntries);
+    blockLocations = newCache(expiryMs, maxEntries);
+  }
+
+  private <V> Cache<String, V> newCache(long expiryMs, int maxEntries) {
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(expiryMs, TimeUnit.MILLISECONDS)
+        .maximumSize(maxEntries)
+        .<String, V>removalListener(new RemovalListener<String, V>() {
+          @Override
+          public void onRemoval(RemovalNotification<String, V> removal) {
+            if (removal.getCause() != RemovalCause.REPLACED) {
+              removePath(removal.getKey());
+            }
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Set the statistics which cache hits and misses are counted in.
+   */
+  void setOpsStatistics(DFSOpsCountStatistics opsStatistics) {
+    this.opsStatistics = opsStatistics;
+  }
+
+  /**
+   * @return the cached status of src, or null if it is not cached.
+   */
+  HdfsFileStatus getFileStatus(String src) {
+    return countLookup(fileStatuses.getIfPresent(src));
+  }
+
+  /**
+   * Cache the status of src, if the file is known to be closed with the same
+   * length.
+   */
+  synchronized void putFileStatus(String src, HdfsFileStatus status) {
+    if (status == null || status.isDir() || status.isSymlink()) {
+      return;
+    }
+    LocatedBlocks blocks = blockLocations.getIfPresent(src);
+    if (blocks != null && blocks.getFileLength() == status.getLen()) {
+      fileStatuses.put(src, status);
+      paths.add(src);
+    } else {
+      fileStatuses.invalidate(src);
+    }
+  }
+
+  /**
+   * @return a copy of the cached block locations of src, starting at the
+   *         beginning of the file, or null if they are not cached.
+   */
+  LocatedBlocks getBlockLocations(String src) {
+    LocatedBlocks blocks = countLookup(blockLocations.getIfPresent(src));
+    // Input streams insert the blocks they fetch later on into the list.
+    return blocks == null ? null : copy(blocks);
+  }
+
+  /**
+   * Cache block locations starting at the beginning of src, if the file is
+   * closed.
+   */
+  synchronized void putBlockLocations(String src, LocatedBlocks blocks) {
+    if (blocks != null && !blocks.isUnderConstruction() &&
+        blocks.isLastBlockComplete()) {
+      blockLocations.put(src, copy(blocks));
+      paths.add(src);
+    } else {
+      blockLocations.invalidate(src);
+      fileStatuses.invalidate(src);
+    }
+  }
+
+  /**
+   * Drop the entries of path and everything below it.
+   */
+  synchronized void invalidate(String path) {
+    if (path == null) {
+      return;
+    }
+    String prefix = path.endsWith(Path.SEPARATOR) ?
+        path : path + Path.SEPARATOR;
+    // The paths starting with the prefix sort before the prefix with its
+    // trailing separator replaced by the next character.
+    String end = prefix.substring(0, prefix.length() - 1) +
+        (char) (Path.SEPARATOR_CHAR + 1);
+    List<String> invalidated =
+        new ArrayList<>(paths.subSet(prefix, true, end, false));
+    invalidated.add(path);
+    fileStatuses.invalidateAll(invalidated);
+    blockLocations.invalidateAll(invalidated);
+    paths.removeAll(invalidated);
+  }
+
+  synchronized void invalidateAll() {
+    fileStatuses.invalidateAll();
+    blockLocations.invalidateAll();
+    paths.clear();
+  }
+
+  @VisibleForTesting
+  long size() {
+    return fileStatuses.size() + blockLocations.size();
+  }
+
+  @VisibleForTesting
+  synchronized int numPaths() {
+    return paths.size();
+  }
+
+  /**
+   * Forget a path once neither cache has an entry for it.
+   */
+  private synchronized void removePath(String path) {
+    if (fileStatuses.asMap().get(path) == null &&
+        blockLocations.asMap().get(path) == null) {
+      paths.remove(path);
+    }
+  }
+
+  private <T> T countLookup(T value) {
+    DFSOpsCountStatistics stats = opsStatistics;
+    if (stats != null) {
+      stats.incrementOpCounter(value != null ?
+          OpType.METADATA_CACHE_HIT : OpType.METADATA_CACHE_MISS);
+    }
+    return value;
+  }
+
+  private static LocatedBlocks copy(LocatedBlocks blocks) {
+    return new LocatedBlocks(blocks.getFileLength(),
+        blocks.isUnderConstruction(),
+        new ArrayList<>(blocks.getLocatedBlocks()),
+        blocks.getLastLocatedBlock(), blocks.isLastBlockComplete(),
+        blocks.getFileEncryptionInfo(), blocks.getErasureCodingPolicy());
+  }
+}
@@ -44,6 +44,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -222,11 +223,16 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
   private final CachingStrategy defaultReadCachingStrategy;
   private final CachingStrategy defaultWriteCachingStrategy;
   private final ClientContext clientContext;
+  private final ClientMetadataCache metadataCache;
+  private final DatanodeReadLatencyTracker readLatencyTracker;
+  /** Runs the calls of {@link AsyncDistributedFileSystem}; created lazily. */
+  private volatile ThreadPoolExecutor asyncIoThreadPool;
 
   private static final DFSHedgedReadMetrics HEDGED_READ_METRIC =
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
   private final int smallBufferSize;
 
   public DfsClientConf getConf() {
@@ -359,6 +365,16 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
     this.clientContext = ClientContext.get(
         conf.get(DFS_CLIENT_CONTEXT, DFS_CLIENT_CONTEXT_DEFAULT),
         dfsClientConf, conf);
+    this.metadataCache = dfsClientConf.getMetadataCacheExpiryMs() > 0 ?
+        new ClientMetadataCache(dfsClientConf.getMetadataCacheExpiryMs(),
+            dfsClientConf.getMetadataCacheMaxEntries()) : null;
+    this.readLatencyTracker =
+        dfsClientConf.getHedgedReadAdaptivePercentile() > 0 ||
+        dfsClientConf.getHedgedReadSlowNodeFactor() > 0 ?
+            new DatanodeReadLatencyTracker(
+                dfsClientConf.getHedgedReadAdaptivePercentile(),
+                dfsClientConf.getHedgedReadSlowNodeFactor(),
+                dfsClientConf.getHedgedReadSlowNodeExpiryMs()) : null;
 
     if (dfsClientConf.getHedgedReadThreadpoolSize() > 0) {
       this.initThreadsNumForHedgedReads(dfsClientConf.
@@ -367,6 +383,8 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
 
     this.initThreadsNumForStripedReads(dfsClientConf.
         getStripedReadThreadpoolSize());
+    this.initThreadsNumForVectoredReads(dfsClientConf.
+        getVectoredReadThreadpoolSize());
     this.saslClient = new SaslDataTransferClient(
         conf, DataTransferSaslUtil.getSaslPropertiesResolver(conf),
         TrustedChannelResolver.getInstance(conf), nnFallbackToSimpleAuth);
@@ -468,6 +486,32 @@ void endFileLease(final long inodeId) {
     getLeaseRenewer().closeFile(inodeId, this);
   }
 
+  /**
+   * Drop the cached metadata of the given paths and everything below them,
+   * after they have been changed through this client.
+   */
+  void invalidateCachedMetadata(String... paths) {
+    if (metadataCache != null && paths != null) {
+      for (String path : paths) {
+        metadataCache.invalidate(path);
+      }
+    }
+  }
+
+  /**
+   * Set the statistics which metadata cache hits and misses are counted in.
+   */
+  void setOpsStatistics(DFSOpsCountStatistics opsStatistics) {
+    if (metadataCache != null) {
+      metadataCache.setOpsStatistics(opsStatistics);
+    }
+  }
+
+  @VisibleForTesting
+  ClientMetadataCache getMetadataCache() {
+    return metadataCache;
+  }
+
 
   /** Put a file. Only called from LeaseRenewer, where proper locking is
    *  enforced to consistently update its local dfsclients array and
@@ -593,6 +637,9 @@ public synchronized void close() throws IOException {
     if(clientRunning) {
       closeAllFilesBeingWritten(false);
       clientRunning = false;
+      if (asyncIoThreadPool != null) {
+        asyncIoThreadPool.shutdown();
+      }
       getLeaseRenewer().closeClient(this);
       // close connections to the namenode
       closeConnectionToNamenode();
@@ -808,7 +855,12 @@ public LocatedBlocks getLocatedBlocks(String src, long start)
   public LocatedBlocks getLocatedBlocks(String src, long start, long length)
       throws IOException {
     try (TraceScope ignored = newPathTraceScope("getBlockLocations", src)) {
-      return callGetBlockLocations(namenode, src, start, length);
+      LocatedBlocks blocks = callGetBlockLocations(namenode, src, start,
+          length);
+      if (metadataCache != null && start == 0) {
+        metadataCache.putBlockLocations(src, blocks);
+      }
+      return blocks;
     }
   }
 
@@ -1029,7 +1081,13 @@ public DFSInputStream open(String src, int buffersize, boolean verifyChecksum)
     checkOpen();
     //    Get block info from namenode
     try (TraceScope ignored = newPathTraceScope("newDFSInputStream", src)) {
-      LocatedBlocks locatedBlocks = getLocatedBlocks(src, 0);
+      LocatedBlocks locatedBlocks = null;
+      if (metadataCache != null) {
+        locatedBlocks = metadataCache.getBlockLocations(src);
+      }
+      if (locatedBlocks == null) {
+        locatedBlocks = getLocatedBlocks(src, 0);
+      }
       if (locatedBlocks != null) {
         ErasureCodingPolicy ecPolicy = locatedBlocks.getErasureCodingPolicy();
         if (ecPolicy != null) {
@@ -1192,6 +1250,7 @@ public DFSOutputStream create(String src, FsPermission permission,
         src, masked, flag, createParent, replication, blockSize, progress,
         dfsClientConf.createChecksum(checksumOpt),
         getFavoredNodesStr(favoredNodes));
+    invalidateCachedMetadata(src);
     beginFileLease(result.getFileId(), result);
     return result;
   }
@@ -1245,6 +1304,7 @@ public DFSOutputStream primitiveCreate(String src, FsPermission absPermission,
       DataChecksum checksum = dfsClientConf.createChecksum(checksumOpt);
       result = DFSOutputStream.newStreamForCreate(this, src, absPermission,
           flag, createParent, replication, blockSize, progress, checksum, null);
+      invalidateCachedMetadata(src);
     }
     beginFileLease(result.getFileId(), result);
     return result;
@@ -1271,6 +1331,8 @@ public void createSymlink(String target, String link, boolean createParent)
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(link);
     }
   }
 
@@ -1340,6 +1402,8 @@ private DFSOutputStream callAppend(String src, EnumSet<CreateFlag> flag,
           UnsupportedOperationException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1415,6 +1479,8 @@ public boolean setReplication(String src, short replication)
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1435,6 +1501,8 @@ public void setStoragePolicy(String src, String policyName)
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1453,6 +1521,8 @@ public void unsetStoragePolicy(String src) throws IOException {
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1499,6 +1569,8 @@ public boolean rename(String src, String dst) throws IOException {
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src, dst);
     }
   }
 
@@ -1514,6 +1586,9 @@ public void concat(String trg, String [] srcs) throws IOException {
       throw re.unwrapRemoteException(AccessControlException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(trg);
+      invalidateCachedMetadata(srcs);
     }
   }
   /**
@@ -1536,6 +1611,8 @@ public void rename(String src, String dst, Options.Rename... options)
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src, dst);
     }
   }
 
@@ -1554,6 +1631,8 @@ public boolean truncate(String src, long newLength) throws IOException {
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1584,6 +1663,8 @@ public boolean delete(String src, boolean recursive) throws IOException {
           SafeModeException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1634,8 +1715,18 @@ public DirectoryListing listPaths(String src,  byte[] startAfter,
    */
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     checkOpen();
+    if (metadataCache != null) {
+      HdfsFileStatus status = metadataCache.getFileStatus(src);
+      if (status != null) {
+        return status;
+      }
+    }
     try (TraceScope ignored = newPathTraceScope("getFileInfo", src)) {
-      return namenode.getFileInfo(src);
+      HdfsFileStatus status = namenode.getFileInfo(src);
+      if (metadataCache != null) {
+        metadataCache.putFileStatus(src, status);
+      }
+      return status;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class,
@@ -1820,6 +1911,8 @@ public void setPermission(String src, FsPermission permission)
           SafeModeException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -1842,6 +1935,8 @@ public void setOwner(String src, String username, String groupname)
           SafeModeException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2445,6 +2540,8 @@ public void setTimes(String src, long mtime, long atime) throws IOException {
           FileNotFoundException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2506,6 +2603,8 @@ public void modifyAclEntries(String src, List<AclEntry> aclSpec)
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2522,6 +2621,8 @@ public void removeAclEntries(String src, List<AclEntry> aclSpec)
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2537,6 +2638,8 @@ public void removeDefaultAcl(String src) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2552,6 +2655,8 @@ public void removeAcl(String src) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2567,6 +2672,8 @@ public void setAcl(String src, List<AclEntry> aclSpec) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCachedMetadata(src);
     }
   }
 
@@ -2816,6 +2923,61 @@ private void initThreadsNumForStripedReads(int numThreads) {
     }
   }
 
+  /**
+   * Create thread pool for reading the ranges of vectored reads in
+   * parallel, VECTORED_READ_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for vectored reads thread pool.
+   * If zero, ranges are read in the calling thread.
+   */
+  private void initThreadsNumForVectoredReads(int numThreads) {
+    if (numThreads <= 0 || VECTORED_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (VECTORED_READ_THREAD_POOL == null) {
+        VECTORED_READ_THREAD_POOL = DFSUtilClient.getThreadPoolExecutor(1,
+            numThreads, 60, "VectoredRead-", true);
+        VECTORED_READ_THREAD_POOL.allowCoreThreadTimeOut(true);
+      }
+    }
+  }
+
+  /**
+   * @return the thread pool the calls of {@link AsyncDistributedFileSystem}
+   * made through this client are run in, creating it if it does not already
+   * exist. Calls are queued while all of its threads are busy. The pool is
+   * shut down when the client is closed.
+   */
+  ThreadPoolExecutor getAsyncIoThreadPool() throws IOException {
+    if (asyncIoThreadPool != null) {
+      return asyncIoThreadPool;
+    }
+    synchronized (this) {
+      checkOpen();
+      if (asyncIoThreadPool == null) {
+        final int numThreads = dfsClientConf.getAsyncIoThreadpoolSize();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads,
+            numThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new Daemon.DaemonFactory() {
+              private final AtomicInteger threadIndex = new AtomicInteger(0);
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread t = super.newThread(r);
+                t.setName("AsyncIo-" + clientName + "-" +
+                    threadIndex.getAndIncrement());
+                return t;
+              }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        LOG.debug("Using asynchronous data path calls; pool threads={}",
+            numThreads);
+        asyncIoThreadPool = pool;
+      }
+    }
+    return asyncIoThreadPool;
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
@@ -2824,6 +2986,15 @@ ThreadPoolExecutor getStripedReadsThreadPool() {
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * @return the pool vectored reads are done in, or null if they are done
+   *         in the calling thread.
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    return dfsClientConf.getVectoredReadThreadpoolSize() > 0 ?
+        VECTORED_READ_THREAD_POOL : null;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -2833,6 +3004,14 @@ DFSHedgedReadMetrics getHedgedReadMetrics() {
     return HEDGED_READ_METRIC;
   }
 
+  /**
+   * @return the latency of recent reads from DataNodes, or null if it is not
+   *         tracked.
+   */
+  DatanodeReadLatencyTracker getReadLatencyTracker() {
+    return readLatencyTracker;
+  }
+
   public KeyProvider getKeyProvider() {
     return clientContext.getKeyProviderCache().get(conf);
   }
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs;
 
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -57,4 +58,6 @@ public void startFetchFromDatanode() {}
   public void fetchFromDatanodeException() {}
 
   public void readFromDatanodeDelay() {}
+
+  public void readStripeAhead() throws IOException {}
 }
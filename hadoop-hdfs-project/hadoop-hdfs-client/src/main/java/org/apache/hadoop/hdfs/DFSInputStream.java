@@ -27,6 +27,8 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -42,7 +44,9 @@
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -54,9 +58,11 @@
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.fs.VectoredReadable;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -81,6 +87,7 @@
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.IdentityHashStore;
 import org.apache.hadoop.util.StopWatch;
+import org.apache.hadoop.util.Time;
 import org.apache.htrace.core.SpanId;
 import org.apache.htrace.core.TraceScope;
 import org.apache.htrace.core.Tracer;
@@ -96,7 +103,7 @@
 @InterfaceAudience.Private
 public class DFSInputStream extends FSInputStream
     implements ByteBufferReadable, CanSetDropBehind, CanSetReadahead,
-    HasEnhancedByteBufferAccess, CanUnbuffer {
+    HasEnhancedByteBufferAccess, CanUnbuffer, VectoredReadable {
   @VisibleForTesting
   public static boolean tcpReadsDisabledForTesting = false;
   private long hedgedReadOpsLoopNumForTesting = 0;
@@ -901,19 +908,32 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
       Collection<DatanodeInfo> ignoredNodes) {
     DatanodeInfo[] nodes = block.getLocations();
     StorageType[] storageTypes = block.getStorageTypes();
+    DatanodeReadLatencyTracker latencyTracker =
+        dfsClient.getReadLatencyTracker();
     DatanodeInfo chosenNode = null;
     StorageType storageType = null;
     if (nodes != null) {
+      int chosenIndex = -1;
       for (int i = 0; i < nodes.length; i++) {
         if (!deadNodes.containsKey(nodes[i])
             && (ignoredNodes == null || !ignoredNodes.contains(nodes[i]))) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
+          if (chosenIndex < 0) {
+            chosenIndex = i;
+          }
+          // Pass over nodes which have recently been slow, unless there is
+          // no other choice.
+          if (latencyTracker == null || !latencyTracker.isSlow(nodes[i])) {
+            chosenIndex = i;
+            break;
           }
-          break;
+        }
+      }
+      if (chosenIndex >= 0) {
+        chosenNode = nodes[chosenIndex];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && chosenIndex < storageTypes.length) {
+          storageType = storageTypes[chosenIndex];
         }
       }
     }
@@ -1027,6 +1047,7 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, LocatedBlock block,
       // start of the loop.
       block = refreshLocatedBlock(block);
       BlockReader reader = null;
+      long readStart = Time.monotonicNow();
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
@@ -1055,6 +1076,12 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, LocatedBlock block,
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        DatanodeReadLatencyTracker latencyTracker =
+            dfsClient.getReadLatencyTracker();
+        if (latencyTracker != null) {
+          latencyTracker.addSample(datanode.info, len,
+              Time.monotonicNow() - readStart);
+        }
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1123,6 +1150,12 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
     ByteBuffer bb;
     int len = (int) (end - start + 1);
     int hedgedReadId = 0;
+    DatanodeReadLatencyTracker latencyTracker =
+        dfsClient.getReadLatencyTracker();
+    long hedgedReadThresholdMillis = latencyTracker == null ?
+        conf.getHedgedReadThresholdMillis() :
+        latencyTracker.getHedgedReadThresholdMillis(
+            conf.getHedgedReadThresholdMillis(), len);
     block = refreshLocatedBlock(block);
     while (true) {
       // see HDFS-6591, this metric is used to verify/catch unnecessary loops
@@ -1142,7 +1175,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
         futures.add(firstRequest);
         try {
           Future<ByteBuffer> future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+              hedgedReadThresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1150,7 +1183,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", hedgedReadThresholdMillis, chosenNode.info);
           // Ignore this node on next go around.
           ignored.add(chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
@@ -1298,6 +1331,134 @@ public int read(long position, byte[] buffer, int offset, int length)
     }
   }
 
+  /**
+   * Read the given ranges of the file. Ranges which are close to each other
+   * are merged, so that they are read with a single positional read, and
+   * the merged ranges are read in parallel on the vectored read thread pool
+   * of the client.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      final IntFunction<ByteBuffer> allocate) throws IOException {
+    dfsClient.checkOpen();
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    List<FileRange> sorted = new ArrayList<>(ranges);
+    Collections.sort(sorted, new Comparator<FileRange>() {
+      @Override
+      public int compare(FileRange a, FileRange b) {
+        return Long.compare(a.getOffset(), b.getOffset());
+      }
+    });
+    for (int i = 1; i < sorted.size(); i++) {
+      FileRange prev = sorted.get(i - 1);
+      if (prev.getOffset() + prev.getLength() > sorted.get(i).getOffset()) {
+        throw new IllegalArgumentException("Overlapping ranges " + prev +
+            " and " + sorted.get(i));
+      }
+    }
+
+    List<List<FileRange>> merged = mergeRanges(sorted,
+        dfsClient.getConf().getVectoredReadMaxMergeGap(),
+        dfsClient.getConf().getVectoredReadMaxMergedSize());
+    ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    for (final List<FileRange> group : merged) {
+      Runnable readGroup = new Runnable() {
+        @Override
+        public void run() {
+          readMergedRanges(group, allocate);
+        }
+      };
+      if (pool == null || merged.size() == 1) {
+        readGroup.run();
+      } else {
+        pool.execute(readGroup);
+      }
+    }
+  }
+
+  /**
+   * Group sorted, non-overlapping ranges, so that the ranges of a group are
+   * at most maxGap bytes apart, and together span at most maxMergedSize
+   * bytes unless the group holds a single range.
+   */
+  @VisibleForTesting
+  static List<List<FileRange>> mergeRanges(List<FileRange> sorted,
+      int maxGap, int maxMergedSize) {
+    List<List<FileRange>> merged = new ArrayList<>();
+    List<FileRange> group = null;
+    long groupStart = 0;
+    long groupEnd = 0;
+    for (FileRange range : sorted) {
+      long end = range.getOffset() + range.getLength();
+      if (group != null && range.getOffset() - groupEnd <= maxGap &&
+          end - groupStart <= maxMergedSize) {
+        group.add(range);
+      } else {
+        group = new ArrayList<>();
+        group.add(range);
+        merged.add(group);
+        groupStart = range.getOffset();
+      }
+      groupEnd = end;
+    }
+    return merged;
+  }
+
+  /**
+   * Read a group of ranges with a single positional read, and hand each
+   * range its part of the data. If the end of the file is reached, the
+   * ranges read fully are still completed, and only those past the end of
+   * the file fail.
+   */
+  private void readMergedRanges(List<FileRange> group,
+      IntFunction<ByteBuffer> allocate) {
+    FileRange first = group.get(0);
+    FileRange last = group.get(group.size() - 1);
+    long start = first.getOffset();
+    int length = (int) (last.getOffset() + last.getLength() - start);
+    try {
+      // A lone range is read straight into the caller's buffer.
+      ByteBuffer buf = group.size() == 1 ?
+          allocate.apply(length) : ByteBuffer.allocate(length);
+      buf.limit(buf.position() + length);
+      ByteBuffer target = buf.slice();
+      long position = start;
+      while (target.hasRemaining()) {
+        int n = pread(position, target);
+        if (n < 0) {
+          break;
+        }
+        position += n;
+      }
+      for (FileRange range : group) {
+        if (range.getOffset() + range.getLength() > position) {
+          range.getData().completeExceptionally(new EOFException(
+              "End of file reached before reading fully " + range +
+              " of " + src));
+          continue;
+        }
+        if (group.size() == 1) {
+          range.getData().complete(buf);
+          continue;
+        }
+        ByteBuffer part = buf.duplicate();
+        part.position((int) (range.getOffset() - start));
+        part.limit(part.position() + range.getLength());
+        ByteBuffer data = allocate.apply(range.getLength());
+        data.put(part);
+        data.flip();
+        range.getData().complete(data);
+      }
+    } catch (Throwable t) {
+      // Ranges which were already completed keep their data.
+      for (FileRange range : group) {
+        range.getData().completeExceptionally(t);
+      }
+    }
+  }
+
   private int pread(long position, ByteBuffer buffer)
       throws IOException {
     // sanity checks
@@ -875,6 +875,7 @@ protected void completeFile(ExtendedBlock last) throws IOException {
         }
       }
     }
+    dfsClient.invalidateCachedMetadata(src);
   }
 
   @VisibleForTesting
@@ -20,6 +20,7 @@
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
@@ -39,17 +40,27 @@
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collection;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -69,6 +80,12 @@ public class DFSStripedInputStream extends DFSInputStream {
   private ByteBuffer parityBuf;
   private final ErasureCodingPolicy ecPolicy;
   private final RawErasureDecoder decoder;
+  /**
+   * Decodes the stripes read ahead, so that they do not wait for the reads
+   * of the application to be done with {@link #decoder}, or the other way
+   * round.
+   */
+  private final RawErasureDecoder readAheadDecoder;
 
   /**
    * Indicate the start/end offset of the current buffered stripe in the
@@ -87,6 +104,100 @@ public class DFSStripedInputStream extends DFSInputStream {
   private final Set<String> warnedNodes =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+  /** The number of stripes read ahead of the current one. */
+  private final int readAheadStripes;
+  /** The stripes being read ahead, in order. */
+  private final Deque<ReadAheadStripe> readAheads = new ArrayDeque<>();
+
+  /**
+   * A stripe read ahead of the current one, into buffers of its own. The
+   * stripes read ahead share the block readers, so each is fetched once the
+   * one before it has been. A stripe with missing blocks is then decoded
+   * while the next one is fetched.
+   */
+  private final class ReadAheadStripe implements Callable<Void> {
+    private final int stripeIndex;
+    private final ReadAheadStripe previous;
+    private final AlignedStripe[] stripes;
+    private final LocatedBlock[] blks;
+    private final ByteBuffer stripeBuf;
+    private ByteBuffer parityBuf;
+    private final CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+    private final CountDownLatch fetched = new CountDownLatch(1);
+    private volatile boolean fetchedOk = false;
+    private volatile boolean cancelled = false;
+    private Future<Void> future;
+
+    ReadAheadStripe(int stripeIndex, ReadAheadStripe previous) {
+      this.stripeIndex = stripeIndex;
+      this.previous = previous;
+      this.stripeBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
+          cellSize * dataBlkNum);
+      stripeBuf.clear();
+      final long stripeLen = (long) cellSize * dataBlkNum;
+      final long start = stripeIndex * stripeLen;
+      LocatedStripedBlock blockGroup =
+          (LocatedStripedBlock) currentLocatedBlock;
+      this.stripes = StripedBlockUtil.divideOneStripe(ecPolicy, cellSize,
+          blockGroup, start,
+          Math.min(blockGroup.getBlockSize(), start + stripeLen) - 1,
+          stripeBuf);
+      this.blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+    }
+
+    @Override
+    public Void call() throws IOException, InterruptedException {
+      List<StripeReader> readers = new ArrayList<>(stripes.length);
+      try {
+        if (previous != null) {
+          previous.fetched.await();
+          if (!previous.fetchedOk && !cancelled) {
+            throw new IOException("Failed to read the stripe before stripe "
+                + stripeIndex + " of " + src);
+          }
+        }
+        if (cancelled) {
+          return null;
+        }
+        DFSClientFaultInjector.get().readStripeAhead();
+        for (AlignedStripe stripe : stripes) {
+          StripeReader reader = new StatefulStripeReader(stripe, ecPolicy,
+              blks, blockReaders, corruptedBlocks, readAheadDecoder,
+              DFSStripedInputStream.this, stripeBuf, this::getParityBuffer);
+          reader.fetchStripe();
+          readers.add(reader);
+        }
+        fetchedOk = true;
+      } finally {
+        fetched.countDown();
+      }
+      // The next stripe is being fetched while this one is decoded.
+      for (StripeReader reader : readers) {
+        if (reader.needsDecoding()) {
+          reader.decode();
+        }
+      }
+      return null;
+    }
+
+    private ByteBuffer getParityBuffer() {
+      if (parityBuf == null) {
+        parityBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
+            cellSize * parityBlkNum);
+      }
+      parityBuf.clear();
+      return parityBuf;
+    }
+
+    private void releaseParityBuffer() {
+      if (parityBuf != null) {
+        BUFFER_POOL.putBuffer(parityBuf);
+        parityBuf = null;
+      }
+    }
+  }
+
   DFSStripedInputStream(DFSClient dfsClient, String src,
       boolean verifyChecksum, ErasureCodingPolicy ecPolicy,
       LocatedBlocks locatedBlocks) throws IOException {
@@ -98,12 +209,16 @@ public class DFSStripedInputStream extends DFSInputStream {
     dataBlkNum = (short) ecPolicy.getNumDataUnits();
     parityBlkNum = (short) ecPolicy.getNumParityUnits();
     groupSize = dataBlkNum + parityBlkNum;
+    readAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
     blockReaders = new BlockReaderInfo[groupSize];
     curStripeRange = new StripeRange(0, 0);
     ErasureCoderOptions coderOptions = new ErasureCoderOptions(
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    readAheadDecoder = readAheadStripes > 0 ?
+        CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
+            ecPolicy.getCodecName(), coderOptions) : null;
     if (DFSClient.LOG.isDebugEnabled()) {
       DFSClient.LOG.debug("Creating an striped input stream for file " + src);
     }
@@ -195,15 +310,20 @@ public synchronized void close() throws IOException {
    */
   @Override
   protected void closeCurrentBlockReaders() {
+    cancelReadAheads();
     resetCurStripeBuffer();
     if (blockReaders ==  null || blockReaders.length == 0) {
       return;
     }
+    closeBlockReaders();
+    blockEnd = -1;
+  }
+
+  private void closeBlockReaders() {
     for (int i = 0; i < groupSize; i++) {
       closeReader(blockReaders[i]);
       blockReaders[i] = null;
     }
-    blockEnd = -1;
   }
 
   protected void closeReader(BlockReaderInfo readerInfo) {
@@ -297,22 +417,110 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
     StripeRange stripeRange =
         new StripeRange(offsetInBlockGroup, stripeLimit - stripeBufOffset);
 
-    LocatedStripedBlock blockGroup = (LocatedStripedBlock) currentLocatedBlock;
-    AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
-        cellSize, blockGroup, offsetInBlockGroup,
-        offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
-    final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
-        blockGroup, cellSize, dataBlkNum, parityBlkNum);
-    // read the whole stripe
-    for (AlignedStripe stripe : stripes) {
-      // Parse group to get chosen DN location
-      StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
-          blockReaders, corruptedBlocks, decoder, this);
-      sreader.readStripe();
+    ReadAheadStripe readAhead = readAheads.peekFirst();
+    if (readAhead == null || readAhead.stripeIndex != stripeIndex ||
+        !takeReadAhead(corruptedBlocks)) {
+      if (cancelReadAheads()) {
+        // The block readers may have gone past the stripe.
+        closeBlockReaders();
+      }
+      LocatedStripedBlock blockGroup =
+          (LocatedStripedBlock) currentLocatedBlock;
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
+      final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+      // read the whole stripe
+      for (AlignedStripe stripe : stripes) {
+        // Parse group to get chosen DN location
+        StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy,
+            blks, blockReaders, corruptedBlocks, decoder, this, curStripeBuf,
+            this::getParityBuffer);
+        sreader.readStripe();
+      }
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
     curStripeRange = stripeRange;
+    readAhead(stripeIndex);
+  }
+
+  /**
+   * Start reading ahead the stripes after the given one in the current block
+   * group, up to {@link #readAheadStripes} of them.
+   */
+  private void readAhead(int stripeIndex) {
+    final long stripeLen = (long) cellSize * dataBlkNum;
+    ReadAheadStripe last = readAheads.peekLast();
+    int next = last != null ? last.stripeIndex + 1 : stripeIndex + 1;
+    while (readAheads.size() < readAheadStripes &&
+        next * stripeLen < currentLocatedBlock.getBlockSize()) {
+      ReadAheadStripe readAhead = new ReadAheadStripe(next++, last);
+      readAhead.future = getStripedReadsThreadPool().submit(readAhead);
+      readAheads.addLast(readAhead);
+      last = readAhead;
+    }
+  }
+
+  /**
+   * Wait for the first stripe read ahead, and make it the current stripe.
+   * @return false if the stripe could not be read ahead. The stripes read
+   *         ahead are then discarded, and the block readers closed, so that
+   *         the stripe can be read again from the current position.
+   */
+  private boolean takeReadAhead(CorruptedBlocks corruptedBlocks)
+      throws IOException {
+    ReadAheadStripe readAhead = readAheads.peekFirst();
+    try {
+      readAhead.future.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while reading ahead "
+          + src);
+    } catch (ExecutionException e) {
+      DFSClient.LOG.debug("Failed to read ahead stripe {} of {}, reading it "
+          + "again", readAhead.stripeIndex, src, e.getCause());
+      cancelReadAheads();
+      closeBlockReaders();
+      return false;
+    }
+    readAheads.removeFirst();
+    for (Map.Entry<ExtendedBlock, Set<DatanodeInfo>> entry :
+        readAhead.corruptedBlocks.getCorruptionMap().entrySet()) {
+      for (DatanodeInfo node : entry.getValue()) {
+        corruptedBlocks.addCorruptedBlock(entry.getKey(), node);
+      }
+    }
+    readAhead.releaseParityBuffer();
+    BUFFER_POOL.putBuffer(curStripeBuf);
+    curStripeBuf = readAhead.stripeBuf;
+    return true;
+  }
+
+  /**
+   * Stop reading ahead, and wait for the stripes being read to be done with
+   * the block readers.
+   * @return true if any stripes were being read ahead.
+   */
+  private boolean cancelReadAheads() {
+    if (readAheads.isEmpty()) {
+      return false;
+    }
+    for (ReadAheadStripe readAhead : readAheads) {
+      readAhead.cancelled = true;
+    }
+    while (!readAheads.isEmpty()) {
+      ReadAheadStripe readAhead = readAheads.removeFirst();
+      try {
+        Uninterruptibles.getUninterruptibly(readAhead.future);
+      } catch (ExecutionException e) {
+        DFSClient.LOG.debug("Failed to read ahead stripe {} of {}",
+            readAhead.stripeIndex, src, e);
+      }
+      readAhead.releaseParityBuffer();
+      BUFFER_POOL.putBuffer(readAhead.stripeBuf);
+    }
+    return true;
   }
 
   /**
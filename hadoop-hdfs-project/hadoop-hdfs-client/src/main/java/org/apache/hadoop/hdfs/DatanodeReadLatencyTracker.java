@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Keeps the latency of the recent positional reads of a {@link DFSClient},
+ * both for each DataNode and overall.
+ *
+ * The overall latency gives the threshold at which a hedged read is started,
+ * so that hedged reads follow the latency the client actually sees rather
+ * than a fixed value. Comparing the latency of each DataNode with the overall
+ * latency finds the DataNodes which are much slower than the rest, and those
+ * are passed over in favor of other replicas for a while. A slow DataNode's
+ * history is forgotten when it is marked slow, so that it is judged afresh
+ * once the period is over.
+ *
+ * Latencies are kept separately for each range of read lengths, so that
+ * large reads are only compared with other large reads. Percentiles are
+ * looked up in a sorted copy of the samples, which is only refreshed every
+ * {@link #MIN_SAMPLES} reads.
+ */
+@InterfaceAudience.Private
+class DatanodeReadLatencyTracker {
+  static final Logger LOG =
+      LoggerFactory.getLogger(DatanodeReadLatencyTracker.class);
+
+  /** Number of recent reads kept for each DataNode. */
+  @VisibleForTesting
+  static final int NODE_WINDOW_SIZE = 128;
+  /** Number of recent reads kept for all DataNodes together. */
+  private static final int OVERALL_WINDOW_SIZE = 1024;
+  /**
+   * Number of reads needed before a latency percentile is relied on, and
+   * number of reads after which it is recomputed.
+   */
+  @VisibleForTesting
+  static final int MIN_SAMPLES = 16;
+  /** Reads up to this length fall into the first size bucket. */
+  @VisibleForTesting
+  static final int MIN_BUCKET_BYTES = 64 * 1024;
+  /** Number of size buckets, each covering twice the lengths of the last. */
+  @VisibleForTesting
+  static final int NUM_BUCKETS = 8;
+
+  /** The latencies of the most recent reads, oldest first overwritten. */
+  private static final class LatencyWindow {
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+    private long added = 0;
+    /** The value of added when sorted was last refreshed. */
+    private long sortedAt = 0;
+    private volatile long[] sorted = new long[0];
+
+    LatencyWindow(int size) {
+      samples = new long[size];
+    }
+
+    /**
+     * @return the number of latencies added since the window was created or
+     *         last cleared.
+     */
+    synchronized long add(long latencyMs) {
+      samples[next] = latencyMs;
+      next = (next + 1) % samples.length;
+      if (count < samples.length) {
+        count++;
+      }
+      return ++added;
+    }
+
+    /**
+     * @return the given percentile of the latencies in the window, as of
+     *         its last refresh, or -1 if the window does not hold enough of
+     *         them.
+     */
+    long getPercentile(double percentile) {
+      long[] snapshot = getSorted();
+      if (snapshot.length < MIN_SAMPLES) {
+        return -1;
+      }
+      int index = (int) Math.ceil(percentile / 100 * snapshot.length) - 1;
+      return snapshot[Math.max(0, Math.min(index, snapshot.length - 1))];
+    }
+
+    private long[] getSorted() {
+      long[] copy;
+      synchronized (this) {
+        if (added - sortedAt < MIN_SAMPLES) {
+          return sorted;
+        }
+        copy = Arrays.copyOf(samples, count);
+        sortedAt = added;
+      }
+      // Sort outside the lock, so that reads adding samples do not wait.
+      Arrays.sort(copy);
+      sorted = copy;
+      return copy;
+    }
+
+    synchronized void clear() {
+      count = 0;
+      next = 0;
+      added = 0;
+      sortedAt = 0;
+      sorted = new long[0];
+    }
+  }
+
+  /** A latency window for each size bucket, created when first needed. */
+  private static final class BucketedLatency {
+    private final int windowSize;
+    private final LatencyWindow[] windows = new LatencyWindow[NUM_BUCKETS];
+
+    BucketedLatency(int windowSize) {
+      this.windowSize = windowSize;
+    }
+
+    synchronized LatencyWindow get(int bucket) {
+      if (windows[bucket] == null) {
+        windows[bucket] = new LatencyWindow(windowSize);
+      }
+      return windows[bucket];
+    }
+
+    synchronized void clear() {
+      for (LatencyWindow window : windows) {
+        if (window != null) {
+          window.clear();
+        }
+      }
+    }
+  }
+
+  private static final class NodeLatency {
+    private final BucketedLatency latency =
+        new BucketedLatency(NODE_WINDOW_SIZE);
+    private volatile long slowUntil = 0;
+  }
+
+  private final double hedgePercentile;
+  private final double slowNodeFactor;
+  private final long slowNodeExpiryMs;
+  private final BucketedLatency overall =
+      new BucketedLatency(OVERALL_WINDOW_SIZE);
+  private final ConcurrentMap<DatanodeInfo, NodeLatency> nodes =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param hedgePercentile the percentile of the overall latency at which
+   *                        hedged reads are started, or 0 to always use the
+   *                        configured threshold
+   * @param slowNodeFactor how many times slower than the overall median a
+   *                       DataNode's median latency must be for it to be
+   *                       passed over, or 0 to never pass over DataNodes
+   * @param slowNodeExpiryMs how long a slow DataNode is passed over for
+   */
+  DatanodeReadLatencyTracker(double hedgePercentile, double slowNodeFactor,
+      long slowNodeExpiryMs) {
+    this.hedgePercentile = hedgePercentile;
+    this.slowNodeFactor = slowNodeFactor;
+    this.slowNodeExpiryMs = slowNodeExpiryMs;
+  }
+
+  /**
+   * @return the size bucket of reads of the given length. Bucket i holds
+   *         reads of up to 2^i times {@link #MIN_BUCKET_BYTES}, and the last
+   *         bucket holds all longer reads too.
+   */
+  @VisibleForTesting
+  static int getBucket(long length) {
+    long units = Math.max(1, (length + MIN_BUCKET_BYTES - 1) /
+        MIN_BUCKET_BYTES);
+    int bucket = Long.SIZE - Long.numberOfLeadingZeros(units - 1);
+    return Math.min(bucket, NUM_BUCKETS - 1);
+  }
+
+  /**
+   * Record a successful read of the given length from a DataNode.
+   */
+  void addSample(DatanodeInfo datanode, long length, long latencyMs) {
+    int bucket = getBucket(length);
+    LatencyWindow overallWindow = overall.get(bucket);
+    overallWindow.add(latencyMs);
+    NodeLatency node = nodes.get(datanode);
+    if (node == null) {
+      NodeLatency newNode = new NodeLatency();
+      node = nodes.putIfAbsent(datanode, newNode);
+      if (node == null) {
+        node = newNode;
+      }
+    }
+    LatencyWindow nodeWindow = node.latency.get(bucket);
+    long added = nodeWindow.add(latencyMs);
+    // Look at the DataNode's latency every so often, rather than per read.
+    if (slowNodeFactor <= 0 || added % MIN_SAMPLES != 0) {
+      return;
+    }
+    long nodeMedian = nodeWindow.getPercentile(50);
+    long overallMedian = overallWindow.getPercentile(50);
+    if (nodeMedian >= 0 && overallMedian >= 0 &&
+        nodeMedian > slowNodeFactor * Math.max(overallMedian, 1)) {
+      LOG.debug("Passing over {} for {}ms, since its median read latency of "
+          + "{}ms is more than {} times the overall median of {}ms",
+          datanode, slowNodeExpiryMs, nodeMedian, slowNodeFactor,
+          overallMedian);
+      node.slowUntil = Time.monotonicNow() + slowNodeExpiryMs;
+      node.latency.clear();
+    }
+  }
+
+  /**
+   * @return how long to wait for a read of the given length before starting
+   *         a hedged read.
+   */
+  long getHedgedReadThresholdMillis(long defaultThresholdMs, long length) {
+    if (hedgePercentile <= 0) {
+      return defaultThresholdMs;
+    }
+    long threshold = overall.get(getBucket(length))
+        .getPercentile(hedgePercentile);
+    return threshold < 0 ? defaultThresholdMs : Math.max(threshold, 1);
+  }
+
+  /**
+   * @return true if reads from the DataNode should currently go to other
+   *         replicas when possible.
+   */
+  boolean isSlow(DatanodeInfo datanode) {
+    NodeLatency node = nodes.get(datanode);
+    return node != null && node.slowUntil > Time.monotonicNow();
+  }
+}
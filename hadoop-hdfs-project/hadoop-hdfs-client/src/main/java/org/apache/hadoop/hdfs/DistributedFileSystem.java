@@ -68,6 +68,7 @@
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.client.impl.CorruptFileBlockIterator;
+import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
@@ -117,6 +118,7 @@ public class DistributedFileSystem extends FileSystem {
   private boolean verifyChecksum = true;
 
   private DFSOpsCountStatistics storageStatistics;
+  private AsyncDistributedFileSystem asyncDfs;
 
   static{
     HdfsConfiguration.init();
@@ -164,6 +166,7 @@ public StorageStatistics provide() {
               return new DFSOpsCountStatistics();
             }
           });
+    dfs.setOpsStatistics(storageStatistics);
   }
 
   @Override
@@ -420,6 +423,47 @@ public HdfsDataOutputStream next(final FileSystem fs, final Path p)
     }.resolve(this, absF);
   }
 
+  /**
+   * Same as {@link #create(Path, FsPermission, boolean, int, short, long,
+   * Progressable)}, except that consecutive blocks of the file are written
+   * through several pipelines at once, as set by
+   * {@link HdfsClientConfigKeys.Write#PARALLEL_PIPELINES_KEY}. The blocks
+   * are written to hidden files in the same directory, which are
+   * concatenated and renamed to the file when the stream is closed. So the
+   * file only appears, or replaces an existing one, once the stream is
+   * closed, and the stream does not support hflush or hsync.
+   *
+   * @see ParallelBlockOutputStream
+   */
+  public FSDataOutputStream createParallel(final Path f,
+      final FsPermission permission, final boolean overwrite,
+      final int bufferSize, final short replication, final long blockSize,
+      final Progressable progress) throws IOException {
+    statistics.incrementWriteOps(1);
+    storageStatistics.incrementOpCounter(OpType.CREATE);
+    Path absF = fixRelativePart(f);
+    return new FileSystemLinkResolver<FSDataOutputStream>() {
+      @Override
+      public FSDataOutputStream doCall(final Path p) throws IOException {
+        final DfsClientConf conf = dfs.getConf();
+        return new FSDataOutputStream(new ParallelBlockOutputStream(dfs,
+            getPathName(p), permission, overwrite, replication, blockSize,
+            progress, bufferSize, conf.getParallelWritePipelines(),
+            conf.getParallelWriteMaxBufferedBytes()), statistics);
+      }
+      @Override
+      public FSDataOutputStream next(final FileSystem fs, final Path p)
+          throws IOException {
+        if (fs instanceof DistributedFileSystem) {
+          return ((DistributedFileSystem) fs).createParallel(p, permission,
+              overwrite, bufferSize, replication, blockSize, progress);
+        }
+        return fs.create(p, permission, overwrite, bufferSize, replication,
+            blockSize, progress);
+      }
+    }.resolve(this, absF);
+  }
+
   @Override
   public FSDataOutputStream create(final Path f, final FsPermission permission,
       final EnumSet<CreateFlag> cflags, final int bufferSize,
@@ -1158,6 +1202,19 @@ public String toString() {
     return "DFS[" + dfs + "]";
   }
 
+  /**
+   * @return an API for making the data path calls of this file system
+   *         asynchronously. The same instance is returned on every call, so
+   *         that the calls made through it on a stream stay in order.
+   */
+  public synchronized AsyncDistributedFileSystem
+      getAsyncDistributedFileSystem() {
+    if (asyncDfs == null) {
+      asyncDfs = new AsyncDistributedFileSystem(this);
+    }
+    return asyncDfs;
+  }
+
   @InterfaceAudience.Private
   @VisibleForTesting
   public DFSClient getClient() {
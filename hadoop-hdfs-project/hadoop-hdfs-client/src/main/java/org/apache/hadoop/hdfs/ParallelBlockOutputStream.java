@@ -0,0 +1,426 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.Options.Rename;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Syncable;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Progressable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * An output stream which writes consecutive parts of a file through several
+ * write pipelines at once, so that a single writer is not limited to the
+ * bandwidth of one pipeline.
+ *
+ * The file is cut into parts of one block each. Each part is written to a
+ * hidden file in the same directory, by its own {@link DFSOutputStream} on
+ * a background thread. The data handed to a part is buffered until its
+ * pipeline takes it, up to a limit shared by all parts, after which the
+ * writer waits. When the stream is closed, the other parts are concatenated
+ * onto the first one in order, and the first part is renamed to the file.
+ * If that fails, or the stream fails before, all the parts are deleted.
+ *
+ * The parts are named <code>.&lt;file name&gt;._PART&lt;index&gt;_&lt;client
+ * name&gt;</code>. If the client dies, or the stream is never closed, they
+ * are left behind once their leases have been recovered, and are not
+ * removed by HDFS. A cleanup job can find them by the {@link #PART_MARKER}
+ * in their names.
+ *
+ * The parts cannot be concatenated once they are in a snapshot, so closing
+ * the stream fails if a snapshot of a directory above the file is taken
+ * while it is being written.
+ *
+ * Since the file only appears once it is closed, hflush and hsync throw an
+ * {@link UnsupportedOperationException}. Files in encryption zones or with
+ * an erasure coding policy, which cannot be concatenated, are written
+ * through a single pipeline.
+ */
+@InterfaceAudience.Private
+public class ParallelBlockOutputStream extends OutputStream
+    implements Syncable {
+  static final Logger LOG =
+      LoggerFactory.getLogger(ParallelBlockOutputStream.class);
+
+  /** Follows the file name in the names of the parts. */
+  public static final String PART_MARKER = "._PART";
+
+  /** Size of the buffers data is handed to the parts in. */
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  /** Marks the end of the data of a part. */
+  private static final ByteBuffer END_OF_PART = ByteBuffer.allocate(0);
+
+  /** A part of the file and the stream it is written through. */
+  private final class Part implements Callable<Void> {
+    private final String path;
+    private final DFSOutputStream dfsOut;
+    /** Encrypts the data, if the file is in an encryption zone. */
+    private final OutputStream out;
+    private final BlockingQueue<ByteBuffer> chunks =
+        new LinkedBlockingQueue<>();
+    private long length = 0;
+
+    Part(String path, DFSOutputStream dfsOut) throws IOException {
+      this.path = path;
+      this.dfsOut = dfsOut;
+      this.out = dfsClient.createWrappedOutputStream(dfsOut, null);
+    }
+
+    @Override
+    public Void call() throws IOException, InterruptedException {
+      try {
+        while (true) {
+          ByteBuffer chunk = chunks.take();
+          if (chunk == END_OF_PART) {
+            break;
+          }
+          try {
+            out.write(chunk.array(), chunk.arrayOffset() + chunk.position(),
+                chunk.remaining());
+          } finally {
+            bufferPermits.release();
+          }
+        }
+        out.close();
+        return null;
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        failed = true;
+        try {
+          dfsOut.abort();
+        } catch (IOException ioe) {
+          LOG.warn("Failed to abort the stream of " + path, ioe);
+        }
+        // Give back the buffers the writer is still waiting on.
+        List<ByteBuffer> left = new ArrayList<>();
+        chunks.drainTo(left);
+        for (ByteBuffer chunk : left) {
+          if (chunk != END_OF_PART) {
+            bufferPermits.release();
+          }
+        }
+        throw e;
+      }
+    }
+  }
+
+  private final DFSClient dfsClient;
+  private final String src;
+  private final boolean overwrite;
+  private final FsPermission permission;
+  private final short replication;
+  private final long blockSize;
+  private final Progressable progress;
+  private final int bufferSize;
+  private final long partSize;
+  private final int maxActiveParts;
+  private final Semaphore bufferPermits;
+  private final ExecutorService partWriters;
+
+  private final List<Part> parts = new ArrayList<>();
+  private final List<Future<Void>> partFutures = new ArrayList<>();
+  private Part currentPart;
+  private ByteBuffer currentChunk;
+  private volatile boolean failed = false;
+  private boolean closed = false;
+  private final byte[] oneByte = new byte[1];
+
+  /**
+   * @param pipelines the maximum number of parts written at once
+   * @param maxBufferedBytes the maximum number of bytes buffered for the
+   *                         parts being written
+   */
+  ParallelBlockOutputStream(DFSClient dfsClient, String src,
+      FsPermission permission, boolean overwrite, short replication,
+      long blockSize, Progressable progress, int bufferSize, int pipelines,
+      long maxBufferedBytes) throws IOException {
+    Preconditions.checkArgument(pipelines > 0,
+        "The number of pipelines must be positive: %s", pipelines);
+    this.dfsClient = dfsClient;
+    this.src = src;
+    this.overwrite = overwrite;
+    this.permission = permission;
+    this.replication = replication;
+    this.blockSize = blockSize;
+    this.progress = progress;
+    this.bufferSize = bufferSize;
+    this.bufferPermits = new Semaphore(
+        (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+            maxBufferedBytes / CHUNK_SIZE)));
+
+    // The file itself is only created when the stream is closed, so fail
+    // early rather than after all the data has been written.
+    HdfsFileStatus existing = dfsClient.getFileInfo(src);
+    if (existing != null && (!overwrite || existing.isDir())) {
+      throw new FileAlreadyExistsException(src + " already exists");
+    }
+    DFSOutputStream first = dfsClient.create(getPartPath(0), permission,
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), true,
+        replication, blockSize, progress, bufferSize, null);
+    if (first instanceof DFSStripedOutputStream ||
+        first.getFileEncryptionInfo() != null) {
+      // Such files cannot be concatenated.
+      this.partSize = Long.MAX_VALUE;
+      this.maxActiveParts = 1;
+    } else {
+      this.partSize = blockSize;
+      this.maxActiveParts = pipelines;
+    }
+    final AtomicInteger threadIndex = new AtomicInteger(0);
+    this.partWriters = Executors.newFixedThreadPool(maxActiveParts,
+        new Daemon.DaemonFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = super.newThread(r);
+            t.setName("ParallelBlockWriter-" + src + "-" +
+                threadIndex.getAndIncrement());
+            return t;
+          }
+        });
+    startPart(new Part(src, first));
+  }
+
+  @Override
+  public synchronized void write(int b) throws IOException {
+    oneByte[0] = (byte) b;
+    write(oneByte, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len)
+      throws IOException {
+    checkNotClosed();
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      if (currentPart.length == partSize) {
+        startNextPart();
+      }
+      if (currentChunk == null) {
+        currentChunk = ByteBuffer.allocate(CHUNK_SIZE);
+      }
+      int n = (int) Math.min(Math.min(len, currentChunk.remaining()),
+          partSize - currentPart.length);
+      currentChunk.put(b, off, n);
+      currentPart.length += n;
+      off += n;
+      len -= n;
+      if (!currentChunk.hasRemaining() ||
+          currentPart.length == partSize) {
+        handOffChunk();
+      }
+    }
+  }
+
+  /**
+   * Hand the buffered data to the pipeline of the current part. This does
+   * not wait for the data to be written.
+   */
+  @Override
+  public synchronized void flush() throws IOException {
+    checkNotClosed();
+    handOffChunk();
+  }
+
+  /**
+   * Not supported, since the file only appears once the stream is closed.
+   */
+  @Override
+  public void hflush() throws IOException {
+    throw new UnsupportedOperationException(
+        "hflush is not supported by streams writing blocks in parallel");
+  }
+
+  /**
+   * Not supported, since the file only appears once the stream is closed.
+   */
+  @Override
+  public void hsync() throws IOException {
+    throw new UnsupportedOperationException(
+        "hsync is not supported by streams writing blocks in parallel");
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    boolean renamed = false;
+    try {
+      IOException error = null;
+      try {
+        handOffChunk();
+      } catch (IOException e) {
+        error = e;
+      }
+      currentPart.chunks.add(END_OF_PART);
+      try {
+        for (Future<Void> future : partFutures) {
+          IOException e = waitFor(future);
+          if (error == null) {
+            error = e;
+          }
+        }
+      } finally {
+        partWriters.shutdownNow();
+      }
+      if (error != null) {
+        throw error;
+      }
+      String first = parts.get(0).path;
+      if (parts.size() > 1) {
+        String[] others = new String[parts.size() - 1];
+        for (int i = 1; i < parts.size(); i++) {
+          others[i - 1] = parts.get(i).path;
+        }
+        dfsClient.concat(first, others);
+      }
+      dfsClient.rename(first, src,
+          overwrite ? Rename.OVERWRITE : Rename.NONE);
+      renamed = true;
+    } finally {
+      if (!renamed) {
+        deleteParts();
+      }
+    }
+  }
+
+  /**
+   * @return the number of parts the file has been written in so far.
+   */
+  @VisibleForTesting
+  synchronized int getNumParts() {
+    return parts.size();
+  }
+
+  private void checkNotClosed() throws IOException {
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+    if (failed) {
+      throw new IOException("Failed to write a part of " + src);
+    }
+  }
+
+  private void handOffChunk() throws IOException {
+    if (currentChunk == null || currentChunk.position() == 0) {
+      return;
+    }
+    try {
+      bufferPermits.acquire();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException(
+          "Interrupted while waiting to write to " + src);
+    }
+    currentChunk.flip();
+    currentPart.chunks.add(currentChunk);
+    currentChunk = null;
+    if (failed) {
+      // The part may have stopped taking data before the chunk was added.
+      throw new IOException("Failed to write a part of " + src);
+    }
+  }
+
+  private void startNextPart() throws IOException {
+    handOffChunk();
+    currentPart.chunks.add(END_OF_PART);
+    // Only so many parts are written at once, so wait for the oldest.
+    int active = parts.size() - maxActiveParts;
+    if (active >= 0) {
+      IOException e = waitFor(partFutures.get(active));
+      if (e != null) {
+        throw e;
+      }
+    }
+    String partPath = getPartPath(parts.size());
+    DFSOutputStream out = dfsClient.create(partPath, permission,
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), false,
+        replication, blockSize, progress, bufferSize, null);
+    startPart(new Part(partPath, out));
+  }
+
+  /**
+   * @return the hidden file the part with the given index is written to
+   */
+  private String getPartPath(int index) {
+    Path file = new Path(src);
+    return new Path(file.getParent(), "." + file.getName() + PART_MARKER +
+        index + "_" + dfsClient.clientName).toString();
+  }
+
+  private void startPart(Part part) {
+    parts.add(part);
+    partFutures.add(partWriters.submit(part));
+    currentPart = part;
+  }
+
+  private IOException waitFor(Future<Void> future) throws IOException {
+    try {
+      future.get();
+      return null;
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException(
+          "Interrupted while waiting to write to " + src);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      return cause instanceof IOException ?
+          (IOException) cause : new IOException(cause);
+    }
+  }
+
+  private void deleteParts() {
+    for (int i = 0; i < parts.size(); i++) {
+      String path = parts.get(i).path;
+      try {
+        dfsClient.delete(path, false);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete " + path, e);
+      }
+    }
+  }
+}
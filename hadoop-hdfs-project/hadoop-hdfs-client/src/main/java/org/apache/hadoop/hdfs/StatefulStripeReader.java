@@ -28,6 +28,7 @@
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 
 import java.nio.ByteBuffer;
+import java.util.function.Supplier;
 
 /**
  * The reader for reading a complete {@link StripedBlockUtil.AlignedStripe}
@@ -35,21 +36,25 @@
  * Reading cross multiple strips is not supported in this reader.
  */
 class StatefulStripeReader extends StripeReader {
+  /** The buffer of the whole stripe the data is read into. */
+  private final ByteBuffer stripeBuf;
+  /** Gives the buffer the parity chunks are read into. */
+  private final Supplier<ByteBuffer> parityBuf;
 
   StatefulStripeReader(AlignedStripe alignedStripe,
       ErasureCodingPolicy ecPolicy, LocatedBlock[] targetBlocks,
       BlockReaderInfo[] readerInfos, CorruptedBlocks corruptedBlocks,
-      RawErasureDecoder decoder, DFSStripedInputStream dfsStripedInputStream) {
+      RawErasureDecoder decoder, DFSStripedInputStream dfsStripedInputStream,
+      ByteBuffer stripeBuf, Supplier<ByteBuffer> parityBuf) {
     super(alignedStripe, ecPolicy, targetBlocks, readerInfos,
         corruptedBlocks, decoder, dfsStripedInputStream);
+    this.stripeBuf = stripeBuf;
+    this.parityBuf = parityBuf;
   }
 
   @Override
   void prepareDecodeInputs() {
-    final ByteBuffer cur;
-    synchronized (dfsStripedInputStream) {
-      cur = dfsStripedInputStream.getCurStripeBuf().duplicate();
-    }
+    final ByteBuffer cur = stripeBuf.duplicate();
 
     this.decodeInputs = new ECChunk[dataBlkNum + parityBlkNum];
     int bufLen = (int) alignedStripe.getSpanInBlock();
@@ -77,7 +82,7 @@ boolean prepareParityChunk(int index) {
       return false;
     }
     final int parityIndex = index - dataBlkNum;
-    ByteBuffer buf = dfsStripedInputStream.getParityBuffer().duplicate();
+    ByteBuffer buf = parityBuf.get().duplicate();
     buf.position(cellSize * parityIndex);
     buf.limit(cellSize * parityIndex + (int) alignedStripe.range.spanInBlock);
     decodeInputs[index] =
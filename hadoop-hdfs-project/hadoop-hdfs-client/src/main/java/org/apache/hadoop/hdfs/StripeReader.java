@@ -316,6 +316,17 @@ boolean readChunk(final LocatedBlock block, int chunkIndex)
    * read the whole stripe. do decoding if necessary
    */
   void readStripe() throws IOException {
+    fetchStripe();
+    if (needsDecoding()) {
+      decode();
+    }
+  }
+
+  /**
+   * Read the chunks of the stripe, and the parity chunks needed to decode
+   * the missing ones, without decoding them.
+   */
+  void fetchStripe() throws IOException {
     for (int i = 0; i < dataBlkNum; i++) {
       if (alignedStripe.chunks[i] != null &&
           alignedStripe.chunks[i].state != StripingChunk.ALLZERO) {
@@ -376,10 +387,10 @@ void readStripe() throws IOException {
         throw new InterruptedIOException(err);
       }
     }
+  }
 
-    if (alignedStripe.missingChunksNum > 0) {
-      decode();
-    }
+  boolean needsDecoding() {
+    return alignedStripe.missingChunksNum > 0;
   }
 
   /**
@@ -418,8 +429,11 @@ void decodeAndFillBuffer(boolean fillBuffer) {
       outputs[i] = decodeInputs[decodeIndices[i]];
       decodeInputs[decodeIndices[i]] = null;
     }
-    // Step 2: decode into prepared output buffers
-    decoder.decode(decodeInputs, decodeIndices, outputs);
+    // Step 2: decode into prepared output buffers. The decoder keeps state
+    // between calls, and preads may use it from several threads at once.
+    synchronized (decoder) {
+      decoder.decode(decodeInputs, decodeIndices, outputs);
+    }
 
     // Step 3: fill original application buffer with decoded data
     if (fillBuffer) {
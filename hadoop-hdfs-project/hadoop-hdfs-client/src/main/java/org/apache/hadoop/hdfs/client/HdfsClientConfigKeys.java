@@ -273,6 +273,11 @@ interface Write {
     String  EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_KEY =
         PREFIX + "exclude.nodes.cache.expiry.interval.millis";
     long    EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_DEFAULT = 10*MINUTE;
+    String  PARALLEL_PIPELINES_KEY = PREFIX + "parallel.pipelines";
+    int     PARALLEL_PIPELINES_DEFAULT = 4;
+    String  PARALLEL_MAX_BUFFERED_BYTES_KEY =
+        PREFIX + "parallel.max.buffered.bytes";
+    long    PARALLEL_MAX_BUFFERED_BYTES_DEFAULT = 256L * 1024 * 1024;
 
     interface ByteArrayManager {
       String PREFIX = Write.PREFIX + "byte-array-manager.";
@@ -368,6 +373,12 @@ interface HedgedRead {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_PERCENTILE_KEY = PREFIX + "adaptive.percentile";
+    double  ADAPTIVE_PERCENTILE_DEFAULT = 0;
+    String  SLOW_NODE_FACTOR_KEY = PREFIX + "slow.node.factor";
+    double  SLOW_NODE_FACTOR_DEFAULT = 0;
+    String  SLOW_NODE_EXPIRY_MS_KEY = PREFIX + "slow.node.expiry.ms";
+    long    SLOW_NODE_EXPIRY_MS_DEFAULT = 60000;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -380,6 +391,44 @@ interface StripedRead {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /**
+     * The number of stripes fetched, and decoded if need be, ahead of a
+     * sequential reader. 0 reads one stripe at a time.
+     */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 0;
+  }
+
+  /** dfs.client.async configuration properties */
+  interface AsyncIo {
+    String PREFIX = HdfsClientConfigKeys.PREFIX + "async.";
+
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 16;
+    String  MAX_PENDING_CALLS_KEY = PREFIX + "max-pending-calls";
+    int     MAX_PENDING_CALLS_DEFAULT = 1024;
+  }
+
+  /** dfs.client.metadata.cache configuration properties */
+  interface MetadataCache {
+    String PREFIX = HdfsClientConfigKeys.PREFIX + "metadata.cache.";
+
+    String  EXPIRY_MS_KEY = PREFIX + "expiry.ms";
+    long    EXPIRY_MS_DEFAULT = 0;
+    String  MAX_ENTRIES_KEY = PREFIX + "max.entries";
+    int     MAX_ENTRIES_DEFAULT = 10000;
+  }
+
+  /** dfs.client.read.vectored configuration properties */
+  interface VectoredRead {
+    String PREFIX = Read.PREFIX + "vectored.";
+
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+    String  MAX_MERGE_GAP_KEY = PREFIX + "max.merge.gap";
+    int     MAX_MERGE_GAP_DEFAULT = 64 * 1024;
+    String  MAX_MERGED_SIZE_KEY = PREFIX + "max.merged.size";
+    int     MAX_MERGED_SIZE_DEFAULT = 1024 * 1024;
   }
 
   /** dfs.http.client configuration properties */
@@ -110,6 +110,8 @@ public class DfsClientConf {
   private final int socketTimeout;
   private final int socketSendBufferSize;
   private final long excludedNodesCacheExpiry;
+  private final int parallelWritePipelines;
+  private final long parallelWriteMaxBufferedBytes;
   /** Wait time window (in msec) if BlockMissingException is caught. */
   private final int timeWindow;
   private final int numCachedConnRetry;
@@ -131,10 +133,24 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final double hedgedReadAdaptivePercentile;
+  private final double hedgedReadSlowNodeFactor;
+  private final long hedgedReadSlowNodeExpiryMs;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+
+  private final int vectoredReadThreadpoolSize;
+  private final int vectoredReadMaxMergeGap;
+  private final int vectoredReadMaxMergedSize;
+
+  private final int asyncIoThreadpoolSize;
+  private final int asyncIoMaxPendingCalls;
+
+  private final long metadataCacheExpiryMs;
+  private final int metadataCacheMaxEntries;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -217,6 +233,14 @@ public DfsClientConf(Configuration conf) {
     excludedNodesCacheExpiry = conf.getLong(
         Write.EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_KEY,
         Write.EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_DEFAULT);
+    parallelWritePipelines = conf.getInt(
+        Write.PARALLEL_PIPELINES_KEY,
+        Write.PARALLEL_PIPELINES_DEFAULT);
+    Preconditions.checkArgument(parallelWritePipelines > 0, "The value of " +
+        Write.PARALLEL_PIPELINES_KEY + " must be greater than 0.");
+    parallelWriteMaxBufferedBytes = conf.getLongBytes(
+        Write.PARALLEL_MAX_BUFFERED_BYTES_KEY,
+        Write.PARALLEL_MAX_BUFFERED_BYTES_DEFAULT);
     prefetchSize = conf.getLong(Read.PREFETCH_SIZE_KEY,
         10 * defaultBlockSize);
     numCachedConnRetry = conf.getInt(DFS_CLIENT_CACHED_CONN_RETRY_KEY,
@@ -250,6 +274,18 @@ public DfsClientConf(Configuration conf) {
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    hedgedReadAdaptivePercentile = conf.getDouble(
+        HedgedRead.ADAPTIVE_PERCENTILE_KEY,
+        HedgedRead.ADAPTIVE_PERCENTILE_DEFAULT);
+    Preconditions.checkArgument(hedgedReadAdaptivePercentile >= 0 &&
+        hedgedReadAdaptivePercentile <= 100, "The value of " +
+        HedgedRead.ADAPTIVE_PERCENTILE_KEY + " must be between 0 and 100.");
+    hedgedReadSlowNodeFactor = conf.getDouble(
+        HedgedRead.SLOW_NODE_FACTOR_KEY,
+        HedgedRead.SLOW_NODE_FACTOR_DEFAULT);
+    hedgedReadSlowNodeExpiryMs = conf.getLong(
+        HedgedRead.SLOW_NODE_EXPIRY_MS_KEY,
+        HedgedRead.SLOW_NODE_EXPIRY_MS_DEFAULT);
 
     stripedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY,
@@ -257,6 +293,48 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+
+    vectoredReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_DEFAULT);
+    vectoredReadMaxMergeGap = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGE_GAP_KEY,
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGE_GAP_DEFAULT);
+    Preconditions.checkArgument(vectoredReadMaxMergeGap >= 0, "The value of " +
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGE_GAP_KEY +
+        " must be greater than or equal to 0.");
+    vectoredReadMaxMergedSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadMaxMergedSize > 0, "The value of " +
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_KEY +
+        " must be greater than 0.");
+
+    asyncIoThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.AsyncIo.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.AsyncIo.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(asyncIoThreadpoolSize > 0, "The value of " +
+        HdfsClientConfigKeys.AsyncIo.THREADPOOL_SIZE_KEY +
+        " must be greater than 0.");
+    asyncIoMaxPendingCalls = conf.getInt(
+        HdfsClientConfigKeys.AsyncIo.MAX_PENDING_CALLS_KEY,
+        HdfsClientConfigKeys.AsyncIo.MAX_PENDING_CALLS_DEFAULT);
+    Preconditions.checkArgument(asyncIoMaxPendingCalls > 0, "The value of " +
+        HdfsClientConfigKeys.AsyncIo.MAX_PENDING_CALLS_KEY +
+        " must be greater than 0.");
+
+    metadataCacheExpiryMs = conf.getLong(
+        HdfsClientConfigKeys.MetadataCache.EXPIRY_MS_KEY,
+        HdfsClientConfigKeys.MetadataCache.EXPIRY_MS_DEFAULT);
+    metadataCacheMaxEntries = conf.getInt(
+        HdfsClientConfigKeys.MetadataCache.MAX_ENTRIES_KEY,
+        HdfsClientConfigKeys.MetadataCache.MAX_ENTRIES_DEFAULT);
+    Preconditions.checkArgument(metadataCacheMaxEntries > 0, "The value of " +
+        HdfsClientConfigKeys.MetadataCache.MAX_ENTRIES_KEY +
+        " must be greater than 0.");
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
   }
 
@@ -439,6 +517,20 @@ public long getExcludedNodesCacheExpiry() {
     return excludedNodesCacheExpiry;
   }
 
+  /**
+   * @return the parallelWritePipelines
+   */
+  public int getParallelWritePipelines() {
+    return parallelWritePipelines;
+  }
+
+  /**
+   * @return the parallelWriteMaxBufferedBytes
+   */
+  public long getParallelWriteMaxBufferedBytes() {
+    return parallelWriteMaxBufferedBytes;
+  }
+
   /**
    * @return the timeWindow
    */
@@ -551,6 +643,27 @@ public int getHedgedReadThreadpoolSize() {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return the hedgedReadAdaptivePercentile
+   */
+  public double getHedgedReadAdaptivePercentile() {
+    return hedgedReadAdaptivePercentile;
+  }
+
+  /**
+   * @return the hedgedReadSlowNodeFactor
+   */
+  public double getHedgedReadSlowNodeFactor() {
+    return hedgedReadSlowNodeFactor;
+  }
+
+  /**
+   * @return the hedgedReadSlowNodeExpiryMs
+   */
+  public long getHedgedReadSlowNodeExpiryMs() {
+    return hedgedReadSlowNodeExpiryMs;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -558,6 +671,62 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the stripedReadAheadStripes
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
+  /**
+   * @return the vectoredReadMaxMergeGap
+   */
+  public int getVectoredReadMaxMergeGap() {
+    return vectoredReadMaxMergeGap;
+  }
+
+  /**
+   * @return the vectoredReadMaxMergedSize
+   */
+  public int getVectoredReadMaxMergedSize() {
+    return vectoredReadMaxMergedSize;
+  }
+
+  /**
+   * @return the asyncIoThreadpoolSize
+   */
+  public int getAsyncIoThreadpoolSize() {
+    return asyncIoThreadpoolSize;
+  }
+
+  /**
+   * @return the asyncIoMaxPendingCalls
+   */
+  public int getAsyncIoMaxPendingCalls() {
+    return asyncIoMaxPendingCalls;
+  }
+
+  /**
+   * @return the metadataCacheExpiryMs
+   */
+  public long getMetadataCacheExpiryMs() {
+    return metadataCacheExpiryMs;
+  }
+
+  /**
+   * @return the metadataCacheMaxEntries
+   */
+  public int getMetadataCacheMaxEntries() {
+    return metadataCacheMaxEntries;
+  }
+
   /**
    * @return the replicaAccessorBuilderClasses
    */
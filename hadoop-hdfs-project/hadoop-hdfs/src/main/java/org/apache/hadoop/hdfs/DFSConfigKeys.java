@@ -135,6 +135,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT =
     "dfs.namenode.path.based.cache.block.map.allocation.percent";
   public static final float    DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT_DEFAULT = 0.25f;
+  public static final String  DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT =
+    "dfs.namenode.blocks.map.allocation.percent";
+  public static final float    DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT_DEFAULT = 2.0f;
+  public static final String  DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT =
+    "dfs.namenode.inode.map.allocation.percent";
+  public static final float    DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT_DEFAULT = 1.0f;
 
   public static final int     DFS_NAMENODE_HTTP_PORT_DEFAULT =
       HdfsClientConfigKeys.DFS_NAMENODE_HTTP_PORT_DEFAULT;
@@ -318,6 +324,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_EXPIRY_MS_KEY = "dfs.content-summary.cache.expiry-ms";
+  public static final long    DFS_CONTENT_SUMMARY_CACHE_EXPIRY_MS_DEFAULT = 0;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY = "dfs.content-summary.cache.size";
+  public static final int     DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT = 1000;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String  DFS_DATANODE_SYNCONCLOSE_KEY = "dfs.datanode.synconclose";
@@ -333,6 +343,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_DATANODE_CACHE_REVOCATION_POLLING_MS = "dfs.datanode.cache.revocation.polling.ms";
   public static final long DFS_DATANODE_CACHE_REVOCATION_POLLING_MS_DEFAULT = 500L;
 
+  public static final String DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_KEY = "dfs.datanode.shortcircuit.auto.cache.max.bytes";
+  public static final long DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_DEFAULT = 0;
+  public static final String DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_KEY = "dfs.datanode.shortcircuit.auto.cache.threshold";
+  public static final int DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_DEFAULT = 3;
+
   public static final String DFS_NAMENODE_DATANODE_REGISTRATION_IP_HOSTNAME_CHECK_KEY = "dfs.namenode.datanode.registration.ip-hostname-check";
   public static final boolean DFS_NAMENODE_DATANODE_REGISTRATION_IP_HOSTNAME_CHECK_DEFAULT = true;
 
@@ -415,6 +430,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.max-lock-hold-to-release-lease-ms";
   public static final long
       DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_DEFAULT = 25;
+  public static final String  DFS_NAMENODE_BLOCK_DELETION_INCREMENT_KEY =
+      "dfs.namenode.block.deletion.increment";
+  public static final int     DFS_NAMENODE_BLOCK_DELETION_INCREMENT_DEFAULT =
+      1000;
 
   public static final String  DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY =
       "dfs.namenode.lock.detailed-metrics.enabled";
@@ -473,6 +492,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_DEFAULT = false;
   public static final String  DFS_NAMENODE_AUDIT_LOG_ASYNC_KEY = "dfs.namenode.audit.log.async";
   public static final boolean DFS_NAMENODE_AUDIT_LOG_ASYNC_DEFAULT = false;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_KEY = "dfs.namenode.audit.log.async.dispatch";
+  public static final boolean DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_DEFAULT = false;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_KEY = "dfs.namenode.audit.log.async.dispatch.queue.size";
+  public static final int     DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_DEFAULT = 4096;
+  public static final String  DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_KEY = "dfs.namenode.audit.log.async.dispatch.blocking";
+  public static final boolean DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_DEFAULT = true;
   public static final String  DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST = "dfs.namenode.audit.log.debug.cmdlist";
   public static final String  DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_KEY =
       "dfs.namenode.metrics.logger.period.seconds";
@@ -553,6 +578,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_DN_EC_RECONSTRUCTION_STRIPED_READ_TIMEOUT_MILLIS_DEFAULT = 5000; //5s
   public static final String  DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_KEY = "dfs.datanode.ec.reconstruction.stripedblock.threads.size";
   public static final int     DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_DEFAULT = 8;
+  public static final String  DFS_DN_EC_RECONSTRUCTION_MAX_STREAMS_PER_SOURCE_KEY = "dfs.datanode.ec.reconstruction.max.streams.per.source";
+  public static final int     DFS_DN_EC_RECONSTRUCTION_MAX_STREAMS_PER_SOURCE_DEFAULT = 0;
 
   public static final String
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY =
@@ -638,6 +665,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.blockreport.incremental.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT
       = 0;
+  public static final String  DFS_BLOCKREPORT_INCREMENTAL_MAX_PENDING_BLOCKS_KEY
+      = "dfs.blockreport.incremental.max.pending.blocks";
+  public static final int     DFS_BLOCKREPORT_INCREMENTAL_MAX_PENDING_BLOCKS_DEFAULT
+      = 0;
   public static final String  DFS_BLOCKREPORT_INTERVAL_MSEC_KEY = "dfs.blockreport.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT = 6 * 60 * 60 * 1000;
   public static final String  DFS_BLOCKREPORT_INITIAL_DELAY_KEY = "dfs.blockreport.initialDelay";
@@ -666,6 +697,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_IMAGE_COMPRESSION_CODEC_DEFAULT =
                                    "org.apache.hadoop.io.compress.DefaultCodec";
 
+  // property for parallel fsimage saving and loading
+  public static final String DFS_IMAGE_PARALLEL_LOAD_KEY =
+      "dfs.image.parallel.load";
+  public static final boolean DFS_IMAGE_PARALLEL_LOAD_DEFAULT = false;
+  public static final String DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY =
+      "dfs.image.parallel.target.sections";
+  public static final int DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT = 12;
+  public static final String DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY =
+      "dfs.image.parallel.inode.threshold";
+  public static final int DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT = 1000000;
+  public static final String DFS_IMAGE_PARALLEL_THREADS_KEY =
+      "dfs.image.parallel.threads";
+  public static final int DFS_IMAGE_PARALLEL_THREADS_DEFAULT = 4;
+
   public static final String DFS_IMAGE_TRANSFER_RATE_KEY =
                                            "dfs.image.transfer.bandwidthPerSec";
   public static final long DFS_IMAGE_TRANSFER_RATE_DEFAULT = 0;  //no throttling
@@ -689,6 +734,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_FSDATASET_VOLUME_CHOOSING_POLICY_KEY = "dfs.datanode.fsdataset.volume.choosing.policy";
   public static final String DFS_DATANODE_FILE_IO_EVENTS_CLASS_KEY =
       "dfs.datanode.fileio.events.class";
+  public static final String DFS_DATANODE_READ_SCHEDULER_QUEUE_DEPTH_KEY =
+      "dfs.datanode.read.scheduler.queue.depth";
+  public static final int DFS_DATANODE_READ_SCHEDULER_QUEUE_DEPTH_DEFAULT = 0;
+  public static final String DFS_DATANODE_READ_SCHEDULER_ELEVATOR_KEY =
+      "dfs.datanode.read.scheduler.elevator";
+  public static final boolean DFS_DATANODE_READ_SCHEDULER_ELEVATOR_DEFAULT =
+      false;
   public static final String  DFS_DATANODE_AVAILABLE_SPACE_VOLUME_CHOOSING_POLICY_BALANCED_SPACE_THRESHOLD_KEY = "dfs.datanode.available-space-volume-choosing-policy.balanced-space-threshold";
   public static final long    DFS_DATANODE_AVAILABLE_SPACE_VOLUME_CHOOSING_POLICY_BALANCED_SPACE_THRESHOLD_DEFAULT = 1024L * 1024L * 1024L * 10L; // 10 GB
   public static final String  DFS_DATANODE_AVAILABLE_SPACE_VOLUME_CHOOSING_POLICY_BALANCED_SPACE_PREFERENCE_FRACTION_KEY = "dfs.datanode.available-space-volume-choosing-policy.balanced-space-preference-fraction";
@@ -750,6 +802,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_WEB_AUTHENTICATION_KERBEROS_KEYTAB_KEY = "dfs.web.authentication.kerberos.keytab";
   public static final String  DFS_NAMENODE_MAX_OP_SIZE_KEY = "dfs.namenode.max.op.size";
   public static final int     DFS_NAMENODE_MAX_OP_SIZE_DEFAULT = 50 * 1024 * 1024;
+  public static final String  DFS_NAMENODE_EDITS_PREFETCH_OPS_KEY = "dfs.namenode.edits.prefetch.ops";
+  public static final int     DFS_NAMENODE_EDITS_PREFETCH_OPS_DEFAULT = 0;
   public static final String  DFS_NAMENODE_AVAILABLE_SPACE_BLOCK_PLACEMENT_POLICY_BALANCED_SPACE_PREFERENCE_FRACTION_KEY =
       "dfs.namenode.available-space-block-placement-policy.balanced-space-preference-fraction";
   public static final float   DFS_NAMENODE_AVAILABLE_SPACE_BLOCK_PLACEMENT_POLICY_BALANCED_SPACE_PREFERENCE_FRACTION_DEFAULT =
@@ -785,6 +839,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_HA_TAILEDITS_INPROGRESS_KEY =
           "dfs.ha.tail-edits.in-progress";
   public static final boolean DFS_HA_TAILEDITS_INPROGRESS_DEFAULT = false;
+  public static final String DFS_HA_TAILEDITS_QJM_RPC_MAX_TXNS_KEY =
+      "dfs.ha.tail-edits.qjm.rpc.max-txns";
+  public static final int DFS_HA_TAILEDITS_QJM_RPC_MAX_TXNS_DEFAULT = 5000;
   public static final String DFS_HA_TAILEDITS_ROLLEDITS_TIMEOUT_KEY =
       "dfs.ha.tail-edits.rolledits.timeout";
   public static final int DFS_HA_TAILEDITS_ROLLEDITS_TIMEOUT_DEFAULT = 60; // 1m
@@ -842,6 +899,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_JOURNALNODE_RPC_ADDRESS_KEY = "dfs.journalnode.rpc-address";
   public static final int     DFS_JOURNALNODE_RPC_PORT_DEFAULT = 8485;
   public static final String  DFS_JOURNALNODE_RPC_ADDRESS_DEFAULT = "0.0.0.0:" + DFS_JOURNALNODE_RPC_PORT_DEFAULT;
+  public static final String  DFS_JOURNALNODE_EDIT_CACHE_SIZE_KEY = "dfs.journalnode.edit-cache-size.bytes";
+  public static final int     DFS_JOURNALNODE_EDIT_CACHE_SIZE_DEFAULT = 1024 * 1024;
     
   public static final String  DFS_JOURNALNODE_HTTP_ADDRESS_KEY = "dfs.journalnode.http-address";
   public static final int     DFS_JOURNALNODE_HTTP_PORT_DEFAULT = 8480;
@@ -1000,6 +1059,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean
       DFS_DATA_TRANSFER_SERVER_TCPNODELAY_DEFAULT = true;
 
+  public static final String
+      DFS_DATANODE_WRITE_DIRECT_BUFFERS_ENABLED_KEY =
+      "dfs.datanode.write.direct.buffers.enabled";
+  public static final boolean
+      DFS_DATANODE_WRITE_DIRECT_BUFFERS_ENABLED_DEFAULT = false;
+
   // Disk Balancer Keys
   public static final String DFS_DISK_BALANCER_ENABLED =
       "dfs.disk.balancer.enabled";
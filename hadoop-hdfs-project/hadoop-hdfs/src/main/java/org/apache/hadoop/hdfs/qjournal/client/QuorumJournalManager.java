@@ -22,6 +22,7 @@
 import java.net.URI;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -37,6 +38,7 @@
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournalStateResponseProto;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.PrepareRecoveryResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.SegmentStateProto;
@@ -78,6 +80,10 @@ public class QuorumJournalManager implements JournalManager {
   private final int newEpochTimeoutMs;
   private final int writeTxnsTimeoutMs;
 
+  // The maximum number of transactions to fetch per RPC when tailing
+  // in-progress edits, or 0 to always stream them over HTTP.
+  private final int maxTxnsPerRpc;
+
   // Since these don't occur during normal operation, we can
   // use rather lengthy timeouts, and don't need to make them
   // configurable.
@@ -143,6 +149,9 @@ public QuorumJournalManager(Configuration conf,
     this.writeTxnsTimeoutMs = conf.getInt(
         DFSConfigKeys.DFS_QJOURNAL_WRITE_TXNS_TIMEOUT_KEY,
         DFSConfigKeys.DFS_QJOURNAL_WRITE_TXNS_TIMEOUT_DEFAULT);
+    this.maxTxnsPerRpc = conf.getInt(
+        DFSConfigKeys.DFS_HA_TAILEDITS_QJM_RPC_MAX_TXNS_KEY,
+        DFSConfigKeys.DFS_HA_TAILEDITS_QJM_RPC_MAX_TXNS_DEFAULT);
   }
   
   protected List<AsyncLogger> createLoggers(
@@ -479,7 +488,73 @@ public void selectInputStreams(Collection<EditLogInputStream> streams,
   public void selectInputStreams(Collection<EditLogInputStream> streams,
       long fromTxnId, boolean inProgressOk,
       boolean onlyDurableTxns) throws IOException {
+    if (inProgressOk && onlyDurableTxns && maxTxnsPerRpc > 0) {
+      try {
+        selectRpcInputStreams(streams, fromTxnId);
+        return;
+      } catch (IOException ioe) {
+        // Expected after a cache miss, which may recur on every tail, so
+        // don't log it loudly.
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Could not fetch edits from txid " + fromTxnId +
+              " over RPC from " + loggers + "; falling back to streaming " +
+              "the edit log segments", ioe);
+        }
+      }
+    }
+    selectStreamingInputStreams(streams, fromTxnId, inProgressOk,
+        onlyDurableTxns);
+  }
+
+  /**
+   * Fetch the edits from fromTxnId onwards from the in-memory caches of the
+   * JournalNodes. Only the edits which a majority of the JournalNodes have
+   * returned, and so are durable, are selected.
+   *
+   * @throws IOException if a majority of the JournalNodes do not respond,
+   *                     or do not have the edits cached
+   */
+  private void selectRpcInputStreams(Collection<EditLogInputStream> streams,
+      long fromTxnId) throws IOException {
+    QuorumCall<AsyncLogger, GetJournaledEditsResponseProto> q =
+        loggers.getJournaledEdits(fromTxnId, maxTxnsPerRpc);
+    Map<AsyncLogger, GetJournaledEditsResponseProto> resps =
+        loggers.waitForWriteQuorum(q, selectInputStreamsTimeoutMs,
+            "selectRpcInputStreams");
+
+    List<Integer> txnCounts = new ArrayList<Integer>();
+    for (GetJournaledEditsResponseProto resp : resps.values()) {
+      txnCounts.add(resp.getTxnCount());
+    }
+    Collections.sort(txnCounts);
+    // The highest count which a majority of the JournalNodes have reached.
+    int highestTxnCount =
+        txnCounts.get(txnCounts.size() - loggers.getMajoritySize());
+    if (highestTxnCount == 0) {
+      return;
+    }
+    for (Map.Entry<AsyncLogger, GetJournaledEditsResponseProto> e :
+        resps.entrySet()) {
+      GetJournaledEditsResponseProto resp = e.getValue();
+      if (resp.getTxnCount() >= highestTxnCount) {
+        EditLogInputStream elis = EditLogFileInputStream.fromByteString(
+            resp.getEditLog(), "RPC from " + e.getKey(), fromTxnId,
+            fromTxnId + highestTxnCount - 1, true);
+        // The edits start at the batch containing fromTxnId.
+        if (!elis.skipUntil(fromTxnId)) {
+          elis.close();
+          throw new IOException("Edits fetched from " + e.getKey() +
+              " do not contain txid " + fromTxnId);
+        }
+        streams.add(elis);
+        return;
+      }
+    }
+  }
 
+  private void selectStreamingInputStreams(
+      Collection<EditLogInputStream> streams, long fromTxnId,
+      boolean inProgressOk, boolean onlyDurableTxns) throws IOException {
     QuorumCall<AsyncLogger, RemoteEditLogManifest> q =
         loggers.getEditLogManifest(fromTxnId, inProgressOk);
     Map<AsyncLogger, RemoteEditLogManifest> resps =
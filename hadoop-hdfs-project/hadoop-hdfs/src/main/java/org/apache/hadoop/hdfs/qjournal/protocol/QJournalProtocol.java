@@ -25,6 +25,7 @@
 import org.apache.hadoop.hdfs.qjournal.client.QuorumJournalManager;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetEditLogManifestResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournalStateResponseProto;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.PrepareRecoveryResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.SegmentStateProto;
@@ -133,6 +134,20 @@ public void purgeLogsOlderThan(RequestInfo requestInfo, long minTxIdToKeep)
   public GetEditLogManifestResponseProto getEditLogManifest(String jid,
       long sinceTxId, boolean inProgressOk)
       throws IOException;
+
+  /**
+   * Fetch recent edits from the in-memory cache of the journal, without
+   * reading them from disk.
+   * @param jid the journal from which to fetch edits
+   * @param sinceTxId the first transaction which the client cares about
+   * @param maxTxns the maximum number of transactions to return, although
+   *        the batches of edits are not split to meet it
+   * @return the edits from the batch containing sinceTxId onwards
+   * @throws IOException if the edits since the given transaction ID are
+   *         no longer cached
+   */
+  public GetJournaledEditsResponseProto getJournaledEdits(String jid,
+      long sinceTxId, int maxTxns) throws IOException;
   
   /**
    * Begin the recovery process for a given segment. See the HDFS-3077
@@ -34,10 +34,12 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.qjournal.protocol.JournalNotFormattedException;
 import org.apache.hadoop.hdfs.qjournal.protocol.JournalOutOfSyncException;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocol;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.PersistedRecoveryPaxosData;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.PrepareRecoveryResponseProto;
@@ -83,6 +85,7 @@ public class Journal implements Closeable {
   // Current writing state
   private EditLogOutputStream curSegment;
   private long curSegmentTxId = HdfsServerConstants.INVALID_TXID;
+  private int curSegmentLayoutVersion = 0;
   private long nextTxId = HdfsServerConstants.INVALID_TXID;
   private long highestWrittenTxId = 0;
   
@@ -133,6 +136,9 @@ public class Journal implements Closeable {
 
   private final JournalMetrics metrics;
 
+  /** The most recent edits, for standby NameNodes tailing the journal. */
+  private final JournaledEditsCache cache;
+
   private long lastJournalTimestamp = 0;
 
   /**
@@ -151,6 +157,10 @@ public class Journal implements Closeable {
     this.fjm = storage.getJournalManager();
     
     this.metrics = JournalMetrics.create(this);
+
+    this.cache = new JournaledEditsCache(conf.getInt(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_SIZE_DEFAULT));
     
     EditLogFile latest = scanStorageForLatestEdits();
     if (latest != null) {
@@ -219,6 +229,7 @@ void format(NamespaceInfo nsInfo) throws IOException {
         nsInfo);
     storage.format(nsInfo);
     refreshCachedData();
+    cache.clear();
   }
 
   /**
@@ -345,6 +356,8 @@ private void abortCurSegment() throws IOException {
     curSegment.abort();
     curSegment = null;
     curSegmentTxId = HdfsServerConstants.INVALID_TXID;
+    // The edits may be replaced during recovery.
+    cache.clear();
   }
 
   /**
@@ -395,6 +408,8 @@ synchronized void journal(RequestInfo reqInfo,
     boolean shouldFsync = !isLagging;
     
     curSegment.writeRaw(records, 0, records.length);
+    cache.storeEdits(segmentTxId, curSegmentLayoutVersion, firstTxnId,
+        lastTxnId, records);
     curSegment.setReadyToFlush();
     StopWatch sw = new StopWatch();
     sw.start();
@@ -571,6 +586,7 @@ public synchronized void startLogSegment(RequestInfo reqInfo, long txid,
     
     curSegment = fjm.startLogSegment(txid, layoutVersion);
     curSegmentTxId = txid;
+    curSegmentLayoutVersion = layoutVersion;
     nextTxId = txid;
   }
   
@@ -687,6 +703,24 @@ public RemoteEditLogManifest getEditLogManifest(long sinceTxId,
     return new RemoteEditLogManifest(logs, getCommittedTxnId());
   }
 
+  /**
+   * @see QJournalProtocol#getJournaledEdits(String, long, int)
+   */
+  public GetJournaledEditsResponseProto getJournaledEdits(long sinceTxId,
+      int maxTxns) throws IOException {
+    // No need to checkRequest() here - anyone may read the edits.
+    checkFormatted();
+
+    // Only the edits which have been flushed are returned.
+    long highestTxId = getHighestWrittenTxId();
+    if (sinceTxId > highestTxId) {
+      return GetJournaledEditsResponseProto.newBuilder()
+          .setTxnCount(0)
+          .build();
+    }
+    return cache.getEdits(sinceTxId, maxTxns, highestTxId);
+  }
+
   /**
    * @return the current state of the given segment, or null if the
    * segment does not exist.
@@ -1084,10 +1118,12 @@ public synchronized void doRollback() throws IOException {
     // directory will be renamed.  It will be reopened lazily on next access.
     IOUtils.cleanup(LOG, committedTxnId);
     storage.getJournalManager().doRollback();
+    cache.clear();
   }
 
   synchronized void discardSegments(long startTxId) throws IOException {
     storage.getJournalManager().discardSegments(startTxId);
+    cache.clear();
     // we delete all the segments after the startTxId. let's reset committedTxnId 
     committedTxnId.set(startTxId - 1);
   }
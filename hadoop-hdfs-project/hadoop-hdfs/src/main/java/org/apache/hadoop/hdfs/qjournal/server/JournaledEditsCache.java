@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.qjournal.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
+import org.apache.hadoop.hdfs.server.namenode.EditLogFileOutputStream;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * An in-memory cache of the most recent batches of edits written to a
+ * {@link Journal}, from which standby NameNodes fetch edits over RPC rather
+ * than by downloading edit log segments from disk.
+ *
+ * The batches are kept whole and contiguous, along with the layout version
+ * of the segment they belong to. Once the cache is full, the oldest batches
+ * are evicted to make room for new ones.
+ */
+@InterfaceAudience.Private
+class JournaledEditsCache {
+  /** A batch of edits as written by the writer. */
+  private static final class Batch {
+    private final long segmentTxId;
+    private final int layoutVersion;
+    private final long firstTxId;
+    private final long lastTxId;
+    private final byte[] data;
+
+    Batch(long segmentTxId, int layoutVersion, long firstTxId,
+        long lastTxId, byte[] data) {
+      this.segmentTxId = segmentTxId;
+      this.layoutVersion = layoutVersion;
+      this.firstTxId = firstTxId;
+      this.lastTxId = lastTxId;
+      this.data = data;
+    }
+  }
+
+  /**
+   * Thrown when the edits asked for are no longer, or not yet, cached, and
+   * have to be read from the edit log segments instead.
+   */
+  static class CacheMissException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    CacheMissException(String msg) {
+      super(msg);
+    }
+  }
+
+  private final long capacity;
+  /** The cached batches by their first txid. */
+  private final NavigableMap<Long, Batch> batches = new TreeMap<>();
+  private long size = 0;
+
+  /**
+   * @param capacity the maximum number of bytes of edits to cache, or 0 to
+   *                 cache nothing
+   */
+  JournaledEditsCache(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Cache a batch of edits which has been written to the journal.
+   */
+  synchronized void storeEdits(long segmentTxId, int layoutVersion,
+      long firstTxId, long lastTxId, byte[] data) {
+    if (capacity <= 0) {
+      return;
+    }
+    Map.Entry<Long, Batch> last = batches.lastEntry();
+    if (last != null && last.getValue().lastTxId + 1 != firstTxId) {
+      // Only contiguous edits may be served together.
+      clear();
+    }
+    if (data.length > capacity) {
+      clear();
+      return;
+    }
+    batches.put(firstTxId,
+        new Batch(segmentTxId, layoutVersion, firstTxId, lastTxId, data));
+    size += data.length;
+    while (size > capacity) {
+      size -= batches.pollFirstEntry().getValue().data.length;
+    }
+  }
+
+  /**
+   * Drop all the cached edits, when they may no longer match the journal.
+   */
+  synchronized void clear() {
+    batches.clear();
+    size = 0;
+  }
+
+  /**
+   * Get the cached edits from the batch containing the given txid onwards.
+   * The edits returned are within one segment, and are preceded by the log
+   * header of that segment.
+   *
+   * @param sinceTxId the first txid wanted
+   * @param maxTxns the number of txids from sinceTxId after which no more
+   *                batches are added
+   * @param highestTxId the highest txid which may be returned
+   * @throws CacheMissException if the batch containing sinceTxId is not
+   *                            cached
+   */
+  synchronized GetJournaledEditsResponseProto getEdits(long sinceTxId,
+      int maxTxns, long highestTxId) throws IOException {
+    Map.Entry<Long, Batch> first = batches.floorEntry(sinceTxId);
+    if (first == null || first.getValue().lastTxId < sinceTxId ||
+        first.getValue().lastTxId > highestTxId) {
+      throw new CacheMissException("Edits from txid " + sinceTxId +
+          " are not cached; cached batches: " + (batches.isEmpty() ? "none" :
+          batches.firstKey() + "-" + batches.lastEntry().getValue().lastTxId));
+    }
+    Batch firstBatch = first.getValue();
+
+    DataOutputBuffer buf = new DataOutputBuffer();
+    EditLogFileOutputStream.writeHeader(firstBatch.layoutVersion, buf);
+    long lastTxId = sinceTxId - 1;
+    for (Batch batch : batches.tailMap(first.getKey(), true).values()) {
+      if (batch.segmentTxId != firstBatch.segmentTxId ||
+          batch.lastTxId > highestTxId ||
+          lastTxId - sinceTxId + 1 >= maxTxns) {
+        break;
+      }
+      buf.write(batch.data);
+      lastTxId = batch.lastTxId;
+    }
+    return GetJournaledEditsResponseProto.newBuilder()
+        .setTxnCount((int) (lastTxId - sinceTxId + 1))
+        .setEditLog(ByteString.copyFrom(buf.getData(), 0, buf.getLength()))
+        .build();
+  }
+}
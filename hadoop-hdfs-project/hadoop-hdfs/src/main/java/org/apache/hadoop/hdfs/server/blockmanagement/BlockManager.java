@@ -36,7 +36,6 @@
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -99,7 +98,6 @@
 import org.apache.hadoop.hdfs.server.protocol.KeyUpdateCommand;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
 import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
-import org.apache.hadoop.hdfs.util.FoldedTreeSet;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.server.namenode.CacheManager;
 
@@ -152,6 +150,8 @@
 public class BlockManager implements BlockStatsMXBean {
 
   public static final Logger LOG = LoggerFactory.getLogger(BlockManager.class);
+
+  private static final float MIN_BLOCKS_MAP_PERCENT = 0.001f;
   public static final Logger blockLog = NameNode.blockStateChangeLog;
 
   private static final String QUEUE_REASON_CORRUPT_STATE =
@@ -388,9 +388,18 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         datanodeManager.getBlockInvalidateLimit(),
         startupDelayBlockDeletionInMs);
 
-    // Compute the map capacity by allocating 2% of total memory
+    // Compute the map capacity by allocating a percentage (2% by default)
+    // of total memory
+    float blocksMapPercent = conf.getFloat(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT_DEFAULT);
+    if (blocksMapPercent < MIN_BLOCKS_MAP_PERCENT) {
+      LOG.info("Using minimum value {} for {}", MIN_BLOCKS_MAP_PERCENT,
+          DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT);
+      blocksMapPercent = MIN_BLOCKS_MAP_PERCENT;
+    }
     blocksMap = new BlocksMap(
-        LightWeightGSet.computeCapacity(2.0, "BlocksMap"));
+        LightWeightGSet.computeCapacity(blocksMapPercent, "BlocksMap"));
     placementPolicies = new BlockPlacementPolicies(
       conf, datanodeManager.getFSClusterStats(),
       datanodeManager.getNetworkTopology(),
@@ -2422,8 +2431,10 @@ private Collection<Block> processReport(
     // Modify the (block-->datanode) map, according to the difference
     // between the old and new block report.
     //
-    Collection<BlockInfoToAdd> toAdd = new LinkedList<>();
-    Collection<BlockInfo> toRemove = new TreeSet<>();
+    Collection<BlockInfoToAdd> toAdd = new ArrayList<>();
+    // reportDiffSorted adds to this in ascending block ID order, without
+    // duplicates, so it need not be a sorted set.
+    Collection<BlockInfo> toRemove = new ArrayList<>();
     Collection<Block> toInvalidate = new LinkedList<>();
     Collection<BlockToMarkCorrupt> toCorrupt = new LinkedList<>();
     Collection<StatefulBlockInfo> toUC = new LinkedList<>();
@@ -2445,11 +2456,22 @@ private Collection<Block> processReport(
                     strBlockReportId,
                     storageInfo.getDatanodeDescriptor().getDatanodeUuid(),
                     VersionInfo.getVersion());
-      Set<BlockReportReplica> set = new FoldedTreeSet<>();
+      // Sort a flat copy of the report rather than inserting each replica
+      // into a tree, then drop any repeated block IDs.
+      List<BlockReportReplica> replicas =
+          new ArrayList<>(report.getNumberOfBlocks());
       for (BlockReportReplica iblk : report) {
-        set.add(new BlockReportReplica(iblk));
+        replicas.add(new BlockReportReplica(iblk));
+      }
+      Collections.sort(replicas);
+      int numUnique = 0;
+      for (BlockReportReplica replica : replicas) {
+        if (numUnique == 0 || replica.getBlockId() !=
+            replicas.get(numUnique - 1).getBlockId()) {
+          replicas.set(numUnique++, replica);
+        }
       }
-      sortedReport = set;
+      sortedReport = replicas.subList(0, numUnique);
     } else {
       sortedReport = report;
     }
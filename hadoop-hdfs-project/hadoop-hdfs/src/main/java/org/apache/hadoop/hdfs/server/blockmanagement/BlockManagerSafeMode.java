@@ -546,10 +546,19 @@ private void initializeReplQueuesIfNecessary() {
    */
   private boolean areThresholdsMet() {
     assert namesystem.hasWriteLock();
-    int datanodeNum = blockManager.getDatanodeManager().getNumLiveDataNodes();
     synchronized (this) {
-      return blockSafe >= blockThreshold && datanodeNum >= datanodeThreshold;
+      if (blockSafe < blockThreshold) {
+        return false;
+      }
     }
+    // Counting the live datanodes walks the whole datanode map, and this is
+    // called for every block which becomes safe while block reports are
+    // processed. Only count them once the block threshold has been met.
+    if (datanodeThreshold <= 0) {
+      return true;
+    }
+    int datanodeNum = blockManager.getDatanodeManager().getNumLiveDataNodes();
+    return datanodeNum >= datanodeThreshold;
   }
 
   /**
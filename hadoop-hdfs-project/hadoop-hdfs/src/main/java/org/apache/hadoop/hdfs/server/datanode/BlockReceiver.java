@@ -28,6 +28,8 @@
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.zip.Checksum;
@@ -88,7 +90,15 @@ class BlockReceiver implements Closeable {
   private final int bytesPerChecksum;
   private final int checksumSize;
   
-  private final PacketReceiver packetReceiver = new PacketReceiver(false);
+  private PacketReceiver packetReceiver = new PacketReceiver(false);
+  /**
+   * Channels to read packets from and mirror them to, when packets are
+   * received into direct buffers. Null when heap buffers are used.
+   */
+  private ReadableByteChannel packetIn = null;
+  private WritableByteChannel mirrorChannel = null;
+  /** Direct buffer for checksums calculated by this datanode. */
+  private ByteBuffer directChecksumBuf = null;
   
   protected final String inAddr;
   protected final String myAddr;
@@ -293,6 +303,26 @@ Replica getReplica() {
     return replicaInfo;
   }
 
+  /**
+   * Receive packets into pooled direct buffers, reading them from the given
+   * channel rather than from the input stream. Packets are then mirrored
+   * through mirror, and written to disk, without being copied onto the heap.
+   * Must be called before {@link #receiveBlock}.
+   *
+   * @param in the unbuffered channel the packets arrive on. Nothing may be
+   *           left unread in any stream buffering it.
+   * @param mirror the unbuffered channel to the next datanode, or null if
+   *               there is no mirror
+   */
+  void useDirectBuffers(ReadableByteChannel in, WritableByteChannel mirror) {
+    // For testing. Normally no-op.
+    DataNodeFaultInjector.get().receiveIntoDirectBuffers();
+    packetReceiver.close();
+    packetReceiver = new PacketReceiver(true);
+    packetIn = in;
+    mirrorChannel = mirror;
+  }
+
   /**
    * close files and release volume reference.
    */
@@ -510,7 +540,11 @@ private boolean shouldVerifyChecksum() {
    */
   private int receivePacket() throws IOException {
     // read the next packet
-    packetReceiver.receiveNextPacket(in);
+    if (packetIn != null) {
+      packetReceiver.receiveNextPacket(packetIn);
+    } else {
+      packetReceiver.receiveNextPacket(in);
+    }
 
     PacketHeader header = packetReceiver.getHeader();
     if (LOG.isDebugEnabled()){
@@ -567,7 +601,11 @@ private int receivePacket() throws IOException {
         long begin = Time.monotonicNow();
         // For testing. Normally no-op.
         DataNodeFaultInjector.get().stopSendingPacketDownstream();
-        packetReceiver.mirrorPacketTo(mirrorOut);
+        if (mirrorChannel != null) {
+          packetReceiver.mirrorPacketTo(mirrorChannel);
+        } else {
+          packetReceiver.mirrorPacketTo(mirrorOut);
+        }
         mirrorOut.flush();
         long now = Time.monotonicNow();
         setLastSentTime(now);
@@ -627,8 +665,11 @@ private int receivePacket() throws IOException {
       }
 
       if (checksumReceivedLen == 0 && !streams.isTransientStorage()) {
-        // checksum is missing, need to calculate it
-        checksumBuf = ByteBuffer.allocate(checksumLen);
+        // checksum is missing, need to calculate it. The native checksum
+        // code needs both buffers to be direct, or neither.
+        checksumBuf = dataBuf.isDirect() ?
+            getDirectChecksumBuf(checksumLen) :
+            ByteBuffer.allocate(checksumLen);
         diskChecksum.calculateChunkedSums(dataBuf, checksumBuf);
       }
       
@@ -694,16 +735,18 @@ private int receivePacket() throws IOException {
           // The data buffer position where write will begin. If the packet
           // data and on-disk data have no overlap, this will not be at the
           // beginning of the buffer.
-          int startByteToDisk = (int)(onDiskLen-firstByteInBlock) 
-              + dataBuf.arrayOffset() + dataBuf.position();
+          int startByteToDisk = (int)(onDiskLen-firstByteInBlock)
+              + dataBuf.position();
 
           // Actual number of data bytes to write.
           int numBytesToDisk = (int)(offsetInBlock-onDiskLen);
           
           // Write data to disk.
           long begin = Time.monotonicNow();
-          streams.writeDataToDisk(dataBuf.array(),
-              startByteToDisk, numBytesToDisk);
+          ByteBuffer dataToDisk = dataBuf.duplicate();
+          dataToDisk.position(startByteToDisk);
+          dataToDisk.limit(startByteToDisk + numBytesToDisk);
+          streams.writeDataToDisk(dataToDisk);
           long duration = Time.monotonicNow() - begin;
 
           if (duration > maxWriteToDiskMs) {
@@ -733,8 +776,17 @@ private int receivePacket() throws IOException {
                 bytesToReadForRecalc = numBytesToDisk;
               }
 
-              partialCrc.update(dataBuf.array(), startByteToDisk,
-                  bytesToReadForRecalc);
+              if (dataBuf.hasArray()) {
+                partialCrc.update(dataBuf.array(),
+                    dataBuf.arrayOffset() + startByteToDisk,
+                    bytesToReadForRecalc);
+              } else {
+                byte[] partialChunk = new byte[bytesToReadForRecalc];
+                ByteBuffer dup = dataBuf.duplicate();
+                dup.position(startByteToDisk);
+                dup.get(partialChunk);
+                partialCrc.update(partialChunk, 0, bytesToReadForRecalc);
+              }
               byte[] buf = FSOutputSummer.convertToByteStream(partialCrc,
                   checksumSize);
               crcBytes = copyLastChunkChecksum(buf, checksumSize, buf.length);
@@ -759,8 +811,7 @@ private int receivePacket() throws IOException {
             skip *= checksumSize; // Convert to number of bytes
 
             // write the rest of checksum
-            final int offset = checksumBuf.arrayOffset() +
-                checksumBuf.position() + skip;
+            final int offset = checksumBuf.position() + skip;
             final int end = offset + checksumLen - skip;
             // If offset >= end, there is no more checksum to write.
             // I.e. a partial chunk checksum rewrite happened and there is no
@@ -769,9 +820,8 @@ private int receivePacket() throws IOException {
               lastCrc = crcBytes;
             } else {
               final int remainingBytes = checksumLen - skip;
-              lastCrc = copyLastChunkChecksum(checksumBuf.array(),
-                  checksumSize, end);
-              checksumOut.write(checksumBuf.array(), offset, remainingBytes);
+              lastCrc = copyLastChunkChecksum(checksumBuf, checksumSize, end);
+              writeChecksums(checksumBuf, offset, remainingBytes);
             }
           }
 
@@ -823,6 +873,52 @@ private static byte[] copyLastChunkChecksum(byte[] array, int size, int end) {
     return Arrays.copyOfRange(array, end - size, end);
   }
 
+  private static byte[] copyLastChunkChecksum(ByteBuffer buf, int size,
+      int end) {
+    if (buf.hasArray()) {
+      return copyLastChunkChecksum(buf.array(), size,
+          buf.arrayOffset() + end);
+    }
+    byte[] lastChunkChecksum = new byte[size];
+    ByteBuffer dup = buf.duplicate();
+    dup.position(end - size);
+    dup.get(lastChunkChecksum);
+    return lastChunkChecksum;
+  }
+
+  /**
+   * Write len bytes of checksums, starting at index offset of the buffer.
+   * Checksums in a direct buffer bypass the buffered checksum stream, so
+   * they are not copied onto the heap.
+   */
+  private void writeChecksums(ByteBuffer checksumBuf, int offset, int len)
+      throws IOException {
+    if (checksumBuf.hasArray()) {
+      checksumOut.write(checksumBuf.array(),
+          checksumBuf.arrayOffset() + offset, len);
+    } else {
+      // Keep the order with anything still buffered, e.g. the header.
+      checksumOut.flush();
+      ByteBuffer dup = checksumBuf.duplicate();
+      dup.limit(offset + len);
+      dup.position(offset);
+      streams.writeChecksumToDisk(dup);
+    }
+  }
+
+  /**
+   * @return a direct buffer of the given length to calculate checksums in,
+   *         reused across packets
+   */
+  private ByteBuffer getDirectChecksumBuf(int len) {
+    if (directChecksumBuf == null || directChecksumBuf.capacity() < len) {
+      directChecksumBuf = ByteBuffer.allocateDirect(len);
+    }
+    directChecksumBuf.clear();
+    directChecksumBuf.limit(len);
+    return directChecksumBuf.slice();
+  }
+
   private void manageWriterOsCache(long offsetInBlock) {
     try {
       if (streams.getOutFd() != null &&
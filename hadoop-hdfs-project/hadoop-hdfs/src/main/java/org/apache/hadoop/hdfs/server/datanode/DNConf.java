@@ -81,6 +81,7 @@ public class DNConf {
   private final boolean tcpNoDelay;
 
   final boolean transferToAllowed;
+  final boolean writeDirectBuffersEnabled;
   final boolean dropCacheBehindWrites;
   final boolean syncBehindWrites;
   final boolean syncBehindWritesInBackground;
@@ -95,6 +96,7 @@ public class DNConf {
   final long blockReportInterval;
   final long blockReportSplitThreshold;
   final long ibrInterval;
+  final int ibrMaxPendingBlocks;
   final long initialBlockReportDelayMs;
   final long cacheReportInterval;
   final long dfsclientSlowIoWarningThresholdMs;
@@ -146,6 +148,9 @@ public DNConf(final Configurable dn) {
     transferToAllowed = getConf().getBoolean(
         DFS_DATANODE_TRANSFERTO_ALLOWED_KEY,
         DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT);
+    writeDirectBuffersEnabled = getConf().getBoolean(
+        DFSConfigKeys.DFS_DATANODE_WRITE_DIRECT_BUFFERS_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_WRITE_DIRECT_BUFFERS_ENABLED_DEFAULT);
 
     writePacketSize = getConf().getInt(DFS_CLIENT_WRITE_PACKET_SIZE_KEY,
         DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT);
@@ -176,6 +181,9 @@ public DNConf(final Configurable dn) {
     this.ibrInterval = getConf().getLong(
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_KEY,
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT);
+    this.ibrMaxPendingBlocks = getConf().getInt(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_PENDING_BLOCKS_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_PENDING_BLOCKS_DEFAULT);
     this.blockReportSplitThreshold = getConf().getLong(
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_KEY,
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_DEFAULT);
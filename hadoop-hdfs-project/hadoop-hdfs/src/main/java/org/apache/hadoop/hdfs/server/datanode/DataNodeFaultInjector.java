@@ -58,4 +58,10 @@ public void failMirrorConnection() throws IOException { }
 
   public void failPipeline(ReplicaInPipeline replicaInfo,
       String mirrorAddr) throws IOException { }
+
+  public void createRbwWithoutLock() throws IOException { }
+
+  public void receiveIntoDirectBuffers() { }
+
+  public void startStripedBlockReconstruction() { }
 }
@@ -82,6 +82,8 @@
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -114,6 +116,8 @@ class DataXceiver extends Receiver implements Runnable {
   private long opStartTime; //the start time of receiving an Op
   private final InputStream socketIn;
   private OutputStream socketOut;
+  /** The buffered stream ops are read through, once it has been set up. */
+  private DrainableBufferedInputStream bufferedIn = null;
   private BlockReceiver blockReceiver = null;
   private final int ioFileBufferSize;
   private final int smallBufferSize;
@@ -233,8 +237,9 @@ public void run() {
         IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
           socketIn, datanode.getXferAddress().getPort(),
           datanode.getDatanodeId());
-        input = new BufferedInputStream(saslStreams.in,
+        bufferedIn = new DrainableBufferedInputStream(saslStreams.in,
             smallBufferSize);
+        input = bufferedIn;
         socketOut = saslStreams.out;
       } catch (InvalidMagicNumberException imne) {
         if (imne.isHandshake4Encryption()) {
@@ -363,6 +368,8 @@ public void requestShortCircuitFds(final ExtendedBlock blk,
         }
         fis = datanode.requestShortCircuitFdsForRead(blk, token, maxVersion);
         Preconditions.checkState(fis != null);
+        datanode.data.onShortCircuitRead(blk.getBlockPoolId(),
+            blk.getBlockId());
         bld.setStatus(SUCCESS);
         bld.setShortCircuitAccessVersion(DataNode.CURRENT_BLOCK_FORMAT_VERSION);
       } catch (ShortCircuitFdsVersionException e) {
@@ -707,6 +714,7 @@ public void writeBlock(final ExtendedBlock block,
         + localAddress);
 
     DataOutputStream mirrorOut = null;  // stream to next target
+    WritableByteChannel mirrorChannel = null; // unbuffered, if available
     DataInputStream mirrorIn = null;    // reply from next target
     Socket mirrorSock = null;           // socket to next target
     String mirrorNode = null;           // the name:port of next target
@@ -771,6 +779,9 @@ public void writeBlock(final ExtendedBlock block,
             unbufMirrorOut, unbufMirrorIn, keyFactory, blockToken, targets[0]);
           unbufMirrorOut = saslStreams.out;
           unbufMirrorIn = saslStreams.in;
+          if (unbufMirrorOut instanceof WritableByteChannel) {
+            mirrorChannel = (WritableByteChannel) unbufMirrorOut;
+          }
           mirrorOut = new DataOutputStream(new BufferedOutputStream(unbufMirrorOut,
               smallBufferSize));
           mirrorIn = new DataInputStream(unbufMirrorIn);
@@ -819,6 +830,7 @@ public void writeBlock(final ExtendedBlock block,
           }
           IOUtils.closeStream(mirrorOut);
           mirrorOut = null;
+          mirrorChannel = null;
           IOUtils.closeStream(mirrorIn);
           mirrorIn = null;
           IOUtils.closeSocket(mirrorSock);
@@ -854,6 +866,11 @@ public void writeBlock(final ExtendedBlock block,
       // receive the block and mirror to the next target
       if (blockReceiver != null) {
         String mirrorAddr = (mirrorSock == null) ? null : mirrorNode;
+        ReadableByteChannel packetChannel = getUnbufferedPacketChannel();
+        if (dnConf.writeDirectBuffersEnabled && packetChannel != null &&
+            (mirrorOut == null || mirrorChannel != null)) {
+          blockReceiver.useDirectBuffers(packetChannel, mirrorChannel);
+        }
         blockReceiver.receiveBlock(mirrorOut, mirrorIn, replyOut,
             mirrorAddr, null, targets, false);
 
@@ -1224,6 +1241,40 @@ public void replaceBlock(final ExtendedBlock block,
   }
 
 
+  /**
+   * @return the socket channel, if packets can be read from it directly.
+   *         That is the case when no SASL wrapping is in place, and all
+   *         bytes read from the socket so far have been consumed.
+   */
+  private ReadableByteChannel getUnbufferedPacketChannel() {
+    if (bufferedIn == null || !bufferedIn.isDrained() ||
+        bufferedIn.getUnderlyingStream() != socketIn ||
+        !(socketIn instanceof ReadableByteChannel)) {
+      return null;
+    }
+    return (ReadableByteChannel) socketIn;
+  }
+
+  /**
+   * A BufferedInputStream which can tell whether everything it has read
+   * from the underlying stream has been consumed, so that reading can
+   * safely continue from the underlying stream directly.
+   */
+  private static final class DrainableBufferedInputStream
+      extends BufferedInputStream {
+    DrainableBufferedInputStream(InputStream in, int size) {
+      super(in, size);
+    }
+
+    InputStream getUnderlyingStream() {
+      return in;
+    }
+
+    synchronized boolean isDrained() {
+      return pos >= count;
+    }
+  }
+
   /**
    * Separated for testing.
    */
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Schedules the block data reads of all the DataXceivers reading from a
+ * volume, so that each disk has a bounded number of reads outstanding
+ * however many clients are reading from it.
+ *
+ * Reads beyond the queue depth of a volume wait for a turn. Turns are given
+ * in arrival order, or, with elevator ordering, by block file and then by
+ * offset: to the waiting read of the same file as the last read started, at
+ * the lowest offset at or after it, or else to the waiting read of the next
+ * file by name, wrapping around to the first. This serves the reads of a
+ * block file together, and in order within it. Where the block files lie on
+ * the disk relative to each other is not known, so no order across files is
+ * meant by it.
+ *
+ * Only reads through streams are scheduled. A transferTo both reads the disk
+ * and writes the socket, so a turn would be held while the socket is slow.
+ */
+@InterfaceAudience.Private
+class DiskReadScheduler {
+  /** A read waiting for its turn. */
+  private static final class Request {
+    private final String file;
+    private final long offset;
+    private final long seq;
+    private boolean granted = false;
+
+    Request(String file, long offset, long seq) {
+      this.file = file;
+      this.offset = offset;
+      this.seq = seq;
+    }
+  }
+
+  private static final Comparator<Request> ARRIVAL_ORDER =
+      new Comparator<Request>() {
+        @Override
+        public int compare(Request a, Request b) {
+          return Long.compare(a.seq, b.seq);
+        }
+      };
+
+  private static final Comparator<Request> FILE_ORDER =
+      new Comparator<Request>() {
+        @Override
+        public int compare(Request a, Request b) {
+          int c = a.file.compareTo(b.file);
+          if (c == 0) {
+            c = Long.compare(a.offset, b.offset);
+          }
+          return c != 0 ? c : Long.compare(a.seq, b.seq);
+        }
+      };
+
+  /** The reads of a volume, both started and waiting. */
+  private final class VolumeQueue {
+    private final TreeSet<Request> waiting =
+        new TreeSet<>(elevator ? FILE_ORDER : ARRIVAL_ORDER);
+    private int active = 0;
+    private long nextSeq = 0;
+    private String lastFile = "";
+    private long lastOffset = 0;
+
+    synchronized void acquire(FsVolumeSpi volume, String file, long offset)
+        throws InterruptedIOException {
+      if (active < queueDepth) {
+        active++;
+        lastFile = file;
+        lastOffset = offset;
+        return;
+      }
+      Request request = new Request(file, offset, nextSeq++);
+      waiting.add(request);
+      try {
+        while (!request.granted) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        if (request.granted) {
+          release();
+        } else {
+          waiting.remove(request);
+        }
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while waiting to read from " + volume);
+      }
+    }
+
+    synchronized void release() {
+      active--;
+      if (waiting.isEmpty()) {
+        return;
+      }
+      Request next = null;
+      if (elevator) {
+        next = waiting.ceiling(
+            new Request(lastFile, lastOffset, Long.MIN_VALUE));
+      }
+      if (next == null) {
+        next = waiting.first();
+      }
+      waiting.remove(next);
+      next.granted = true;
+      active++;
+      lastFile = next.file;
+      lastOffset = next.offset;
+      notifyAll();
+    }
+
+    synchronized int getNumWaiting() {
+      return waiting.size();
+    }
+  }
+
+  private final int queueDepth;
+  private final boolean elevator;
+  private final ConcurrentMap<FsVolumeSpi, VolumeQueue> queues =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param queueDepth the number of reads each volume serves at once, or
+   *                   0 to not schedule reads
+   * @param elevator true to order waiting reads by block file and offset
+   */
+  DiskReadScheduler(int queueDepth, boolean elevator) {
+    this.queueDepth = queueDepth;
+    this.elevator = elevator;
+  }
+
+  /**
+   * Wait for a turn to read from a volume at the position of a file.
+   *
+   * @return true if a turn was taken, which must be given back with
+   *         {@link #release(FsVolumeSpi)} once the read is done.
+   */
+  boolean acquire(@Nullable FsVolumeSpi volume, String file,
+      FileChannel channel) throws IOException {
+    if (queueDepth <= 0 || volume == null) {
+      return false;
+    }
+    return acquire(volume, file, elevator ? channel.position() : 0);
+  }
+
+  /**
+   * Wait for a turn to read from a volume at an offset of a file.
+   *
+   * @return true if a turn was taken, which must be given back with
+   *         {@link #release(FsVolumeSpi)} once the read is done.
+   */
+  boolean acquire(@Nullable FsVolumeSpi volume, String file, long offset)
+      throws InterruptedIOException {
+    if (queueDepth <= 0 || volume == null) {
+      return false;
+    }
+    getQueue(volume).acquire(volume, file, offset);
+    return true;
+  }
+
+  void release(FsVolumeSpi volume) {
+    getQueue(volume).release();
+  }
+
+  boolean isEnabled() {
+    return queueDepth > 0;
+  }
+
+  @VisibleForTesting
+  int getNumWaiting(FsVolumeSpi volume) {
+    return getQueue(volume).getNumWaiting();
+  }
+
+  private VolumeQueue getQueue(FsVolumeSpi volume) {
+    VolumeQueue queue = queues.get(volume);
+    if (queue == null) {
+      VolumeQueue newQueue = new VolumeQueue();
+      queue = queues.putIfAbsent(volume, newQueue);
+      if (queue == null) {
+        queue = newQueue;
+      }
+    }
+    return queue;
+  }
+}
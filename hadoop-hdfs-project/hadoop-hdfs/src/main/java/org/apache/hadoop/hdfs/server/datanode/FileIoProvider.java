@@ -49,6 +49,7 @@
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.CopyOption;
 import java.nio.file.Files;
@@ -79,10 +80,12 @@ public class FileIoProvider {
       FileIoProvider.class);
 
   private final FileIoEvents eventHooks;
+  private final DiskReadScheduler readScheduler;
 
   /**
    * @param conf  Configuration object. May be null. When null,
-   *              the event handlers are no-ops.
+   *              the event handlers are no-ops and reads are not
+   *              scheduled.
    */
   public FileIoProvider(@Nullable Configuration conf) {
     if (conf != null) {
@@ -91,8 +94,16 @@ public FileIoProvider(@Nullable Configuration conf) {
           DefaultFileIoEvents.class,
           FileIoEvents.class);
       eventHooks = ReflectionUtils.newInstance(clazz, conf);
+      readScheduler = new DiskReadScheduler(
+          conf.getInt(
+              DFSConfigKeys.DFS_DATANODE_READ_SCHEDULER_QUEUE_DEPTH_KEY,
+              DFSConfigKeys.DFS_DATANODE_READ_SCHEDULER_QUEUE_DEPTH_DEFAULT),
+          conf.getBoolean(
+              DFSConfigKeys.DFS_DATANODE_READ_SCHEDULER_ELEVATOR_KEY,
+              DFSConfigKeys.DFS_DATANODE_READ_SCHEDULER_ELEVATOR_DEFAULT));
     } else {
       eventHooks = new DefaultFileIoEvents();
+      readScheduler = new DiskReadScheduler(0, false);
     }
   }
 
@@ -162,6 +173,32 @@ public void sync(
     }
   }
 
+  /**
+   * Write the remaining bytes of a buffer to the given
+   * {@link FileOutputStream} through its channel. Unlike
+   * {@link FileOutputStream#write(byte[], int, int)}, a direct buffer is
+   * written without first being copied.
+   *
+   * @param  volume target volume. null if unavailable.
+   * @throws IOException
+   */
+  public void write(
+      @Nullable FsVolumeSpi volume, FileOutputStream fos, ByteBuffer buf)
+      throws IOException {
+    final int len = buf.remaining();
+    final long begin = eventHooks.beforeFileIo(volume, WRITE, len);
+    try {
+      final FileChannel ch = fos.getChannel();
+      while (buf.hasRemaining()) {
+        ch.write(buf);
+      }
+      eventHooks.afterFileIo(volume, WRITE, begin, len);
+    } catch (Exception e) {
+      eventHooks.onFailure(volume, WRITE, e, begin);
+      throw e;
+    }
+  }
+
   /**
    * Call sync_file_range on the given file descriptor.
    *
@@ -258,6 +295,8 @@ public void transferToSocketFully(
       @Nullable FsVolumeSpi volume, SocketOutputStream sockOut,
       FileChannel fileCh, long position, int count,
       LongWritable waitTime, LongWritable transferTime) throws IOException {
+    // Not scheduled, since the disk read cannot be told apart from the
+    // socket write, which may wait for a slow reader.
     final long begin = eventHooks.beforeFileIo(volume, TRANSFER, count);
     try {
       sockOut.transferToFully(fileCh, position, count,
@@ -401,7 +440,7 @@ public FileInputStream getShareDeleteFileInputStream(
     final long begin = eventHooks.beforeMetadataOp(volume, OPEN);
     FileInputStream fis = null;
     try {
-      fis = new WrappedFileInputStream(volume,
+      fis = new WrappedFileInputStream(volume, f,
           NativeIO.getShareDeleteFileDescriptor(f, offset));
       eventHooks.afterMetadataOp(volume, OPEN, begin);
       return fis;
@@ -432,7 +471,7 @@ public FileInputStream openAndSeek(
     final long begin = eventHooks.beforeMetadataOp(volume, OPEN);
     FileInputStream fis = null;
     try {
-      fis = new WrappedFileInputStream(volume,
+      fis = new WrappedFileInputStream(volume, f,
           FsDatasetUtil.openAndSeek(f, offset));
       eventHooks.afterMetadataOp(volume, OPEN, begin);
       return fis;
@@ -774,6 +813,8 @@ public boolean exists(@Nullable FsVolumeSpi volume, File f) {
    */
   private final class WrappedFileInputStream extends FileInputStream {
     private @Nullable final FsVolumeSpi volume;
+    /** The file read, which reads are scheduled by. */
+    private final String path;
 
     /**
      * {@inheritDoc}.
@@ -782,15 +823,17 @@ private WrappedFileInputStream(@Nullable FsVolumeSpi volume, File f)
         throws FileNotFoundException {
       super(f);
       this.volume = volume;
+      this.path = f.getPath();
     }
 
     /**
      * {@inheritDoc}.
      */
     private WrappedFileInputStream(
-        @Nullable FsVolumeSpi volume, FileDescriptor fd) {
+        @Nullable FsVolumeSpi volume, File f, FileDescriptor fd) {
       super(fd);
       this.volume = volume;
+      this.path = f.getPath();
     }
 
     /**
@@ -814,15 +857,7 @@ public int read() throws IOException {
      */
     @Override
     public int read(@Nonnull byte[] b) throws IOException {
-      final long begin = eventHooks.beforeFileIo(volume, READ, b.length);
-      try {
-        int numBytesRead = super.read(b);
-        eventHooks.afterFileIo(volume, READ, begin, numBytesRead);
-        return numBytesRead;
-      } catch(Exception e) {
-        eventHooks.onFailure(volume, READ, e, begin);
-        throw e;
-      }
+      return read(b, 0, b.length);
     }
 
     /**
@@ -830,14 +865,24 @@ public int read(@Nonnull byte[] b) throws IOException {
      */
     @Override
     public int read(@Nonnull byte[] b, int off, int len) throws IOException {
-      final long begin = eventHooks.beforeFileIo(volume, READ, len);
+      // getChannel() creates the channel on first use, so only call it when
+      // reads are scheduled.
+      final boolean scheduled = readScheduler.isEnabled() &&
+          readScheduler.acquire(volume, path, getChannel());
       try {
-        int numBytesRead = super.read(b, off, len);
-        eventHooks.afterFileIo(volume, READ, begin, numBytesRead);
-        return numBytesRead;
-      } catch(Exception e) {
-        eventHooks.onFailure(volume, READ, e, begin);
-        throw e;
+        final long begin = eventHooks.beforeFileIo(volume, READ, len);
+        try {
+          int numBytesRead = super.read(b, off, len);
+          eventHooks.afterFileIo(volume, READ, begin, numBytesRead);
+          return numBytesRead;
+        } catch(Exception e) {
+          eventHooks.onFailure(volume, READ, e, begin);
+          throw e;
+        }
+      } finally {
+        if (scheduled) {
+          readScheduler.release(volume);
+        }
       }
     }
   }
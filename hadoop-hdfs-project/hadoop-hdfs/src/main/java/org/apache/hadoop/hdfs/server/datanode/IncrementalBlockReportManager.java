@@ -112,16 +112,28 @@ int putMissing(ReceivedDeletedBlockInfo[] rdbis) {
   /** The time interval between two IBRs. */
   private final long ibrInterval;
 
+  /**
+   * The number of pending blocks at which an IBR is sent without waiting
+   * for the interval to elapse, or 0 for no limit.
+   */
+  private final int maxPendingBlocks;
+
+  /** The number of blocks in the pendingIBRs. */
+  private volatile int numPendingBlocks = 0;
+
   /** The timestamp of the last IBR. */
   private volatile long lastIBR;
 
-  IncrementalBlockReportManager(final long ibrInterval) {
+  IncrementalBlockReportManager(final long ibrInterval,
+      final int maxPendingBlocks) {
     this.ibrInterval = ibrInterval;
+    this.maxPendingBlocks = maxPendingBlocks;
     this.lastIBR = monotonicNow() - ibrInterval;
   }
 
   boolean sendImmediately() {
-    return readyToSend && monotonicNow() - ibrInterval >= lastIBR;
+    return readyToSend && (monotonicNow() - ibrInterval >= lastIBR ||
+        (maxPendingBlocks > 0 && numPendingBlocks >= maxPendingBlocks));
   }
 
   synchronized void waitTillNextIBR(long waitTime) {
@@ -147,13 +159,15 @@ private synchronized StorageReceivedDeletedBlocks[] generateIBRs() {
         reports.add(new StorageReceivedDeletedBlocks(entry.getKey(), rdbi));
       }
     }
+    numPendingBlocks = 0;
     readyToSend = false;
     return reports.toArray(new StorageReceivedDeletedBlocks[reports.size()]);
   }
 
   private synchronized void putMissing(StorageReceivedDeletedBlocks[] reports) {
     for (StorageReceivedDeletedBlocks r : reports) {
-      pendingIBRs.get(r.getStorage()).putMissing(r.getBlocks());
+      numPendingBlocks +=
+          pendingIBRs.get(r.getStorage()).putMissing(r.getBlocks());
     }
     if (reports.length > 0) {
       readyToSend = true;
@@ -216,10 +230,12 @@ synchronized void addRDBI(ReceivedDeletedBlockInfo rdbi,
     // There may only be one such entry.
     for (PerStorageIBR perStorage : pendingIBRs.values()) {
       if (perStorage.remove(rdbi.getBlock()) != null) {
+        numPendingBlocks--;
         break;
       }
     }
     getPerStorageIBR(storage).put(rdbi);
+    numPendingBlocks++;
   }
 
   synchronized void notifyNamenodeBlock(ReceivedDeletedBlockInfo rdbi,
@@ -261,6 +277,12 @@ synchronized void triggerDeletionReportForTests() {
 
   void clearIBRs() {
     pendingIBRs.clear();
+    numPendingBlocks = 0;
+  }
+
+  @VisibleForTesting
+  int getNumPendingBlocks() {
+    return numPendingBlocks;
   }
 
   @VisibleForTesting
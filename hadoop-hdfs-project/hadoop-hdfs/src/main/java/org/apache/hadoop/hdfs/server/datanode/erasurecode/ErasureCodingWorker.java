@@ -17,16 +17,23 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.erasurecode;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
-import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.protocol.BlockECReconstructionCommand.BlockECReconstructionInfo;
 import org.apache.hadoop.util.Daemon;
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +55,20 @@ public final class ErasureCodingWorker {
   private ThreadPoolExecutor stripedReconstructionPool;
   private ThreadPoolExecutor stripedReadPool;
 
+  /** The maximum number of reconstruction tasks run at once. */
+  private final int maxRunningTasks;
+  /**
+   * The maximum number of running reconstruction tasks which read from the
+   * same source DataNode, or 0 for no limit.
+   */
+  private final int maxStreamsPerSource;
+  /** Tasks waiting for their turn, in the order they were received. */
+  private final LinkedList<StripedBlockReconstructor> pendingTasks =
+      new LinkedList<>();
+  /** The number of running tasks which read from each source DataNode. */
+  private final Map<DatanodeInfo, Integer> sourceStreams = new HashMap<>();
+  private int numRunningTasks = 0;
+
   public ErasureCodingWorker(Configuration conf, DataNode datanode) {
     this.datanode = datanode;
     this.conf = conf;
@@ -55,9 +76,13 @@ public ErasureCodingWorker(Configuration conf, DataNode datanode) {
     initializeStripedReadThreadPool(conf.getInt(
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_READ_THREADS_KEY,
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_READ_THREADS_DEFAULT));
-    initializeStripedBlkReconstructionThreadPool(conf.getInt(
+    maxRunningTasks = conf.getInt(
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_KEY,
-        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_DEFAULT));
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_DEFAULT);
+    initializeStripedBlkReconstructionThreadPool(maxRunningTasks);
+    maxStreamsPerSource = conf.getInt(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_MAX_STREAMS_PER_SOURCE_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_MAX_STREAMS_PER_SOURCE_DEFAULT);
   }
 
   private void initializeStripedReadThreadPool(int num) {
@@ -92,14 +117,33 @@ public void rejectedExecution(Runnable runnable,
   private void initializeStripedBlkReconstructionThreadPool(int numThreads) {
     LOG.debug("Using striped block reconstruction; pool threads={}",
         numThreads);
-    stripedReconstructionPool = DFSUtilClient.getThreadPoolExecutor(2,
-        numThreads, 60, "StripedBlockReconstruction-", false);
+    // The tasks are only submitted when there is a thread for them, but a
+    // thread may still be finishing the task before.
+    stripedReconstructionPool = new ThreadPoolExecutor(numThreads,
+        numThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new Daemon.DaemonFactory() {
+          private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = super.newThread(r);
+            t.setName("StripedBlockReconstruction-" +
+                threadIndex.getAndIncrement());
+            return t;
+          }
+        });
     stripedReconstructionPool.allowCoreThreadTimeOut(true);
   }
 
   /**
    * Handles the Erasure Coding reconstruction work commands.
    *
+   * The tasks are queued, and run as soon as there is a free thread, and
+   * none of their source DataNodes is read from by
+   * {@link #maxStreamsPerSource} running tasks already. Queued tasks count
+   * as transfers in progress, so that the NameNode does not hand out more
+   * than the DataNode can take.
+   *
    * @param ecTasks BlockECReconstructionInfo
    *
    */
@@ -115,7 +159,11 @@ public void processErasureCodingTasks(
         final StripedBlockReconstructor task =
             new StripedBlockReconstructor(this, stripedReconInfo);
         if (task.hasValidTargets()) {
-          stripedReconstructionPool.submit(task);
+          synchronized (this) {
+            pendingTasks.add(task);
+            datanode.incrementXmitsInProgress();
+            datanode.getMetrics().incrECReconstructionQueuedTasks();
+          }
         } else {
           LOG.warn("No missing internal block. Skip reconstruction for task:{}",
               reconInfo);
@@ -125,6 +173,91 @@ public void processErasureCodingTasks(
             reconInfo.getExtendedBlock().getLocalBlock(), e);
       }
     }
+    startTasks();
+  }
+
+  /**
+   * Start the queued tasks which can run now, oldest first.
+   */
+  private synchronized void startTasks() {
+    Iterator<StripedBlockReconstructor> it = pendingTasks.iterator();
+    while (numRunningTasks < maxRunningTasks && it.hasNext()) {
+      StripedBlockReconstructor task = it.next();
+      if (!hasSourceStreams(task)) {
+        continue;
+      }
+      it.remove();
+      datanode.getMetrics().decrECReconstructionQueuedTasks();
+      try {
+        stripedReconstructionPool.submit(task);
+      } catch (RejectedExecutionException e) {
+        // The worker is shutting down, so the task will never run.
+        LOG.warn("Failed to start reconstruction of striped block {}",
+            task.getBlockGroup(), e);
+        datanode.decrementXmitsInProgress();
+        continue;
+      }
+      numRunningTasks++;
+      datanode.getMetrics().incrECReconstructionRunningTasks();
+      for (DatanodeInfo source : task.getSources()) {
+        if (source != null) {
+          Integer streams = sourceStreams.get(source);
+          sourceStreams.put(source, streams == null ? 1 : streams + 1);
+        }
+      }
+    }
+  }
+
+  private boolean hasSourceStreams(StripedBlockReconstructor task) {
+    if (maxStreamsPerSource <= 0) {
+      return true;
+    }
+    for (DatanodeInfo source : task.getSources()) {
+      Integer streams = source == null ? null : sourceStreams.get(source);
+      if (streams != null && streams >= maxStreamsPerSource) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Called by a task once it is done, to let the queued tasks run.
+   */
+  void taskFinished(StripedBlockReconstructor task) {
+    synchronized (this) {
+      numRunningTasks--;
+      datanode.getMetrics().decrECReconstructionRunningTasks();
+      for (DatanodeInfo source : task.getSources()) {
+        if (source != null) {
+          Integer streams = sourceStreams.get(source);
+          if (streams == null || streams <= 1) {
+            sourceStreams.remove(source);
+          } else {
+            sourceStreams.put(source, streams - 1);
+          }
+        }
+      }
+      datanode.decrementXmitsInProgress();
+    }
+    startTasks();
+  }
+
+  /**
+   * @return the number of reconstruction tasks waiting for their turn.
+   */
+  @VisibleForTesting
+  public synchronized int getNumPendingTasks() {
+    return pendingTasks.size();
+  }
+
+  /**
+   * @return the number of running reconstruction tasks which read from each
+   *         source DataNode.
+   */
+  @VisibleForTesting
+  public synchronized Map<DatanodeInfo, Integer> getSourceStreams() {
+    return new HashMap<>(sourceStreams);
   }
 
   DataNode getDatanode() {
@@ -21,7 +21,7 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hadoop.classification.InterfaceAudience;
-import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 
 /**
  * StripedBlockReconstructor reconstruct one or more missed striped block in
@@ -48,8 +48,8 @@ boolean hasValidTargets() {
 
   @Override
   public void run() {
-    getDatanode().incrementXmitsInProgress();
     try {
+      DataNodeFaultInjector.get().startStripedBlockReconstruction();
       initDecoderIfNecessary();
 
       getStripedReader().init();
@@ -66,13 +66,15 @@ public void run() {
       LOG.warn("Failed to reconstruct striped block: {}", getBlockGroup(), e);
       getDatanode().getMetrics().incrECFailedReconstructionTasks();
     } finally {
-      getDatanode().decrementXmitsInProgress();
-      final DataNodeMetrics metrics = getDatanode().getMetrics();
-      metrics.incrECReconstructionTasks();
-      metrics.incrECReconstructionBytesRead(getBytesRead());
-      metrics.incrECReconstructionBytesWritten(getBytesWritten());
-      getStripedReader().close();
-      stripedWriter.close();
+      try {
+        getDatanode().getMetrics().incrECReconstructionTasks();
+        reportBytesTransferred();
+        getStripedReader().close();
+        stripedWriter.close();
+      } finally {
+        // Let the queued tasks run even if closing failed.
+        getWorker().taskFinished(this);
+      }
     }
   }
 
@@ -96,6 +98,7 @@ void reconstruct() throws IOException {
       }
 
       updatePositionInBlock(toReconstructLen);
+      reportBytesTransferred();
 
       clearBuffers();
     }
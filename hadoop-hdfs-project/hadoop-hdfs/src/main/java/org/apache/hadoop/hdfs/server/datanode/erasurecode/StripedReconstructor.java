@@ -24,6 +24,7 @@
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.io.ElasticByteBufferPool;
@@ -101,10 +102,12 @@ abstract class StripedReconstructor {
   protected static final Logger LOG = DataNode.LOG;
 
   private final Configuration conf;
+  private final ErasureCodingWorker worker;
   private final DataNode datanode;
   private final ErasureCodingPolicy ecPolicy;
   private RawErasureDecoder decoder;
   private final ExtendedBlock blockGroup;
+  private final DatanodeInfo[] sources;
   private static final ByteBufferPool BUFFER_POOL = new ElasticByteBufferPool();
 
   // position in striped internal block
@@ -118,9 +121,12 @@ abstract class StripedReconstructor {
   // metrics
   private AtomicLong bytesRead = new AtomicLong(0);
   private AtomicLong bytesWritten = new AtomicLong(0);
+  private long bytesReadReported = 0;
+  private long bytesWrittenReported = 0;
 
   StripedReconstructor(ErasureCodingWorker worker,
       StripedReconstructionInfo stripedReconInfo) {
+    this.worker = worker;
     this.stripedReadPool = worker.getStripedReadPool();
     this.datanode = worker.getDatanode();
     this.conf = worker.getConf();
@@ -131,6 +137,7 @@ abstract class StripedReconstructor {
       liveBitSet.set(stripedReconInfo.getLiveIndices()[i]);
     }
     blockGroup = stripedReconInfo.getBlockGroup();
+    sources = stripedReconInfo.getSources();
     stripedReader = new StripedReader(this, datanode, conf, stripedReconInfo);
 
     cachingStrategy = CachingStrategy.newDefaultStrategy();
@@ -154,6 +161,20 @@ public long getBytesWritten() {
     return bytesWritten.get();
   }
 
+  /**
+   * Add the bytes read and written since the last call to the DataNode
+   * metrics, so that they show the progress of long running tasks.
+   */
+  void reportBytesTransferred() {
+    final DataNodeMetrics metrics = datanode.getMetrics();
+    final long read = getBytesRead();
+    final long written = getBytesWritten();
+    metrics.incrECReconstructionBytesRead(read - bytesReadReported);
+    metrics.incrECReconstructionBytesWritten(written - bytesWrittenReported);
+    bytesReadReported = read;
+    bytesWrittenReported = written;
+  }
+
   /**
    * Reconstruct one or more missed striped block in the striped block group,
    * the minimum number of live striped blocks should be no less than data
@@ -223,6 +244,10 @@ ExtendedBlock getBlockGroup() {
     return blockGroup;
   }
 
+  DatanodeInfo[] getSources() {
+    return sources;
+  }
+
   BitSet getLiveBitSet() {
     return liveBitSet;
   }
@@ -254,4 +279,8 @@ Configuration getConf() {
   DataNode getDatanode() {
     return datanode;
   }
+
+  ErasureCodingWorker getWorker() {
+    return worker;
+  }
 }
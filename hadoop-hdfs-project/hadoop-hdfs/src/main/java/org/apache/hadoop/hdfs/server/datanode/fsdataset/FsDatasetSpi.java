@@ -491,6 +491,14 @@ void checkBlock(ExtendedBlock b, long minLength, ReplicaState state)
    */
   boolean isCached(String bpid, long blockId);
 
+  /**
+   * Notes that a client has been given the files of a block for
+   * short-circuit reads, which may lead to the block being cached.
+   * @param bpid Block pool id
+   * @param blockId - block id
+   */
+  void onShortCircuitRead(String bpid, long blockId);
+
     /**
      * Check if all the data directories are healthy
      * @return A set of unhealthy data directories.
@@ -22,6 +22,7 @@
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
@@ -148,6 +149,36 @@ public void writeDataToDisk(byte[] b, int off, int len)
     dataOut.write(b, off, len);
   }
 
+  /**
+   * Write the remaining bytes of the buffer to the data stream. Direct
+   * buffers are written through the file channel without being copied.
+   */
+  public void writeDataToDisk(ByteBuffer b) throws IOException {
+    write(dataOut, b);
+  }
+
+  /**
+   * Write the remaining bytes of the buffer to the checksum stream. Direct
+   * buffers are written through the file channel without being copied, so
+   * anything buffered ahead of the checksum stream must be flushed first.
+   */
+  public void writeChecksumToDisk(ByteBuffer b) throws IOException {
+    write(checksumOut, b);
+  }
+
+  private void write(OutputStream out, ByteBuffer b) throws IOException {
+    if (b.hasArray()) {
+      out.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+      b.position(b.limit());
+    } else if (out instanceof FileOutputStream) {
+      fileIoProvider.write(volume, (FileOutputStream) out, b);
+    } else {
+      byte[] buf = new byte[b.remaining()];
+      b.get(buf);
+      out.write(buf);
+    }
+  }
+
   public void syncFileRangeIfPossible(long offset, long nbytes,
       int flags) throws NativeIOException {
     fileIoProvider.syncFileRange(
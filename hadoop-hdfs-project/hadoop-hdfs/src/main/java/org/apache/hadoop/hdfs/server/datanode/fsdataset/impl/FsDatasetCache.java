@@ -22,6 +22,10 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_TIMEOUT_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_POLLING_MS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_POLLING_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_KEY;
 
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -32,7 +36,9 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -61,6 +67,13 @@
  * Manages caching for an FsDatasetImpl by using the mmap(2) and mlock(2)
  * system calls to lock blocks into memory. Block checksums are verified upon
  * entry into the cache.
+ *
+ * Besides the blocks the NameNode asks it to cache, the DataNode may cache
+ * blocks which clients often open for short-circuit reads. Clients can anchor
+ * these and read them without checksums, sharing the locked pages between
+ * processes. Such blocks are kept within their own share of the cache, are
+ * not reported to the NameNode, and are uncached least recently read first
+ * to make room for others.
  */
 @InterfaceAudience.Private
 @InterfaceStability.Unstable
@@ -113,6 +126,11 @@ public boolean shouldAdvertise() {
   private static final Logger LOG = LoggerFactory.getLogger(FsDatasetCache
       .class);
 
+  /**
+   * The number of uncached blocks whose short-circuit reads are counted.
+   */
+  private static final int MAX_SHORT_CIRCUIT_READ_COUNTS = 10000;
+
   /**
    * Stores MappableBlock objects and the states they're in.
    */
@@ -131,6 +149,43 @@ public boolean shouldAdvertise() {
 
   private final long revocationPollingMs;
 
+  /**
+   * The part of the cache which may be used by blocks cached because of
+   * short-circuit reads.
+   */
+  private final long autoCacheMaxBytes;
+
+  /**
+   * The number of short-circuit reads after which a block is cached.
+   */
+  private final int autoCacheThreshold;
+
+  /**
+   * Short-circuit reads of uncached blocks, least recently read first.
+   */
+  private final LinkedHashMap<ExtendedBlockId, Integer> shortCircuitReads =
+      new LinkedHashMap<ExtendedBlockId, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<ExtendedBlockId, Integer> eldest) {
+          return size() > MAX_SHORT_CIRCUIT_READ_COUNTS;
+        }
+      };
+
+  /**
+   * Blocks cached because of short-circuit reads, with their lengths rounded
+   * up to the page size, least recently read first.  Every block here is also
+   * in the mappableBlockMap.
+   */
+  private final LinkedHashMap<ExtendedBlockId, Long> autoCachedBlocks =
+      new LinkedHashMap<ExtendedBlockId, Long>(16, 0.75f, true);
+
+  /**
+   * The bytes taken by the autoCachedBlocks, including those still being
+   * cached or uncached.
+   */
+  private final AtomicLong autoCachedBytes = new AtomicLong(0);
+
   /**
    * The approximate amount of cache space in use.
    *
@@ -268,6 +323,18 @@ public FsDatasetCache(FsDatasetImpl dataset) {
               ".  Reconfigure this to " + minRevocationPollingMs);
     }
     this.revocationPollingMs = confRevocationPollingMs;
+    this.autoCacheMaxBytes = dataset.datanode.getConf().getLongBytes(
+        DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_KEY,
+        DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_DEFAULT);
+    if (autoCacheMaxBytes > maxBytes) {
+      throw new RuntimeException("configured value " + autoCacheMaxBytes +
+          " for " + DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_KEY +
+          " is too high.  It must not be more than the value of " +
+          DFSConfigKeys.DFS_DATANODE_MAX_LOCKED_MEMORY_KEY + ", " + maxBytes);
+    }
+    this.autoCacheThreshold = Math.max(1, dataset.datanode.getConf().getInt(
+        DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_KEY,
+        DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_DEFAULT));
   }
 
   /**
@@ -280,7 +347,10 @@ synchronized List<Long> getCachedBlocks(String bpid) {
         mappableBlockMap.entrySet().iterator(); iter.hasNext(); ) {
       Entry<ExtendedBlockId, Value> entry = iter.next();
       if (entry.getKey().getBlockPoolId().equals(bpid)) {
-        if (entry.getValue().state.shouldAdvertise()) {
+        // The NameNode does not know about the blocks cached because of
+        // short-circuit reads, and would ask for them to be uncached.
+        if (entry.getValue().state.shouldAdvertise() &&
+            !autoCachedBlocks.containsKey(entry.getKey())) {
           blocks.add(entry.getKey().getBlockId());
         }
       }
@@ -297,6 +367,16 @@ synchronized void cacheBlock(long blockId, String bpid,
     ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
     Value prevValue = mappableBlockMap.get(key);
     if (prevValue != null) {
+      if (autoCachedBlocks.containsKey(key) &&
+          (prevValue.state == State.CACHING ||
+           prevValue.state == State.CACHED)) {
+        // The block was cached because of short-circuit reads.  It is now
+        // kept for the NameNode instead, and reported to it from now on.
+        autoCachedBytes.addAndGet(-autoCachedBlocks.remove(key));
+        LOG.debug("Block with id {}, pool {} was cached for short-circuit "
+            + "reads and is now cached for the NameNode", blockId, bpid);
+        return;
+      }
       LOG.debug("Block with id {}, pool {} already exists in the "
               + "FsDatasetCache with state {}", blockId, bpid, prevValue.state
       );
@@ -310,6 +390,107 @@ synchronized void cacheBlock(long blockId, String bpid,
         bpid);
   }
 
+  /**
+   * Note that a client has opened a block for short-circuit reads.
+   *
+   * @return true if the block has been read often enough that it should be
+   *         cached, and is not cached yet.
+   */
+  synchronized boolean noteShortCircuitRead(String bpid, long blockId) {
+    if (autoCacheMaxBytes <= 0) {
+      return false;
+    }
+    ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
+    if (mappableBlockMap.containsKey(key)) {
+      // Mark the block as recently read, if it was cached for such reads.
+      autoCachedBlocks.get(key);
+      return false;
+    }
+    Integer prevReads = shortCircuitReads.get(key);
+    int reads = (prevReads == null) ? 1 : prevReads + 1;
+    if (reads < autoCacheThreshold) {
+      shortCircuitReads.put(key, reads);
+      return false;
+    }
+    shortCircuitReads.remove(key);
+    return true;
+  }
+
+  /**
+   * Attempt to begin caching a block because of short-circuit reads,
+   * uncaching the least recently read such blocks if there is no room.
+   */
+  synchronized void autoCacheBlock(long blockId, String bpid,
+      String blockFileName, long length, long genstamp,
+      Executor volumeExecutor) {
+    ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
+    if (length == 0 || mappableBlockMap.containsKey(key)) {
+      return;
+    }
+    long bytes = roundUpPageSize(length);
+    if (!makeRoomForAutoCache(bytes)) {
+      LOG.debug("Not caching {} for short-circuit reads, since {} bytes "
+          + "cannot be freed in the {} bytes set aside for them.", key,
+          bytes, autoCacheMaxBytes);
+      return;
+    }
+    autoCachedBlocks.put(key, bytes);
+    autoCachedBytes.addAndGet(bytes);
+    mappableBlockMap.put(key, new Value(null, State.CACHING));
+    volumeExecutor.execute(
+        new CachingTask(key, blockFileName, length, genstamp));
+    LOG.debug("Initiating caching for {} because of short-circuit reads", key);
+  }
+
+  /**
+   * Uncache the least recently read blocks cached because of short-circuit
+   * reads, until there is room for some more bytes of them.  Nothing is
+   * uncached if that would not make enough room.
+   *
+   * @return true if there is room, or will be once the uncaching is done.
+   */
+  private boolean makeRoomForAutoCache(long bytes) {
+    long needed = autoCachedBytes.get() + bytes - autoCacheMaxBytes;
+    if (needed <= 0) {
+      return true;
+    }
+    List<ExtendedBlockId> victims = new ArrayList<ExtendedBlockId>();
+    for (Entry<ExtendedBlockId, Long> entry : autoCachedBlocks.entrySet()) {
+      State state = mappableBlockMap.get(entry.getKey()).state;
+      if (state == State.CACHING) {
+        continue;
+      }
+      // Blocks being uncached already will make room once they are done.
+      if (state == State.CACHED) {
+        victims.add(entry.getKey());
+      }
+      needed -= entry.getValue();
+      if (needed <= 0) {
+        break;
+      }
+    }
+    if (needed > 0) {
+      return false;
+    }
+    for (ExtendedBlockId victim : victims) {
+      LOG.debug("Uncaching {} to make room for blocks read more recently.",
+          victim);
+      uncacheBlock(victim.getBlockPoolId(), victim.getBlockId());
+    }
+    return true;
+  }
+
+  /**
+   * Forget a block which is no longer cached.
+   */
+  private synchronized void removeBlock(ExtendedBlockId key) {
+    mappableBlockMap.remove(key);
+    Long bytes = autoCachedBlocks.remove(key);
+    if (bytes != null) {
+      autoCachedBytes.addAndGet(-bytes);
+    }
+  }
+
   synchronized void uncacheBlock(String bpid, long blockId) {
     ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
     Value prevValue = mappableBlockMap.get(key);
@@ -477,7 +658,7 @@ public void run() {
           Preconditions.checkState(value.state == State.CACHING ||
                                    value.state == State.CACHING_CANCELLED);
           if (value.state == State.CACHING_CANCELLED) {
-            mappableBlockMap.remove(key);
+            removeBlock(key);
             LOG.warn("Caching of " + key + " was cancelled.");
             return;
           }
@@ -503,9 +684,7 @@ public void run() {
           }
           numBlocksFailedToCache.incrementAndGet();
 
-          synchronized (FsDatasetCache.this) {
-            mappableBlockMap.remove(key);
-          }
+          removeBlock(key);
         }
       }
     }
@@ -570,9 +749,7 @@ public void run() {
       Preconditions.checkArgument(value.state == State.UNCACHING);
 
       IOUtils.closeQuietly(value.mappableBlock);
-      synchronized (FsDatasetCache.this) {
-        mappableBlockMap.remove(key);
-      }
+      removeBlock(key);
       long newUsedBytes = release(value.mappableBlock.getLength());
       numBlocksCached.addAndGet(-1);
       dataset.datanode.getMetrics().incrBlocksUncached(1);
@@ -589,17 +766,19 @@ public void run() {
   // Stats related methods for FSDatasetMBean
 
   /**
-   * Get the approximate amount of cache space used.
+   * Get the approximate amount of cache space used, not counting the blocks
+   * cached because of short-circuit reads.
    */
   public long getCacheUsed() {
-    return usedBytesCount.get();
+    return Math.max(0, usedBytesCount.get() - autoCachedBytes.get());
   }
 
   /**
-   * Get the maximum amount of bytes we can cache.  This is a constant.
+   * Get the maximum amount of bytes we can cache, less the part set aside
+   * for blocks cached because of short-circuit reads.  This is a constant.
    */
   public long getCacheCapacity() {
-    return maxBytes;
+    return maxBytes - autoCacheMaxBytes;
   }
 
   public long getNumBlocksFailedToCache() {
@@ -70,6 +70,7 @@
 import org.apache.hadoop.hdfs.server.common.Storage;
 import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetricHelper;
 import org.apache.hadoop.hdfs.server.datanode.DataStorage;
 import org.apache.hadoop.hdfs.server.datanode.DatanodeUtil;
@@ -237,6 +238,8 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
 
   final ReplicaMap volumeMap;
   final Map<String, Set<Long>> deletingBlock;
+  /** Blocks whose rbw file is being created outside the dataset lock. */
+  private final Set<ExtendedBlock> creatingRbw = new HashSet<>();
   final RamDiskReplicaTracker ramDiskReplicaTracker;
   final RamDiskAsyncLazyPersistService asyncLazyPersistService;
 
@@ -1291,6 +1294,10 @@ public Replica recoverClose(ExtendedBlock b, long newGS,
   public ReplicaHandler createRbw(
       StorageType storageType, ExtendedBlock b, boolean allowLazyPersist)
       throws IOException {
+    // create a new block
+    final ExtendedBlock key = new ExtendedBlock(b.getBlockPoolId(),
+        b.getBlockId());
+    FsVolumeReference ref = null;
     try (AutoCloseableLock lock = datasetLock.acquire()) {
       ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
           b.getBlockId());
@@ -1299,8 +1306,10 @@ public ReplicaHandler createRbw(
             " already exists in state " + replicaInfo.getState() +
             " and thus cannot be created.");
       }
-      // create a new block
-      FsVolumeReference ref = null;
+      if (creatingRbw.contains(key)) {
+        throw new ReplicaAlreadyExistsException("Block " + b +
+            " is already being created and thus cannot be created.");
+      }
 
       // Use ramdisk only if block size is a multiple of OS page size.
       // This simplifies reservation for partially used replicas
@@ -1325,30 +1334,95 @@ public ReplicaHandler createRbw(
       if (ref == null) {
         ref = volumes.getNextVolume(storageType, b.getNumBytes());
       }
+      creatingRbw.add(key);
+    }
 
-      FsVolumeImpl v = (FsVolumeImpl) ref.getVolume();
-      // create an rbw file to hold block in the designated volume
+    try {
+      return createRbwOnVolume(b, ref, allowLazyPersist);
+    } finally {
+      try (AutoCloseableLock lock = datasetLock.acquire()) {
+        creatingRbw.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Create the rbw file of a block on the given volume and add the replica
+   * to the volume map. The caller must have marked the block as being
+   * created; the reference is released if the replica cannot be added.
+   */
+  private ReplicaHandler createRbwOnVolume(ExtendedBlock b,
+      FsVolumeReference ref, boolean allowLazyPersist) throws IOException {
+    FsVolumeImpl v = (FsVolumeImpl) ref.getVolume();
+    if (allowLazyPersist && !v.isTransientStorage()) {
+      datanode.getMetrics().incrRamDiskBlocksWriteFallback();
+    }
 
-      if (allowLazyPersist && !v.isTransientStorage()) {
-        datanode.getMetrics().incrRamDiskBlocksWriteFallback();
+    // create an rbw file to hold block in the designated volume. This is
+    // done without the dataset lock, so that a slow disk does not hold up
+    // operations on the other volumes.
+    ReplicaInPipeline newReplicaInfo;
+    try {
+      DataNodeFaultInjector.get().createRbwWithoutLock();
+      newReplicaInfo = v.createRbw(b);
+    } catch (IOException e) {
+      ReplicaInfo existing;
+      try (AutoCloseableLock lock = datasetLock.acquire()) {
+        existing = volumeMap.get(b.getBlockPoolId(), b.getBlockId());
+      } finally {
+        IOUtils.cleanup(null, ref);
       }
+      if (existing != null) {
+        throw new ReplicaAlreadyExistsException("Block " + b +
+            " already exists in state " + existing.getState() +
+            " and thus cannot be created.");
+      }
+      throw e;
+    }
 
-      ReplicaInPipeline newReplicaInfo;
-      try {
-        newReplicaInfo = v.createRbw(b);
-        if (newReplicaInfo.getReplicaInfo().getState() != ReplicaState.RBW) {
-          throw new IOException("CreateRBW returned a replica of state "
-              + newReplicaInfo.getReplicaInfo().getState()
-              + " for block " + b.getBlockId());
+    ReplicaInfo existing = null;
+    boolean volumeRemoved = false;
+    if (newReplicaInfo.getReplicaInfo().getState() == ReplicaState.RBW) {
+      try (AutoCloseableLock lock = datasetLock.acquire()) {
+        existing = volumeMap.get(b.getBlockPoolId(), b.getBlockId());
+        // The volume may have been hot swapped out while the lock was
+        // released, and a replica added now would point at it.
+        volumeRemoved = !volumes.getVolumes().contains(v);
+        if (existing == null && !volumeRemoved) {
+          volumeMap.add(b.getBlockPoolId(), newReplicaInfo.getReplicaInfo());
+          return new ReplicaHandler(newReplicaInfo, ref);
         }
-      } catch (IOException e) {
-        IOUtils.cleanup(null, ref);
-        throw e;
       }
+    }
 
-      volumeMap.add(b.getBlockPoolId(), newReplicaInfo.getReplicaInfo());
-      return new ReplicaHandler(newReplicaInfo, ref);
+    // The replica cannot be used, either because the volume returned it in
+    // an unexpected state, because the block was added by another path or
+    // because the volume was removed while the lock was released. Undo the
+    // creation of our rbw file.
+    try {
+      newReplicaInfo.releaseAllBytesReserved();
+      if (newReplicaInfo.getReplicaInfo().deleteBlockData()) {
+        v.onBlockFileDeletion(b.getBlockPoolId(), 0);
+      } else {
+        LOG.warn("Failed to delete rbw file for block " + b
+            + " on volume " + v);
+      }
+      newReplicaInfo.getReplicaInfo().deleteMetadata();
+    } finally {
+      IOUtils.cleanup(null, ref);
+    }
+    if (existing != null) {
+      throw new ReplicaAlreadyExistsException("Block " + b +
+          " already exists in state " + existing.getState() +
+          " and thus cannot be created.");
     }
+    if (volumeRemoved) {
+      throw new IOException("Volume " + v + " was removed while creating" +
+          " the rbw replica of block " + b);
+    }
+    throw new IOException("CreateRBW returned a replica of state "
+        + newReplicaInfo.getReplicaInfo().getState()
+        + " for block " + b.getBlockId());
   }
 
   @Override // FsDatasetSpi
@@ -1978,8 +2052,11 @@ public void invalidate(String bpid, ReplicaInfo block) {
 
   /**
    * Asynchronously attempts to cache a single block via {@link FsDatasetCache}.
+   *
+   * @param auto true to cache the block because of short-circuit reads,
+   *             rather than because the NameNode asked for it
    */
-  private void cacheBlock(String bpid, long blockId) {
+  private void cacheBlock(String bpid, long blockId, boolean auto) {
     FsVolumeImpl volume;
     String blockFileName;
     long length, genstamp;
@@ -2019,7 +2096,7 @@ private void cacheBlock(String bpid, long blockId) {
         }
         success = true;
       } finally {
-        if (!success) {
+        if (!success && !auto) {
           cacheManager.numBlocksFailedToCache.incrementAndGet();
         }
       }
@@ -2028,14 +2105,26 @@ private void cacheBlock(String bpid, long blockId) {
       genstamp = info.getGenerationStamp();
       volumeExecutor = volume.getCacheExecutor();
     }
-    cacheManager.cacheBlock(blockId, bpid, 
-        blockFileName, length, genstamp, volumeExecutor);
+    if (auto) {
+      cacheManager.autoCacheBlock(blockId, bpid,
+          blockFileName, length, genstamp, volumeExecutor);
+    } else {
+      cacheManager.cacheBlock(blockId, bpid,
+          blockFileName, length, genstamp, volumeExecutor);
+    }
   }
 
   @Override // FsDatasetSpi
   public void cache(String bpid, long[] blockIds) {
     for (int i=0; i < blockIds.length; i++) {
-      cacheBlock(bpid, blockIds[i]);
+      cacheBlock(bpid, blockIds[i], false);
+    }
+  }
+
+  @Override // FsDatasetSpi
+  public void onShortCircuitRead(String bpid, long blockId) {
+    if (cacheManager.noteShortCircuitRead(bpid, blockId)) {
+      cacheBlock(bpid, blockId, true);
     }
   }
 
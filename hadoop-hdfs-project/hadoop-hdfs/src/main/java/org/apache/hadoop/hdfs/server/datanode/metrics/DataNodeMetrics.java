@@ -140,6 +140,10 @@ public class DataNodeMetrics {
   MutableCounterLong ecReconstructionBytesRead;
   @Metric("Bytes written by erasure coding worker")
   MutableCounterLong ecReconstructionBytesWritten;
+  @Metric("Count of erasure coding reconstruction tasks waiting to run")
+  private MutableGaugeInt ecReconstructionQueuedTasks;
+  @Metric("Count of running erasure coding reconstruction tasks")
+  private MutableGaugeInt ecReconstructionRunningTasks;
 
   final MetricsRegistry registry = new MetricsRegistry("datanode");
   final String name;
@@ -462,4 +466,20 @@ public void incrECReconstructionBytesRead(long bytes) {
   public void incrECReconstructionBytesWritten(long bytes) {
     ecReconstructionBytesWritten.incr(bytes);
   }
+
+  public void incrECReconstructionQueuedTasks() {
+    ecReconstructionQueuedTasks.incr();
+  }
+
+  public void decrECReconstructionQueuedTasks() {
+    ecReconstructionQueuedTasks.decr();
+  }
+
+  public void incrECReconstructionRunningTasks() {
+    ecReconstructionRunningTasks.incr();
+  }
+
+  public void decrECReconstructionRunningTasks() {
+    ecReconstructionRunningTasks.decr();
+  }
 }
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+import static org.apache.hadoop.util.Time.now;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem.DefaultAuditLogger;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.namenode.top.TopAuditLogger;
+import org.apache.hadoop.ipc.CallerContext;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Hands audit events from the RPC handlers to a background thread, which
+ * formats them and passes them to the audit loggers.
+ *
+ * Only the built-in loggers are dispatched this way, since they do not
+ * depend on any state of the calling thread once the RPC protocol has been
+ * captured with the event. Other loggers must still be called directly.
+ * The time of each event is captured on the handler too, and the audit log
+ * lines are stamped with it rather than with the time they are written.
+ *
+ * When the queue is full, the handler either waits for room or drops the
+ * event, depending on the configured policy. Dropped events and the time
+ * events spend in the queue are reported through {@link NameNodeMetrics}.
+ * Once the dispatcher is stopped, events are logged on the handler thread.
+ */
+class AsyncAuditLogDispatcher implements Runnable {
+  static final Log LOG = LogFactory.getLog(AsyncAuditLogDispatcher.class);
+
+  /** Maximum number of events taken off the queue at once. */
+  private static final int MAX_BATCH_SIZE = 256;
+
+  /**
+   * How long a handler waits for room in a full queue before checking
+   * whether the dispatcher has been stopped.
+   */
+  private static final long FULL_QUEUE_WAIT_MS = 100;
+
+  /** An audit event, as captured on the handler thread. */
+  private static final class AuditEvent {
+    private final boolean succeeded;
+    private final String userName;
+    private final InetAddress addr;
+    private final String cmd;
+    private final String src;
+    private final String dst;
+    private final FileStatus status;
+    private final CallerContext callerContext;
+    private final UserGroupInformation ugi;
+    private final DelegationTokenSecretManager dtSecretManager;
+    private final String protocol;
+    private final long eventTime;
+    private final long queuedTime;
+
+    AuditEvent(boolean succeeded, String userName, InetAddress addr,
+        String cmd, String src, String dst, FileStatus status,
+        CallerContext callerContext, UserGroupInformation ugi,
+        DelegationTokenSecretManager dtSecretManager, String protocol) {
+      this.succeeded = succeeded;
+      this.userName = userName;
+      this.addr = addr;
+      this.cmd = cmd;
+      this.src = src;
+      this.dst = dst;
+      this.status = status;
+      this.callerContext = callerContext;
+      this.ugi = ugi;
+      this.dtSecretManager = dtSecretManager;
+      this.protocol = protocol;
+      this.eventTime = now();
+      this.queuedTime = monotonicNow();
+    }
+  }
+
+  private final List<AuditLogger> loggers;
+  private final BlockingQueue<AuditEvent> pendingEvents;
+  private final boolean blockWhenFull;
+  private Thread dispatchThread;
+  private volatile boolean running = false;
+  private volatile boolean stopped = false;
+
+  /**
+   * @param loggers the loggers to dispatch to, each of which must be
+   *                accepted by {@link #canDispatch(AuditLogger)}
+   * @param queueSize maximum number of events waiting to be logged
+   * @param blockWhenFull whether to wait for room in a full queue, rather
+   *                      than drop the event
+   */
+  AsyncAuditLogDispatcher(List<AuditLogger> loggers, int queueSize,
+      boolean blockWhenFull) {
+    Preconditions.checkArgument(queueSize > 0,
+        "Audit event queue size must be positive: %s", queueSize);
+    for (AuditLogger logger : loggers) {
+      Preconditions.checkArgument(canDispatch(logger),
+          "Cannot dispatch to %s", logger);
+    }
+    this.loggers = loggers;
+    this.pendingEvents = new ArrayBlockingQueue<AuditEvent>(queueSize);
+    this.blockWhenFull = blockWhenFull;
+  }
+
+  /**
+   * @return true if events for the logger can be logged from a thread other
+   *         than the RPC handler.
+   */
+  static boolean canDispatch(AuditLogger logger) {
+    if (logger instanceof DefaultAuditLogger) {
+      // Otherwise the lines would carry the time they were dispatched at.
+      return DefaultAuditLogger.canLogEventTime();
+    }
+    return logger instanceof TopAuditLogger;
+  }
+
+  synchronized void start() {
+    if (dispatchThread == null) {
+      running = true;
+      dispatchThread = new Thread(this, getClass().getSimpleName());
+      dispatchThread.setDaemon(true);
+      dispatchThread.start();
+    }
+  }
+
+  /**
+   * Stop the dispatch thread, then log any events still in the queue.
+   */
+  synchronized void stop() {
+    stopped = true;
+    if (dispatchThread != null) {
+      running = false;
+      try {
+        dispatchThread.interrupt();
+        dispatchThread.join();
+      } catch (InterruptedException e) {
+        // we're quitting anyway.
+      } finally {
+        dispatchThread = null;
+      }
+    }
+    List<AuditEvent> remaining = new ArrayList<AuditEvent>();
+    pendingEvents.drainTo(remaining);
+    dispatch(remaining);
+  }
+
+  /**
+   * Queue an audit event. Must be called on the RPC handler thread, since
+   * the RPC protocol is taken from the current call.
+   */
+  void logAuditEvent(boolean succeeded, String userName, InetAddress addr,
+      String cmd, String src, String dst, FileStatus status,
+      CallerContext callerContext, UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    AuditEvent event = new AuditEvent(succeeded, userName, addr, cmd, src,
+        dst, status, callerContext, ugi, dtSecretManager,
+        Server.getProtocol());
+    if (stopped) {
+      dispatch(Collections.singletonList(event));
+      return;
+    }
+    if (pendingEvents.offer(event)) {
+      logIfStopped(event);
+      return;
+    }
+    if (blockWhenFull) {
+      try {
+        // Nothing takes events off the queue once stopped, so don't wait
+        // for room forever.
+        while (!stopped) {
+          if (pendingEvents.offer(event, FULL_QUEUE_WAIT_MS,
+              TimeUnit.MILLISECONDS)) {
+            logIfStopped(event);
+            return;
+          }
+        }
+        dispatch(Collections.singletonList(event));
+        return;
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrAuditEventsDropped();
+    }
+  }
+
+  /**
+   * Log a queued event on the calling thread if the dispatcher was stopped
+   * after it was queued, and it missed the final drain of the queue.
+   */
+  private void logIfStopped(AuditEvent event) {
+    if (stopped && pendingEvents.remove(event)) {
+      dispatch(Collections.singletonList(event));
+    }
+  }
+
+  @VisibleForTesting
+  int getPendingEventCount() {
+    return pendingEvents.size();
+  }
+
+  @Override
+  public void run() {
+    List<AuditEvent> batch = new ArrayList<AuditEvent>(MAX_BATCH_SIZE);
+    while (running) {
+      try {
+        batch.add(pendingEvents.take());
+        pendingEvents.drainTo(batch, MAX_BATCH_SIZE - 1);
+        dispatch(batch);
+      } catch (InterruptedException ie) {
+        // stop() drains whatever is left.
+        break;
+      } catch (Throwable t) {
+        LOG.error("Failed to log audit events", t);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(List<AuditEvent> events) {
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    for (AuditEvent event : events) {
+      if (metrics != null) {
+        metrics.addAuditEventQueueTime(monotonicNow() - event.queuedTime);
+      }
+      for (AuditLogger logger : loggers) {
+        if (logger instanceof DefaultAuditLogger) {
+          ((DefaultAuditLogger) logger).logAuditEvent(event.succeeded,
+              event.userName, event.addr, event.cmd, event.src, event.dst,
+              event.status, event.callerContext, event.ugi,
+              event.dtSecretManager, event.protocol, event.eventTime);
+        } else {
+          logger.logAuditEvent(event.succeeded, event.userName, event.addr,
+              event.cmd, event.src, event.dst, event.status);
+        }
+      }
+    }
+  }
+}
@@ -48,6 +48,7 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.protobuf.ByteString;
 
 /**
  * An implementation of the abstract class {@link EditLogInputStream}, which
@@ -61,6 +62,7 @@ public class EditLogFileInputStream extends EditLogInputStream {
   private final long lastTxId;
   private final boolean isInProgress;
   private int maxOpSize;
+  private boolean opInstanceCacheDisabled = false;
   static private enum State {
     UNINIT,
     OPEN,
@@ -120,6 +122,23 @@ public static EditLogInputStream fromUrl(
     return new EditLogFileInputStream(new URLLog(connectionFactory, url),
         startTxId, endTxId, inProgress);
   }
+
+  /**
+   * Open an EditLogInputStream for edits already held in memory, such as
+   * those fetched from a JournalNode over RPC.
+   *
+   * @param data the log header followed by the serialized edits
+   * @param name a name for the source of the edits
+   * @param startTxId the expected starting txid
+   * @param endTxId the expected ending txid
+   * @param inProgress whether the log is in-progress
+   * @return a stream from which edits may be read
+   */
+  public static EditLogInputStream fromByteString(ByteString data,
+      String name, long startTxId, long endTxId, boolean inProgress) {
+    return new EditLogFileInputStream(new ByteStringLog(data, name),
+        startTxId, endTxId, inProgress);
+  }
   
   private EditLogFileInputStream(LogSource log,
       long firstTxId, long lastTxId,
@@ -159,6 +178,9 @@ private void init(boolean verifyLayoutVersion)
       }
       reader = FSEditLogOp.Reader.create(dataIn, tracker, logVersion);
       reader.setMaxOpSize(maxOpSize);
+      if (opInstanceCacheDisabled) {
+        reader.disableOpInstanceCache();
+      }
       state = State.OPEN;
     } finally {
       if (reader == null) {
@@ -401,6 +423,31 @@ public String getName() {
     }
   }
 
+  private static class ByteStringLog implements LogSource {
+    private final ByteString data;
+    private final String name;
+
+    public ByteStringLog(ByteString data, String name) {
+      this.data = data;
+      this.name = name;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return data.newInput();
+    }
+
+    @Override
+    public long length() {
+      return data.size();
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
   private static class URLLog implements LogSource {
     private final URL url;
     private long advertisedSize = -1;
@@ -473,8 +520,22 @@ public void setMaxOpSize(int maxOpSize) {
     }
   }
 
+  @Override
+  boolean disableOpInstanceCache() {
+    this.opInstanceCacheDisabled = true;
+    if (reader != null) {
+      reader.disableOpInstanceCache();
+    }
+    return true;
+  }
+
   @Override
   public boolean isLocalLog() {
     return log instanceof FileLog;
   }
+
+  @Override
+  public boolean isInMemory() {
+    return log instanceof ByteStringLog;
+  }
 }
@@ -204,9 +204,30 @@ FSEditLogOp getCachedOp() {
    */
   public abstract void setMaxOpSize(int maxOpSize);
 
+  /**
+   * Make every op returned by {@link #readOp()} a new instance, so that ops
+   * remain valid after later reads. This is needed when the ops are decoded
+   * on one thread and applied on another.
+   *
+   * @return true if the stream supports this; the default implementation
+   *         does not.
+   */
+  boolean disableOpInstanceCache() {
+    return false;
+  }
+
   /**
    * Returns true if we are currently reading the log from a local disk or an
    * even faster data source (e.g. a byte buffer).
    */
   public abstract boolean isLocalLog();
+
+  /**
+   * Returns true if the edits of this stream were already in memory when it
+   * was opened, such as those fetched from a JournalNode over RPC, rather
+   * than read from a file or downloaded.
+   */
+  public boolean isInMemory() {
+    return false;
+  }
 }
@@ -51,9 +51,9 @@
 import static org.apache.hadoop.util.Time.now;
 
 class FSDirStatAndListingOp {
-  static DirectoryListing getListingInt(FSDirectory fsd, final String srcArg,
-      byte[] startAfter, boolean needLocation) throws IOException {
-    final FSPermissionChecker pc = fsd.getPermissionChecker();
+  static DirectoryListing getListingInt(FSDirectory fsd, FSPermissionChecker pc,
+      final String srcArg, byte[] startAfter, boolean needLocation)
+      throws IOException {
     final INodesInPath iip = fsd.resolvePath(pc, srcArg, DirOp.READ);
 
     // Get file name when startAfter is an INodePath.  This is not the
@@ -86,6 +86,8 @@ static DirectoryListing getListingInt(FSDirectory fsd, final String srcArg,
   /**
    * Get the file info for a specific file.
    *
+   * @param pc the permission checker of the caller, which may be created
+   *        before taking the namesystem lock
    * @param srcArg The string representation of the path to the file
    * @param resolveLink whether to throw UnresolvedLinkException
    *        if src refers to a symlink
@@ -93,11 +95,9 @@ static DirectoryListing getListingInt(FSDirectory fsd, final String srcArg,
    * @return object containing information regarding the file
    *         or null if file not found
    */
-  static HdfsFileStatus getFileInfo(
-      FSDirectory fsd, String srcArg, boolean resolveLink)
-      throws IOException {
+  static HdfsFileStatus getFileInfo(FSDirectory fsd, FSPermissionChecker pc,
+      String srcArg, boolean resolveLink) throws IOException {
     DirOp dirOp = resolveLink ? DirOp.READ : DirOp.READ_LINK;
-    FSPermissionChecker pc = fsd.getPermissionChecker();
     final INodesInPath iip;
     if (pc.isSuperUser()) {
       // superuser can only get an ACE if an existing ancestor is a file.
@@ -117,15 +117,14 @@ static HdfsFileStatus getFileInfo(
   /**
    * Returns true if the file is closed
    */
-  static boolean isFileClosed(FSDirectory fsd, String src) throws IOException {
-    FSPermissionChecker pc = fsd.getPermissionChecker();
+  static boolean isFileClosed(FSDirectory fsd, FSPermissionChecker pc,
+      String src) throws IOException {
     final INodesInPath iip = fsd.resolvePath(pc, src, DirOp.READ);
     return !INodeFile.valueOf(iip.getLastINode(), src).isUnderConstruction();
   }
 
   static ContentSummary getContentSummary(
-      FSDirectory fsd, String src) throws IOException {
-    FSPermissionChecker pc = fsd.getPermissionChecker();
+      FSDirectory fsd, FSPermissionChecker pc, String src) throws IOException {
     final INodesInPath iip = fsd.resolvePath(pc, src, DirOp.READ_LINK);
     if (fsd.isPermissionEnabled()) {
       fsd.checkPermission(pc, iip, false, null, null, null,
@@ -507,6 +506,17 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
         throw new FileNotFoundException("File does not exist: " + iip.getPath());
       }
       else {
+        // Only the current state of a directory is cached; files are cheap
+        // to summarize.
+        final boolean cacheable = targetNode.isDirectory() &&
+            iip.getPathSnapshotId() == Snapshot.CURRENT_STATE_ID;
+        if (cacheable) {
+          ContentSummary cached =
+              fsd.getCachedContentSummary(targetNode.asDirectory());
+          if (cached != null) {
+            return cached;
+          }
+        }
         // Make it relinquish locks everytime contentCountLimit entries are
         // processed. 0 means disabled. I.e. blocking for the entire duration.
         ContentSummaryComputationContext cscc =
@@ -515,6 +525,9 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
         ContentSummary cs = targetNode.computeAndConvertContentSummary(
             iip.getPathSnapshotId(), cscc);
         fsd.addYieldCount(cscc.getYieldCount());
+        if (cacheable) {
+          fsd.cacheContentSummary(targetNode.asDirectory(), cs);
+        }
         return cs;
       }
     } finally {
@@ -22,12 +22,15 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension;
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.InvalidPathException;
 import org.apache.hadoop.fs.ParentNotDirectoryException;
 import org.apache.hadoop.fs.Path;
@@ -72,6 +75,7 @@
 import java.util.Collection;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -149,6 +153,9 @@ private static INodeDirectory createRoot(FSNamesystem namesystem) {
   private final int lsLimit;  // max list limit
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
+  // Recently computed content summaries of directories, by inode id, or
+  // null if they are not cached.
+  private final Cache<Long, ContentSummary> contentSummaryCache;
   private final INodeMap inodeMap; // Synchronized by dirLock
   private long yieldCount = 0; // keep track of lock yield count.
   private int quotaInitThreads;
@@ -257,7 +264,9 @@ public enum DirOp {
     this.dirLock = new ReentrantReadWriteLock(true); // fair
     this.inodeId = new INodeId();
     rootDir = createRoot(ns);
-    inodeMap = INodeMap.newInstance(rootDir);
+    inodeMap = INodeMap.newInstance(rootDir, conf.getFloat(
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT,
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT_DEFAULT));
     this.isPermissionEnabled = conf.getBoolean(
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_KEY,
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_DEFAULT);
@@ -312,6 +321,23 @@ public enum DirOp {
     this.contentSleepMicroSec = conf.getLong(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT);
+    long contentSummaryCacheExpiryMs = conf.getLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_EXPIRY_MS_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_EXPIRY_MS_DEFAULT);
+    if (contentSummaryCacheExpiryMs > 0) {
+      int contentSummaryCacheSize = conf.getInt(
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY,
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT);
+      Preconditions.checkArgument(contentSummaryCacheSize > 0,
+          "%s must be positive",
+          DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY);
+      this.contentSummaryCache = CacheBuilder.newBuilder()
+          .maximumSize(contentSummaryCacheSize)
+          .expireAfterWrite(contentSummaryCacheExpiryMs, TimeUnit.MILLISECONDS)
+          .build();
+    } else {
+      this.contentSummaryCache = null;
+    }
     
     // filesystem limits
     this.maxComponentLength = conf.getInt(
@@ -515,6 +541,31 @@ long getContentSleepMicroSec() {
     return contentSleepMicroSec;
   }
 
+  /**
+   * @return the content summary of the directory computed within the
+   *         configured expiry time, or null if there is none.
+   */
+  ContentSummary getCachedContentSummary(INodeDirectory dir) {
+    return contentSummaryCache == null ? null :
+        contentSummaryCache.getIfPresent(dir.getId());
+  }
+
+  void cacheContentSummary(INodeDirectory dir, ContentSummary summary) {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.put(dir.getId(), summary);
+    }
+  }
+
+  /**
+   * Drop all the cached content summaries, when the namespace is replaced or
+   * changed by loading edits.
+   */
+  void clearContentSummaryCache() {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.invalidateAll();
+    }
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -1416,6 +1467,7 @@ void reset() {
       inodeMap.clear();
       addToInodeMap(rootDir);
       nameCache.reset();
+      clearContentSummaryCache();
       inodeId.setCurrentValue(INodeId.LAST_RESERVED_ID);
     } finally {
       writeUnlock();
@@ -121,12 +121,22 @@ public class FSEditLogLoader {
   private long lastAppliedTxId;
   /** Total number of end transactions loaded. */
   private int totalEdits = 0;
+  /** Maximum number of ops to decode ahead of applying them. */
+  private int prefetchOps = 0;
   
   public FSEditLogLoader(FSNamesystem fsNamesys, long lastAppliedTxId) {
     this.fsNamesys = fsNamesys;
     this.blockManager = fsNamesys.getBlockManager();
     this.lastAppliedTxId = lastAppliedTxId;
   }
+
+  /**
+   * Set the maximum number of ops which are read and decoded on a
+   * background thread ahead of being applied. 0 disables prefetching.
+   */
+  void setPrefetchOps(int prefetchOps) {
+    this.prefetchOps = prefetchOps;
+  }
   
   long loadFSEdits(EditLogInputStream edits, long expectedStartingTxId)
       throws IOException {
@@ -164,6 +174,10 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
       long expectedStartingTxId, StartupOption startOpt,
       MetaRecoveryContext recovery) throws IOException {
     FSDirectory fsDir = fsNamesys.dir;
+    if (recovery == null) {
+      // Decode ahead of applying; recovery mode needs to resync the stream.
+      in = PrefetchingEditLogInputStream.wrap(in, prefetchOps);
+    }
 
     EnumMap<FSEditLogOpCodes, Holder<Integer>> opCounts =
       new EnumMap<FSEditLogOpCodes, Holder<Integer>>(FSEditLogOpCodes.class);
@@ -288,6 +302,9 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
       }
     } finally {
       fsNamesys.dir.resetLastInodeId(lastInodeId);
+      if (in instanceof PrefetchingEditLogInputStream) {
+        ((PrefetchingEditLogInputStream) in).stop();
+      }
       if(closeOnExit) {
         in.close();
       }
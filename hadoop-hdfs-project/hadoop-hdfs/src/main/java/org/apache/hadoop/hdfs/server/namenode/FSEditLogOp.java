@@ -4588,6 +4588,14 @@ public void setMaxOpSize(int maxOpSize) {
       this.maxOpSize = maxOpSize;
     }
 
+    /**
+     * Return a new op instance from every call to {@link #readOp(boolean)}
+     * instead of re-using a cached instance per opcode.
+     */
+    void disableOpInstanceCache() {
+      cache.disableCache();
+    }
+
     /**
      * Read an operation from the input stream.
      * 
@@ -829,6 +829,9 @@ private long loadEdits(Iterable<EditLogInputStream> editStreams,
     long prevLastAppliedTxId = lastAppliedTxId;  
     try {    
       FSEditLogLoader loader = new FSEditLogLoader(target, lastAppliedTxId);
+      loader.setPrefetchOps(
+          conf.getInt(DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_OPS_KEY,
+              DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_OPS_DEFAULT));
       
       // Load latest edits
       for (EditLogInputStream editIn : editStreams) {
@@ -848,6 +851,8 @@ private long loadEdits(Iterable<EditLogInputStream> editStreams,
       }
     } finally {
       FSEditLog.closeAllStreams(editStreams);
+      // Summaries cached by a standby may no longer match the namespace.
+      target.dir.clearContentSummaryCache();
     }
     prog.endPhase(Phase.LOADING_EDITS);
     return lastAppliedTxId - prevLastAppliedTxId;
@@ -908,7 +913,8 @@ void saveFSImage(SaveNamespaceContext context, StorageDirectory sd,
     File newFile = NNStorage.getStorageFile(sd, NameNodeFile.IMAGE_NEW, txid);
     File dstFile = NNStorage.getStorageFile(sd, dstType, txid);
     
-    FSImageFormatProtobuf.Saver saver = new FSImageFormatProtobuf.Saver(context);
+    FSImageFormatProtobuf.Saver saver = new FSImageFormatProtobuf.Saver(context,
+        conf);
     FSImageCompression compression = FSImageCompression.createCompression(conf);
     saver.save(newFile, compression);
     
@@ -20,11 +20,16 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -66,6 +71,7 @@
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.Step;
 import org.apache.hadoop.hdfs.util.EnumCounters;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
+import org.apache.hadoop.io.IOUtils;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -225,6 +231,12 @@ public static void updateBlocksMap(INodeFile file, BlockManager bm) {
       }
     }
 
+    /**
+     * Number of files whose names are cached and whose blocks are added to
+     * the blocks map together while loading the directory section.
+     */
+    private static final int DIRECTORY_ENTRY_BATCH_SIZE = 1000;
+
     private final FSDirectory dir;
     private final FSNamesystem fsn;
     private final FSImageFormatProtobuf.Loader parent;
@@ -238,6 +250,7 @@ public static void updateBlocksMap(INodeFile file, BlockManager bm) {
     void loadINodeDirectorySection(InputStream in) throws IOException {
       final List<INodeReference> refList = parent.getLoaderContext()
           .getRefList();
+      ArrayList<INode> addedFiles = new ArrayList<>(DIRECTORY_ENTRY_BATCH_SIZE);
       while (true) {
         INodeDirectorySection.DirEntry e = INodeDirectorySection.DirEntry
             .parseDelimitedFrom(in);
@@ -246,34 +259,178 @@ void loadINodeDirectorySection(InputStream in) throws IOException {
           break;
         }
         INodeDirectory p = dir.getInode(e.getParent()).asDirectory();
+        p.ensureChildrenCapacity(
+            e.getChildrenCount() + e.getRefChildrenCount());
         for (long id : e.getChildrenList()) {
           INode child = dir.getInode(id);
-          addToParent(p, child);
+          if (addToParent(p, child) && child.isFile()) {
+            addedFiles.add(child);
+          }
         }
         for (int refId : e.getRefChildrenList()) {
           INodeReference ref = refList.get(refId);
-          addToParent(p, ref);
+          if (addToParent(p, ref) && ref.isFile()) {
+            addedFiles.add(ref);
+          }
         }
+        if (addedFiles.size() >= DIRECTORY_ENTRY_BATCH_SIZE) {
+          addToCacheAndBlockMap(addedFiles);
+          addedFiles.clear();
+        }
+      }
+      addToCacheAndBlockMap(addedFiles);
+    }
+
+    /**
+     * Load the sub-sections of the directory section concurrently. Every
+     * directory appears in exactly one entry, so the loaders only share the
+     * name cache and the blocks map, which are updated under the loader lock.
+     */
+    void loadINodeDirectorySectionInParallel(ExecutorService service,
+        List<FileSummary.Section> sections, String compressionCodec)
+        throws IOException {
+      LOG.info("Loading the INodeDirectory section in parallel with "
+          + sections.size() + " sub-sections");
+      final CountDownLatch latch = new CountDownLatch(sections.size());
+      final List<IOException> exceptions = new CopyOnWriteArrayList<>();
+      for (FileSummary.Section s : sections) {
+        final InputStream ins = parent.getInputStreamForSection(s,
+            compressionCodec);
+        service.submit(() -> {
+          try {
+            loadINodeDirectorySection(ins);
+          } catch (Exception e) {
+            LOG.error("An exception occurred loading INodeDirectories in " +
+                "parallel", e);
+            exceptions.add(e instanceof IOException ?
+                (IOException) e : new IOException(e));
+          } finally {
+            latch.countDown();
+            IOUtils.cleanup(LOG, ins);
+          }
+        });
       }
+      awaitSubSections(latch, exceptions);
+      LOG.info("Completed loading all INodeDirectory sub-sections");
     }
 
     void loadINodeSection(InputStream in, StartupProgress prog,
         Step currentStep) throws IOException {
+      long numInodes = loadINodeSectionHeader(in, prog, currentStep);
+      Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE, currentStep);
+      for (int i = 0; i < numInodes; ++i) {
+        INodeSection.INode p = INodeSection.INode.parseDelimitedFrom(in);
+        loadINodeAndAddToMap(p);
+        counter.increment();
+      }
+    }
+
+    /**
+     * Load the sub-sections of the inode section concurrently. The section
+     * header is part of the first sub-section and is read before any of the
+     * sub-sections are handed to the executor.
+     */
+    void loadINodeSectionInParallel(ExecutorService service,
+        List<FileSummary.Section> sections, String compressionCodec,
+        final StartupProgress prog, final Step currentStep)
+        throws IOException {
+      LOG.info("Loading the INode section in parallel with "
+          + sections.size() + " sub-sections");
+      final CountDownLatch latch = new CountDownLatch(sections.size());
+      final List<IOException> exceptions = new CopyOnWriteArrayList<>();
+      final AtomicLong totalLoaded = new AtomicLong(0);
+      long expectedInodes = 0;
+      for (int i = 0; i < sections.size(); i++) {
+        final InputStream ins = parent.getInputStreamForSection(
+            sections.get(i), compressionCodec);
+        if (i == 0) {
+          try {
+            expectedInodes = loadINodeSectionHeader(ins, prog, currentStep);
+          } catch (IOException e) {
+            IOUtils.cleanup(LOG, ins);
+            throw e;
+          }
+        }
+        service.submit(() -> {
+          try {
+            Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE,
+                currentStep);
+            totalLoaded.addAndGet(loadINodesInSection(ins, counter));
+          } catch (Exception e) {
+            LOG.error("An exception occurred loading INodes in parallel", e);
+            exceptions.add(e instanceof IOException ?
+                (IOException) e : new IOException(e));
+          } finally {
+            latch.countDown();
+            IOUtils.cleanup(LOG, ins);
+          }
+        });
+      }
+      awaitSubSections(latch, exceptions);
+      if (totalLoaded.get() != expectedInodes) {
+        throw new IOException("Expected to load " + expectedInodes +
+            " INodes in parallel, but loaded " + totalLoaded.get() +
+            ". The image may be corrupt.");
+      }
+      LOG.info("Completed loading all INode sub-sections. Loaded "
+          + totalLoaded.get() + " INodes.");
+    }
+
+    private long loadINodeSectionHeader(InputStream in, StartupProgress prog,
+        Step currentStep) throws IOException {
       INodeSection s = INodeSection.parseDelimitedFrom(in);
       fsn.dir.resetLastInodeId(s.getLastInodeId());
       long numInodes = s.getNumInodes();
       LOG.info("Loading " + numInodes + " INodes.");
       prog.setTotal(Phase.LOADING_FSIMAGE, currentStep, numInodes);
-      Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE, currentStep);
-      for (int i = 0; i < numInodes; ++i) {
+      return numInodes;
+    }
+
+    /**
+     * Load INodes until the end of the given sub-section stream.
+     * @return the number of INodes loaded
+     */
+    private long loadINodesInSection(InputStream in, Counter counter)
+        throws IOException {
+      long loaded = 0;
+      while (true) {
+        // note that in is a LimitedInputStream
         INodeSection.INode p = INodeSection.INode.parseDelimitedFrom(in);
-        if (p.getId() == INodeId.ROOT_INODE_ID) {
+        if (p == null) {
+          break;
+        }
+        loadINodeAndAddToMap(p);
+        counter.increment();
+        loaded++;
+      }
+      return loaded;
+    }
+
+    private void loadINodeAndAddToMap(INodeSection.INode p) {
+      if (p.getId() == INodeId.ROOT_INODE_ID) {
+        synchronized (this) {
           loadRootINode(p);
-        } else {
-          INode n = loadINode(p);
+        }
+      } else {
+        INode n = loadINode(p);
+        synchronized (this) {
           dir.addToInodeMap(n);
         }
-        counter.increment();
+      }
+    }
+
+    private static void awaitSubSections(CountDownLatch latch,
+        List<IOException> exceptions) throws IOException {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException(
+            "Interrupted waiting for image sub-sections to load");
+      }
+      if (!exceptions.isEmpty()) {
+        LOG.error(exceptions.size() + " exception(s) occurred loading " +
+            "image sub-sections");
+        throw exceptions.get(0);
       }
     }
 
@@ -292,7 +449,11 @@ void loadFilesUnderConstructionSection(InputStream in) throws IOException {
       }
     }
 
-    private void addToParent(INodeDirectory parent, INode child) {
+    /**
+     * Add the child to its parent's children list.
+     * @return true if the child was added
+     */
+    private boolean addToParent(INodeDirectory parent, INode child) {
       if (parent == dir.rootDir && FSDirectory.isReservedName(child)) {
         throw new HadoopIllegalArgumentException("File name \""
             + child.getLocalName() + "\" is reserved. Please "
@@ -300,13 +461,18 @@ private void addToParent(INodeDirectory parent, INode child) {
             + "name before upgrading to this release.");
       }
       // NOTE: This does not update space counts for parents
-      if (!parent.addChild(child)) {
-        return;
-      }
-      dir.cacheName(child);
+      return parent.addChild(child);
+    }
 
-      if (child.isFile()) {
-        updateBlocksMap(child.asFile(), fsn.getBlockManager());
+    /**
+     * Cache the names of the given files and add their blocks to the blocks
+     * map. Both structures are shared between the directory section
+     * loaders, so they are updated under the loader lock.
+     */
+    private synchronized void addToCacheAndBlockMap(List<INode> files) {
+      for (INode file : files) {
+        dir.cacheName(file);
+        updateBlocksMap(file.asFile(), fsn.getBlockManager());
       }
     }
 
@@ -551,11 +717,33 @@ public static INodeSection.INodeDirectory.Builder buildINodeDirectory(
       this.fsn = context.getSourceNamesystem();
     }
 
+    /**
+     * @return the number of directories in the namespace, or 0 when the
+     *         sections are not being split into sub-sections
+     */
+    private long countDirectories() {
+      if (!parent.isWritingSubSections()) {
+        return 0;
+      }
+      long count = 0;
+      Iterator<INodeWithAdditionalFields> iter = fsn.getFSDirectory()
+          .getINodeMap().getMapIterator();
+      while (iter.hasNext()) {
+        if (iter.next().isDirectory()) {
+          count++;
+        }
+      }
+      return count;
+    }
+
     void serializeINodeDirectorySection(OutputStream out) throws IOException {
       Iterator<INodeWithAdditionalFields> iter = fsn.getFSDirectory()
           .getINodeMap().getMapIterator();
       final ArrayList<INodeReference> refList = parent.getSaverContext()
           .getRefList();
+      // Sub-sections are cut by the number of directories, not inodes.
+      final int dirsPerSubSection =
+          parent.getEntriesPerSubSection(countDirectories());
       int i = 0;
       while (iter.hasNext()) {
         INodeWithAdditionalFields n = iter.next();
@@ -581,12 +769,17 @@ void serializeINodeDirectorySection(OutputStream out) throws IOException {
         }
 
         ++i;
+        if (i % dirsPerSubSection == 0) {
+          parent.commitSubSection(summary,
+              FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
+        }
         if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
           context.checkCancelled();
         }
       }
-      parent.commitSection(summary,
-          FSImageFormatProtobuf.SectionName.INODE_DIR);
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE_DIR,
+          FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
     }
 
     void serializeINodeSection(OutputStream out) throws IOException {
@@ -597,17 +790,25 @@ void serializeINodeSection(OutputStream out) throws IOException {
       INodeSection s = b.build();
       s.writeDelimitedTo(out);
 
+      final int inodesPerSubSection =
+          parent.getEntriesPerSubSection(inodesMap.size());
       int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
       while (iter.hasNext()) {
         INodeWithAdditionalFields n = iter.next();
         save(out, n);
         ++i;
+        if (i % inodesPerSubSection == 0) {
+          parent.commitSubSection(summary,
+              FSImageFormatProtobuf.SectionName.INODE_SUB);
+        }
         if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
           context.checkCancelled();
         }
       }
-      parent.commitSection(summary, FSImageFormatProtobuf.SectionName.INODE);
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
     }
 
     void serializeFilesUCSection(OutputStream out) throws IOException {
@@ -36,14 +36,18 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CacheDirectiveInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolInfoProto;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
@@ -69,6 +73,7 @@
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.CodedOutputStream;
 
 /**
@@ -151,6 +156,12 @@ public static final class Loader implements FSImageFormat.AbstractLoader {
      * when we're doing (rollingUpgrade rollback).
      */
     private final boolean requireSameLayoutVersion;
+    /** Whether sub-sections of the image, if present, are loaded in parallel */
+    private final boolean loadInParallel;
+    /** The image file being loaded */
+    private File filename;
+    /** Runs the sub-section loaders when loading in parallel */
+    private ExecutorService executorService;
 
     Loader(Configuration conf, FSNamesystem fsn,
         boolean requireSameLayoutVersion) {
@@ -158,6 +169,9 @@ public static final class Loader implements FSImageFormat.AbstractLoader {
       this.fsn = fsn;
       this.ctx = new LoaderContext();
       this.requireSameLayoutVersion = requireSameLayoutVersion;
+      this.loadInParallel = conf.getBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT);
     }
 
     @Override
@@ -175,6 +189,7 @@ public LoaderContext getLoaderContext() {
     }
 
     void load(File file) throws IOException {
+      filename = file;
       long start = Time.monotonicNow();
       imgDigest = MD5FileUtils.computeMd5ForFile(file);
       RandomAccessFile raFile = new RandomAccessFile(file, "r");
@@ -184,11 +199,72 @@ void load(File file) throws IOException {
         long end = Time.monotonicNow();
         LOG.info("Loaded FSImage in {} seconds.", (end - start) / 1000);
       } finally {
+        if (executorService != null) {
+          executorService.shutdown();
+          executorService = null;
+        }
         fin.close();
         raFile.close();
       }
     }
 
+    private ExecutorService getParallelExecutorService() {
+      int threads = conf.getInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
+      if (threads < 1) {
+        LOG.warn("Parallel is enabled and {} is set to {}. Setting to the " +
+            "default value {}", DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+            threads, DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
+        threads = DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT;
+      }
+      LOG.info("The fsimage will be loaded in parallel using {} threads",
+          threads);
+      return Executors.newFixedThreadPool(threads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("FSImageSectionLoader-%d").build());
+    }
+
+    /**
+     * Open a stream over the given section of the image being loaded. The
+     * stream has its own file descriptor, so it can be read concurrently with
+     * the streams of other sections.
+     */
+    InputStream getInputStreamForSection(FileSummary.Section section,
+        String compressionCodec) throws IOException {
+      FileInputStream fin = new FileInputStream(filename);
+      try {
+        fin.getChannel().position(section.getOffset());
+        InputStream in = new BufferedInputStream(new LimitInputStream(fin,
+            section.getLength()));
+        return FSImageUtil.wrapInputStreamForCompression(conf,
+            compressionCodec, in);
+      } catch (IOException e) {
+        fin.close();
+        throw e;
+      }
+    }
+
+    /**
+     * @return the sub-sections with the given name, ordered by their offset
+     *         in the image.
+     */
+    private static List<FileSummary.Section> getSubSectionsOfName(
+        List<FileSummary.Section> sections, SectionName name) {
+      ArrayList<FileSummary.Section> subSections = Lists.newArrayList();
+      for (FileSummary.Section s : sections) {
+        if (name.name.equals(s.getName())) {
+          subSections.add(s);
+        }
+      }
+      Collections.sort(subSections, new Comparator<FileSummary.Section>() {
+        @Override
+        public int compare(FileSummary.Section s1, FileSummary.Section s2) {
+          return Long.compare(s1.getOffset(), s2.getOffset());
+        }
+      });
+      return subSections;
+    }
+
     private void loadInternal(RandomAccessFile raFile, FileInputStream fin)
         throws IOException {
       if (!FSImageUtil.checkFileFormat(raFile)) {
@@ -209,8 +285,14 @@ private void loadInternal(RandomAccessFile raFile, FileInputStream fin)
       FSImageFormatPBSnapshot.Loader snapshotLoader = new FSImageFormatPBSnapshot.Loader(
           fsn, this);
 
-      ArrayList<FileSummary.Section> sections = Lists.newArrayList(summary
-          .getSectionsList());
+      // Sub-sections are not loaded on their own, but together with the
+      // section that contains them.
+      ArrayList<FileSummary.Section> sections = Lists.newArrayList();
+      for (FileSummary.Section s : summary.getSectionsList()) {
+        if (!SectionName.isSubSection(s.getName())) {
+          sections.add(s);
+        }
+      }
       Collections.sort(sections, new Comparator<FileSummary.Section>() {
         @Override
         public int compare(FileSummary.Section s1, FileSummary.Section s2) {
@@ -219,7 +301,7 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
           if (n1 == null) {
             return n2 == null ? 0 : -1;
           } else if (n2 == null) {
-            return -1;
+            return 1;
           } else {
             return n1.ordinal() - n2.ordinal();
           }
@@ -234,6 +316,15 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
        */
       Step currentStep = null;
 
+      List<FileSummary.Section> inodeSubSections = getSubSectionsOfName(
+          summary.getSectionsList(), SectionName.INODE_SUB);
+      List<FileSummary.Section> inodeDirSubSections = getSubSectionsOfName(
+          summary.getSectionsList(), SectionName.INODE_DIR_SUB);
+      if (loadInParallel &&
+          (!inodeSubSections.isEmpty() || !inodeDirSubSections.isEmpty())) {
+        executorService = getParallelExecutorService();
+      }
+
       for (FileSummary.Section s : sections) {
         channel.position(s.getOffset());
         InputStream in = new BufferedInputStream(new LimitInputStream(fin,
@@ -243,8 +334,13 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
             summary.getCodec(), in);
 
         String n = s.getName();
+        SectionName name = SectionName.fromString(n);
+        if (name == null) {
+          LOG.warn("Unrecognized section {}", n);
+          continue;
+        }
 
-        switch (SectionName.fromString(n)) {
+        switch (name) {
         case NS_INFO:
           loadNameSystemSection(in);
           break;
@@ -254,14 +350,24 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
         case INODE: {
           currentStep = new Step(StepType.INODES);
           prog.beginStep(Phase.LOADING_FSIMAGE, currentStep);
-          inodeLoader.loadINodeSection(in, prog, currentStep);
+          if (executorService != null && !inodeSubSections.isEmpty()) {
+            inodeLoader.loadINodeSectionInParallel(executorService,
+                inodeSubSections, summary.getCodec(), prog, currentStep);
+          } else {
+            inodeLoader.loadINodeSection(in, prog, currentStep);
+          }
         }
           break;
         case INODE_REFERENCE:
           snapshotLoader.loadINodeReferenceSection(in);
           break;
         case INODE_DIR:
-          inodeLoader.loadINodeDirectorySection(in);
+          if (executorService != null && !inodeDirSubSections.isEmpty()) {
+            inodeLoader.loadINodeDirectorySectionInParallel(executorService,
+                inodeDirSubSections, summary.getCodec());
+          } else {
+            inodeLoader.loadINodeDirectorySection(in);
+          }
           break;
         case FILES_UNDERCONSTRUCTION:
           inodeLoader.loadFilesUnderConstructionSection(in);
@@ -373,8 +479,17 @@ public static final class Saver {
 
     private final SaveNamespaceContext context;
     private final SaverContext saverContext;
+    private final Configuration conf;
     private long currentOffset = FSImageUtil.MAGIC_HEADER.length;
+    private long subSectionOffset = currentOffset;
     private MD5Hash savedDigest;
+    /**
+     * Whether the INODE and INODE_DIR sections are split into sub-sections
+     * which can be loaded in parallel.
+     */
+    private boolean writeSubSections = false;
+    /** The number of sub-sections each of the two sections is split into */
+    private int targetSubSections = 1;
 
     private FileChannel fileChannel;
     // OutputStream for the section data
@@ -383,8 +498,13 @@ public static final class Saver {
     private OutputStream underlyingOutputStream;
 
     Saver(SaveNamespaceContext context) {
+      this(context, null);
+    }
+
+    Saver(SaveNamespaceContext context, Configuration conf) {
       this.context = context;
       this.saverContext = new SaverContext();
+      this.conf = conf;
     }
 
     public MD5Hash getSavedDigest() {
@@ -399,6 +519,22 @@ public SaverContext getSaverContext() {
       return saverContext;
     }
 
+    boolean isWritingSubSections() {
+      return writeSubSections;
+    }
+
+    /**
+     * @param numEntries the number of entries in the section being saved
+     * @return the number of entries after which a sub-section is committed
+     */
+    int getEntriesPerSubSection(long numEntries) {
+      if (!writeSubSections) {
+        return Integer.MAX_VALUE;
+      }
+      return (int) Math.min(Integer.MAX_VALUE,
+          Math.max(1, numEntries / targetSubSections));
+    }
+
     public void commitSection(FileSummary.Builder summary, SectionName name)
         throws IOException {
       long oldOffset = currentOffset;
@@ -413,6 +549,38 @@ public void commitSection(FileSummary.Builder summary, SectionName name)
       summary.addSections(FileSummary.Section.newBuilder().setName(name.name)
           .setLength(length).setOffset(currentOffset));
       currentOffset += length;
+      subSectionOffset = currentOffset;
+    }
+
+    /**
+     * Record everything written since the end of the previous sub-section, or
+     * the start of the current section, as a sub-section with the given name.
+     * This is a no-op unless sub-sections are being written.
+     */
+    public void commitSubSection(FileSummary.Builder summary,
+        SectionName name) throws IOException {
+      if (!writeSubSections) {
+        return;
+      }
+      // Flush so that the channel position covers all the data written.
+      sectionOutputStream.flush();
+      long length = fileChannel.position() - subSectionOffset;
+      if (length == 0) {
+        return;
+      }
+      summary.addSections(FileSummary.Section.newBuilder().setName(name.name)
+          .setLength(length).setOffset(subSectionOffset));
+      subSectionOffset += length;
+    }
+
+    /**
+     * Commit the last sub-section of a section, followed by the section
+     * itself.
+     */
+    public void commitSectionAndSubSection(FileSummary.Builder summary,
+        SectionName name, SectionName subSectionName) throws IOException {
+      commitSubSection(summary, subSectionName);
+      commitSection(summary, name);
     }
 
     private void flushSectionOutputStream() throws IOException {
@@ -436,6 +604,53 @@ void save(File file, FSImageCompression compression) throws IOException {
       }
     }
 
+    /**
+     * Decide whether the inode sections are split into sub-sections, and how
+     * many inodes go into each of them.
+     */
+    private void initSubSections() {
+      if (conf == null || !conf.getBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT)) {
+        return;
+      }
+      if (codec != null) {
+        // A compressed stream cannot be decoded from the middle, so
+        // sub-sections would not be independently loadable.
+        LOG.warn("Parallel image loading is not supported for compressed " +
+            "images. The image will be saved without sub-sections.");
+        return;
+      }
+      if (context.getSourceNamesystem().isRollingUpgrade()) {
+        // The image may have to be loaded by the previous software after a
+        // rollback or downgrade, which does not know about sub-sections.
+        LOG.info("Not writing image sub-sections during a rolling upgrade.");
+        return;
+      }
+      int targetSections = conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT);
+      if (targetSections <= 0) {
+        LOG.warn("{} is set to {}. Setting to the default value {}",
+            DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY,
+            targetSections,
+            DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT);
+        targetSections =
+            DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT;
+      }
+      int inodeThreshold = conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT);
+      long numInodes = context.getSourceNamesystem().dir.totalInodes();
+      if (numInodes < inodeThreshold) {
+        LOG.info("Not writing image sub-sections as the number of inodes " +
+            "{} is below {}", numInodes, inodeThreshold);
+        return;
+      }
+      writeSubSections = true;
+      targetSubSections = targetSections;
+    }
+
     private static void saveFileSummary(OutputStream out, FileSummary summary)
         throws IOException {
       summary.writeDelimitedTo(out);
@@ -490,6 +705,7 @@ private void saveInternal(FileOutputStream fout,
       } else {
         sectionOutputStream = underlyingOutputStream;
       }
+      initSubSections();
 
       saveNameSystemSection(b);
       // Check for cancellation right after serializing the name system section.
@@ -613,7 +829,10 @@ public enum SectionName {
     FILES_UNDERCONSTRUCTION("FILES_UNDERCONSTRUCTION"),
     SNAPSHOT_DIFF("SNAPSHOT_DIFF"),
     SECRET_MANAGER("SECRET_MANAGER"),
-    CACHE_MANAGER("CACHE_MANAGER");
+    CACHE_MANAGER("CACHE_MANAGER"),
+    // Sub-sections are loaded together with the section containing them.
+    INODE_SUB("INODE_SUB"),
+    INODE_DIR_SUB("INODE_DIR_SUB");
 
     private static final SectionName[] values = SectionName.values();
 
@@ -625,6 +844,10 @@ public static SectionName fromString(String name) {
       return null;
     }
 
+    static boolean isSubSection(String name) {
+      return INODE_SUB.name.equals(name) || INODE_DIR_SUB.name.equals(name);
+    }
+
     private final String name;
 
     private SectionName(String name) {
@@ -43,6 +43,12 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOGGERS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_CHECKPOINT_TXNS_DEFAULT;
@@ -81,6 +87,8 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LEASE_RECHECK_INTERVAL_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_INCREMENT_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_BLOCK_DELETION_INCREMENT_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_PERMISSIONS_ENABLED_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_PERMISSIONS_ENABLED_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_PERMISSIONS_SUPERUSERGROUP_DEFAULT;
@@ -286,7 +294,9 @@
 import org.apache.hadoop.util.VersionInfo;
 import org.apache.log4j.Appender;
 import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
 import org.eclipse.jetty.util.ajax.JSON;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -364,7 +374,11 @@ private void logAuditEvent(boolean succeeded,
           stat.getGroup(), symlink, path);
     }
     final String ugiStr = ugi.toString();
-    for (AuditLogger logger : auditLoggers) {
+    if (auditLogDispatcher != null) {
+      auditLogDispatcher.logAuditEvent(succeeded, ugiStr, addr, cmd, src, dst,
+          status, CallerContext.getCurrent(), ugi, dtSecretManager);
+    }
+    for (AuditLogger logger : directAuditLoggers) {
       if (logger instanceof HdfsAuditLogger) {
         HdfsAuditLogger hdfsLogger = (HdfsAuditLogger) logger;
         hdfsLogger.logAuditEvent(succeeded, ugiStr, addr, cmd, src, dst,
@@ -392,7 +406,6 @@ private void logAuditEvent(boolean succeeded,
       FSNamesystem.class.getName() + ".audit");
 
   static final int DEFAULT_MAX_CORRUPT_FILEBLOCKS_RETURNED = 100;
-  static int BLOCK_DELETION_INCREMENT = 1000;
   private final boolean isPermissionEnabled;
   private final UserGroupInformation fsOwner;
   private final String supergroup;
@@ -402,6 +415,11 @@ private void logAuditEvent(boolean succeeded,
   private final long leaseRecheckIntervalMs;
   /** Maximum time the lock is hold to release lease. */
   private final long maxLockHoldToReleaseLeaseMs;
+  /**
+   * Number of blocks removed from the block manager per acquisition of the
+   * write lock when deleting a large subtree.
+   */
+  private final int blockDeletionIncrement;
 
   // Scan interval is not configurable.
   private static final long DELEGATION_TOKEN_REMOVER_SCAN_INTERVAL =
@@ -417,6 +435,10 @@ private void logAuditEvent(boolean succeeded,
   // underlying logger is disabled, and avoid some unnecessary work.
   private final boolean isDefaultAuditLogger;
   private final List<AuditLogger> auditLoggers;
+  // The audit loggers called on the RPC handler thread, and the dispatcher
+  // for the others, if audit events are logged from a background thread.
+  private final List<AuditLogger> directAuditLoggers;
+  private final AsyncAuditLogDispatcher auditLogDispatcher;
 
   /** The namespace tree. */
   FSDirectory dir;
@@ -824,6 +846,12 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
       this.maxLockHoldToReleaseLeaseMs = conf.getLong(
           DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_KEY,
           DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_DEFAULT);
+      this.blockDeletionIncrement = conf.getInt(
+          DFS_NAMENODE_BLOCK_DELETION_INCREMENT_KEY,
+          DFS_NAMENODE_BLOCK_DELETION_INCREMENT_DEFAULT);
+      Preconditions.checkArgument(blockDeletionIncrement > 0,
+          DFS_NAMENODE_BLOCK_DELETION_INCREMENT_KEY +
+              " must be a positive integer.");
 
       // For testing purposes, allow the DT secret manager to be started regardless
       // of whether security is enabled.
@@ -840,6 +868,34 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
       this.auditLoggers = initAuditLoggers(conf);
       this.isDefaultAuditLogger = auditLoggers.size() == 1 &&
         auditLoggers.get(0) instanceof DefaultAuditLogger;
+      if (conf.getBoolean(DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_KEY,
+          DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_DEFAULT)) {
+        List<AuditLogger> direct = Lists.newArrayList();
+        List<AuditLogger> dispatched = Lists.newArrayList();
+        for (AuditLogger logger : auditLoggers) {
+          if (AsyncAuditLogDispatcher.canDispatch(logger)) {
+            dispatched.add(logger);
+          } else {
+            direct.add(logger);
+          }
+        }
+        int queueSize = conf.getInt(
+            DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_KEY,
+            DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_QUEUE_SIZE_DEFAULT);
+        boolean blockWhenFull = conf.getBoolean(
+            DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_KEY,
+            DFS_NAMENODE_AUDIT_LOG_ASYNC_DISPATCH_BLOCKING_DEFAULT);
+        this.directAuditLoggers = Collections.unmodifiableList(direct);
+        this.auditLogDispatcher = dispatched.isEmpty() ? null :
+            new AsyncAuditLogDispatcher(dispatched, queueSize, blockWhenFull);
+      } else {
+        this.directAuditLoggers = auditLoggers;
+        this.auditLogDispatcher = null;
+      }
+      if (auditLogDispatcher != null) {
+        LOG.info("Dispatching audit events from a background thread");
+        auditLogDispatcher.start();
+      }
       this.retryCache = ignoreRetryCache ? null : initRetryCache(conf);
       Class<? extends INodeAttributeProvider> klass = conf.getClass(
           DFS_NAMENODE_INODE_ATTRIBUTES_PROVIDER_KEY,
@@ -1613,6 +1669,9 @@ void close() {
         stopStandbyServices();
       } catch (IOException ie) {
       } finally {
+        if (auditLogDispatcher != null) {
+          auditLogDispatcher.stop();
+        }
         IOUtils.cleanup(LOG, dir);
         IOUtils.cleanup(LOG, fsImage);
       }
@@ -2822,8 +2881,8 @@ FSPermissionChecker getPermissionChecker()
 
   /**
    * From the given list, incrementally remove the blocks from blockManager
-   * Writelock is dropped and reacquired every BLOCK_DELETION_INCREMENT to
-   * ensure that other waiters on the lock can get in. See HDFS-2938
+   * Writelock is dropped and reacquired every {@link #blockDeletionIncrement}
+   * blocks to ensure that other waiters on the lock can get in. See HDFS-2938
    * 
    * @param blocks
    *          An instance of {@link BlocksMapUpdateInfo} which contains a list
@@ -2835,7 +2894,7 @@ void removeBlocks(BlocksMapUpdateInfo blocks) {
     while (iter.hasNext()) {
       writeLock();
       try {
-        for (int i = 0; i < BLOCK_DELETION_INCREMENT && iter.hasNext(); i++) {
+        for (int i = 0; i < blockDeletionIncrement && iter.hasNext(); i++) {
           blockManager.removeBlock(iter.next());
         }
       } finally {
@@ -2893,10 +2952,11 @@ HdfsFileStatus getFileInfo(final String src, boolean resolveLink)
     final String operationName = "getfileinfo";
     checkOperation(OperationCategory.READ);
     HdfsFileStatus stat = null;
+    final FSPermissionChecker pc = getPermissionChecker();
     readLock();
     try {
       checkOperation(OperationCategory.READ);
-      stat = FSDirStatAndListingOp.getFileInfo(dir, src, resolveLink);
+      stat = FSDirStatAndListingOp.getFileInfo(dir, pc, src, resolveLink);
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
       throw e;
@@ -2913,10 +2973,11 @@ HdfsFileStatus getFileInfo(final String src, boolean resolveLink)
   boolean isFileClosed(final String src) throws IOException {
     final String operationName = "isFileClosed";
     checkOperation(OperationCategory.READ);
+    final FSPermissionChecker pc = getPermissionChecker();
     readLock();
     try {
       checkOperation(OperationCategory.READ);
-      return FSDirStatAndListingOp.isFileClosed(dir, src);
+      return FSDirStatAndListingOp.isFileClosed(dir, pc, src);
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
       throw e;
@@ -2966,12 +3027,13 @@ boolean mkdirs(String src, PermissionStatus permissions,
   ContentSummary getContentSummary(final String src) throws IOException {
     checkOperation(OperationCategory.READ);
     final String operationName = "contentSummary";
+    final FSPermissionChecker pc = getPermissionChecker();
     readLock();
     boolean success = true;
     ContentSummary cs;
     try {
       checkOperation(OperationCategory.READ);
-      cs = FSDirStatAndListingOp.getContentSummary(dir, src);
+      cs = FSDirStatAndListingOp.getContentSummary(dir, pc, src);
     } catch (AccessControlException ace) {
       success = false;
       logAuditEvent(success, operationName, src);
@@ -3562,10 +3624,11 @@ DirectoryListing getListing(String src, byte[] startAfter,
     checkOperation(OperationCategory.READ);
     final String operationName = "listStatus";
     DirectoryListing dl = null;
+    final FSPermissionChecker pc = getPermissionChecker();
     readLock();
     try {
       checkOperation(NameNode.OperationCategory.READ);
-      dl = getListingInt(dir, src, startAfter, needLocation);
+      dl = getListingInt(dir, pc, src, startAfter, needLocation);
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
       throw e;
@@ -6969,6 +7032,38 @@ public void logAuditEvent(boolean succeeded, String userName,
         InetAddress addr, String cmd, String src, String dst,
         FileStatus status, CallerContext callerContext, UserGroupInformation ugi,
         DelegationTokenSecretManager dtSecretManager) {
+      String message = getAuditMessage(succeeded, userName, addr, cmd, src,
+          dst, status, callerContext, ugi, dtSecretManager,
+          Server.getProtocol());
+      if (message != null) {
+        logAuditMessage(message);
+      }
+    }
+
+    /**
+     * Log an audit event for an RPC made over the given protocol, with the
+     * wall-clock time at which it happened. This may be called from a thread
+     * other than the RPC handler, some time after the event.
+     */
+    void logAuditEvent(boolean succeeded, String userName,
+        InetAddress addr, String cmd, String src, String dst,
+        FileStatus status, CallerContext callerContext, UserGroupInformation ugi,
+        DelegationTokenSecretManager dtSecretManager, String protocol,
+        long eventTime) {
+      String message = getAuditMessage(succeeded, userName, addr, cmd, src,
+          dst, status, callerContext, ugi, dtSecretManager, protocol);
+      if (message != null) {
+        logAuditMessage(message, eventTime);
+      }
+    }
+
+    /**
+     * @return the audit line for the event, or null if it is not logged.
+     */
+    private String getAuditMessage(boolean succeeded, String userName,
+        InetAddress addr, String cmd, String src, String dst,
+        FileStatus status, CallerContext callerContext, UserGroupInformation ugi,
+        DelegationTokenSecretManager dtSecretManager, String protocol) {
 
       if (auditLog.isDebugEnabled() ||
           (auditLog.isInfoEnabled() && !debugCmdSet.contains(cmd))) {
@@ -7007,7 +7102,7 @@ public void logAuditEvent(boolean succeeded, String userName,
           sb.append(trackingId);
         }
         sb.append("\t").append("proto=");
-        sb.append(Server.getProtocol());
+        sb.append(protocol);
         if (isCallerContextEnabled &&
             callerContext != null &&
             callerContext.isContextValid()) {
@@ -7026,8 +7121,9 @@ public void logAuditEvent(boolean succeeded, String userName,
                 CallerContext.SIGNATURE_ENCODING));
           }
         }
-        logAuditMessage(sb.toString());
+        return sb.toString();
       }
+      return null;
     }
 
     @Override
@@ -7042,6 +7138,24 @@ public void logAuditEvent(boolean succeeded, String userName,
     public void logAuditMessage(String message) {
       auditLog.info(message);
     }
+
+    /**
+     * @return true if audit messages can be logged with the time of their
+     *         event, rather than the time they are logged at.
+     */
+    static boolean canLogEventTime() {
+      return auditLog instanceof Log4JLogger;
+    }
+
+    /**
+     * Log an audit message stamped with the time of its event. Only valid if
+     * {@link #canLogEventTime()}.
+     */
+    void logAuditMessage(String message, long eventTime) {
+      Logger logger = ((Log4JLogger) auditLog).getLogger();
+      logger.callAppenders(new LoggingEvent(Log4JLogger.class.getName(),
+          logger, eventTime, Level.INFO, message, null));
+    }
   }
 
   private static void enableAsyncAuditLog() {
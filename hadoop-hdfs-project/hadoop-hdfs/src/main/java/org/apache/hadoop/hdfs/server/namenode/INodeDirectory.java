@@ -549,6 +549,25 @@ public boolean addChild(INode node) {
     return true;
   }
 
+  /**
+   * Make sure the children list can hold the given number of additional
+   * children without being grown. This is used when the number of children
+   * is known in advance, e.g. while loading the fsimage, so that the list is
+   * allocated at its final size instead of being repeatedly copied and left
+   * with unused slack.
+   */
+  void ensureChildrenCapacity(int numAdditionalChildren) {
+    if (numAdditionalChildren <= 0) {
+      return;
+    }
+    if (children == null) {
+      children = new ArrayList<>(numAdditionalChildren);
+    } else if (children instanceof ArrayList) {
+      ((ArrayList<INode>) children).ensureCapacity(
+          children.size() + numAdditionalChildren);
+    }
+  }
+
   /**
    * Add the node to the children list at the given insertion point.
    * The basic add method which actually calls children.add(..).
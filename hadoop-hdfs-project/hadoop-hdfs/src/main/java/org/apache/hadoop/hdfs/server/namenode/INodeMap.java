@@ -21,11 +21,13 @@
 
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
 import org.apache.hadoop.util.GSet;
 import org.apache.hadoop.util.LightWeightGSet;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 /**
@@ -34,25 +36,45 @@
  */
 public class INodeMap {
   
-  static INodeMap newInstance(INodeDirectory rootDir) {
-    // Compute the map capacity by allocating 1% of total memory
-    int capacity = LightWeightGSet.computeCapacity(1, "INodeMap");
+  private static final float MIN_INODE_MAP_PERCENT = 0.001f;
+
+  static INodeMap newInstance(INodeDirectory rootDir, float percent) {
+    // Compute the map capacity by allocating a percentage (1% by default)
+    // of total memory
+    if (percent < MIN_INODE_MAP_PERCENT) {
+      FSDirectory.LOG.info("Using minimum value {} for {}",
+          MIN_INODE_MAP_PERCENT,
+          DFSConfigKeys.DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT);
+      percent = MIN_INODE_MAP_PERCENT;
+    }
+    int capacity = LightWeightGSet.computeCapacity(percent, "INodeMap");
     GSet<INode, INodeWithAdditionalFields> map =
         new LightWeightGSet<>(capacity);
     map.put(rootDir);
-    return new INodeMap(map);
+    return new INodeMap(map, capacity);
   }
 
   /** Synchronized by external lock. */
   private final GSet<INode, INodeWithAdditionalFields> map;
+
+  /** The number of slots in the map. */
+  private final int capacity;
   
   public Iterator<INodeWithAdditionalFields> getMapIterator() {
     return map.iterator();
   }
 
-  private INodeMap(GSet<INode, INodeWithAdditionalFields> map) {
+  private INodeMap(GSet<INode, INodeWithAdditionalFields> map,
+      int capacity) {
     Preconditions.checkArgument(map != null);
     this.map = map;
+    this.capacity = capacity;
+  }
+
+  /** @return the number of slots in the map */
+  @VisibleForTesting
+  int getCapacity() {
+    return capacity;
   }
   
   /**
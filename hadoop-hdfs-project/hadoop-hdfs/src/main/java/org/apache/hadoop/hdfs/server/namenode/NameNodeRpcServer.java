@@ -1487,10 +1487,12 @@ public void blockReceivedAndDeleted(final DatanodeRegistration nodeReg,
           +" blocks.");
     }
     final BlockManager bm = namesystem.getBlockManager();
-    for (final StorageReceivedDeletedBlocks r : receivedAndDeletedBlocks) {
-      bm.enqueueBlockOp(new Runnable() {
-        @Override
-        public void run() {
+    // Queue the reports of all the storages as one operation, so that they
+    // are processed together under a single hold of the namesystem lock.
+    bm.enqueueBlockOp(new Runnable() {
+      @Override
+      public void run() {
+        for (StorageReceivedDeletedBlocks r : receivedAndDeletedBlocks) {
           try {
             namesystem.processIncrementalBlockReport(nodeReg, r);
           } catch (Exception ex) {
@@ -1501,8 +1503,8 @@ public void run() {
                     + "failed from " + nodeReg + ": " + ex.getMessage());
           }
         }
-      });
-    }
+      }
+    });
   }
 
   @Override // DatanodeProtocol
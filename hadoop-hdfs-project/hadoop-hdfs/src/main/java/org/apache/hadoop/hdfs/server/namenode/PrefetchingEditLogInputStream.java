@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An EditLogInputStream which reads and decodes the ops of another stream on
+ * a background thread, up to a bounded number of ops ahead of the caller.
+ *
+ * This lets the I/O and deserialization of the edit log overlap with the
+ * application of the ops, which is done while holding the namesystem write
+ * lock. The underlying stream must support
+ * {@link EditLogInputStream#disableOpInstanceCache()}, since ops are handed
+ * from one thread to another. Recovery mode (resync) is not supported.
+ */
+@InterfaceAudience.Private
+class PrefetchingEditLogInputStream extends EditLogInputStream {
+  /** An op read by the prefetch thread, or the error that stopped it. */
+  private static final class DecodedOp {
+    private final FSEditLogOp op;
+    private final long position;
+    private final int logVersion;
+    private final Throwable error;
+
+    DecodedOp(FSEditLogOp op, long position, int logVersion,
+        Throwable error) {
+      this.op = op;
+      this.position = position;
+      this.logVersion = logVersion;
+      this.error = error;
+    }
+  }
+
+  private final EditLogInputStream in;
+  private final BlockingQueue<DecodedOp> queue;
+  private final Thread prefetcher;
+  private volatile boolean stopped = false;
+
+  /** State of the last op handed to the caller. */
+  private boolean started = false;
+  private boolean eof = false;
+  private long position;
+  private int logVersion;
+  private boolean haveLogVersion = false;
+
+  /**
+   * @param in the stream to prefetch ops from
+   * @param maxOps the maximum number of ops to decode ahead of the caller
+   * @return a stream prefetching up to maxOps from in, or in itself if it
+   *         cannot be read ahead
+   */
+  static EditLogInputStream wrap(EditLogInputStream in, int maxOps) {
+    if (maxOps <= 0 || !in.disableOpInstanceCache()) {
+      return in;
+    }
+    return new PrefetchingEditLogInputStream(in, maxOps);
+  }
+
+  private PrefetchingEditLogInputStream(EditLogInputStream in, int maxOps) {
+    Preconditions.checkArgument(maxOps > 0);
+    this.in = in;
+    this.position = in.getPosition();
+    this.queue = new ArrayBlockingQueue<DecodedOp>(maxOps);
+    this.prefetcher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        prefetch();
+      }
+    }, "Edit log prefetcher for " + in.getName());
+    this.prefetcher.setDaemon(true);
+  }
+
+  private void prefetch() {
+    try {
+      while (!stopped) {
+        FSEditLogOp op = in.readOp();
+        int version = op == null ? 0 : in.getVersion(true);
+        queue.put(new DecodedOp(op, in.getPosition(), version, null));
+        if (op == null) {
+          return;
+        }
+      }
+    } catch (InterruptedException ie) {
+      // Stopped by the reader.
+    } catch (Throwable t) {
+      try {
+        queue.put(new DecodedOp(null, in.getPosition(), 0, t));
+      } catch (InterruptedException ie) {
+        // Stopped by the reader.
+      }
+    }
+  }
+
+  @Override
+  protected FSEditLogOp nextOp() throws IOException {
+    if (eof) {
+      return null;
+    }
+    if (!started) {
+      started = true;
+      prefetcher.start();
+    }
+    DecodedOp next;
+    try {
+      next = queue.take();
+    } catch (InterruptedException ie) {
+      throw new InterruptedIOException(
+          "Interrupted while waiting for ops from " + in.getName());
+    }
+    position = next.position;
+    if (next.error != null) {
+      eof = true;
+      if (next.error instanceof IOException) {
+        throw (IOException) next.error;
+      }
+      throw new IOException(next.error);
+    }
+    if (next.op == null) {
+      eof = true;
+    } else {
+      logVersion = next.logVersion;
+      haveLogVersion = true;
+    }
+    return next.op;
+  }
+
+  @Override
+  public void resync() {
+    throw new UnsupportedOperationException(
+        "Recovery is not supported when prefetching edit log ops");
+  }
+
+  /**
+   * Stop the prefetch thread, leaving the underlying stream open.
+   */
+  void stop() {
+    stopped = true;
+    if (!started) {
+      return;
+    }
+    prefetcher.interrupt();
+    // Make room for an op the prefetch thread may be blocked on handing over.
+    queue.clear();
+    try {
+      prefetcher.join();
+    } catch (InterruptedException ie) {
+      // The prefetch thread has been interrupted and exits on its own.
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    stop();
+    in.close();
+  }
+
+  @Override
+  public int getVersion(boolean verifyVersion) throws IOException {
+    if (haveLogVersion) {
+      return logVersion;
+    }
+    // No op has been handed over yet, so the prefetch thread is either not
+    // running or has already stopped on an error.
+    return in.getVersion(verifyVersion);
+  }
+
+  @Override
+  public long getPosition() {
+    return position;
+  }
+
+  @Override
+  public String getCurrentStreamName() {
+    return in.getCurrentStreamName();
+  }
+
+  @Override
+  public String getName() {
+    return in.getName();
+  }
+
+  @Override
+  public long getFirstTxId() {
+    return in.getFirstTxId();
+  }
+
+  @Override
+  public long getLastTxId() {
+    return in.getLastTxId();
+  }
+
+  @Override
+  public long length() throws IOException {
+    return in.length();
+  }
+
+  @Override
+  public boolean isInProgress() {
+    return in.isInProgress();
+  }
+
+  @Override
+  public void setMaxOpSize(int maxOpSize) {
+    in.setMaxOpSize(maxOpSize);
+  }
+
+  @Override
+  boolean disableOpInstanceCache() {
+    return true;
+  }
+
+  @Override
+  public boolean isLocalLog() {
+    return in.isLocalLog();
+  }
+
+  @Override
+  public boolean isInMemory() {
+    return in.isInMemory();
+  }
+
+  @Override
+  public String toString() {
+    return in.toString();
+  }
+}
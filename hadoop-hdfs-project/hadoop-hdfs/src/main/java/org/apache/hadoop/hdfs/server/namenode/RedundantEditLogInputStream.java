@@ -281,8 +281,22 @@ public void setMaxOpSize(int maxOpSize) {
     }
   }
 
+  @Override
+  boolean disableOpInstanceCache() {
+    boolean disabled = true;
+    for (EditLogInputStream elis : streams) {
+      disabled &= elis.disableOpInstanceCache();
+    }
+    return disabled;
+  }
+
   @Override
   public boolean isLocalLog() {
     return streams[curIdx].isLocalLog();
   }
+
+  @Override
+  public boolean isInMemory() {
+    return streams[curIdx].isInMemory();
+  }
 }
@@ -138,6 +138,13 @@ public class EditLogTailer {
    */
   private final boolean inProgressOk;
 
+  /**
+   * Whether the edits loaded by the last tail had all been fetched into
+   * memory, e.g. over RPC from the JournalNodes, so that tailing again
+   * straight away is cheap.
+   */
+  private boolean lastTailInMemory = false;
+
   public EditLogTailer(FSNamesystem namesystem, Configuration conf) {
     this.tailerThread = new EditLogTailerThread();
     this.conf = conf;
@@ -254,8 +261,13 @@ public Void run() throws Exception {
     });
   }
   
+  /**
+   * Load the edits written since the last tail.
+   *
+   * @return the number of edits loaded
+   */
   @VisibleForTesting
-  void doTailEdits() throws IOException, InterruptedException {
+  long doTailEdits() throws IOException, InterruptedException {
     // Write lock needs to be interruptible here because the 
     // transitionToActive RPC takes the write lock before calling
     // tailer.stop() -- so if we're not interruptible, it will
@@ -270,6 +282,7 @@ void doTailEdits() throws IOException, InterruptedException {
         LOG.debug("lastTxnId: " + lastTxnId);
       }
       Collection<EditLogInputStream> streams;
+      lastTailInMemory = false;
       try {
         streams = editLog.selectInputStreams(lastTxnId + 1, 0,
             null, inProgressOk, true);
@@ -279,11 +292,15 @@ void doTailEdits() throws IOException, InterruptedException {
         // edits file hasn't been started yet.
         LOG.warn("Edits tailer failed to find any streams. Will try again " +
             "later.", ioe);
-        return;
+        return 0;
       }
       if (LOG.isDebugEnabled()) {
         LOG.debug("edit streams to load from: " + streams.size());
       }
+      boolean inMemory = !streams.isEmpty();
+      for (EditLogInputStream elis : streams) {
+        inMemory &= elis.isInMemory();
+      }
       
       // Once we have streams to load, errors encountered are legitimate cause
       // for concern, so we don't catch them here. Simple errors reading from
@@ -304,7 +321,9 @@ void doTailEdits() throws IOException, InterruptedException {
       if (editsLoaded > 0) {
         lastLoadTimeMs = monotonicNow();
       }
+      lastTailInMemory = inMemory;
       lastLoadedTxnId = image.getLastAppliedTxId();
+      return editsLoaded;
     } finally {
       namesystem.writeUnlock();
     }
@@ -423,13 +442,21 @@ private void doWork() {
           // name system lock will be acquired to further block even the block
           // state updates.
           namesystem.cpLockInterruptibly();
+          long editsTailed = 0;
           try {
-            doTailEdits();
+            editsTailed = doTailEdits();
           } finally {
             namesystem.cpUnlock();
           }
           //Update NameDirSize Metric
           namesystem.getFSImage().getStorage().updateNameDirSize();
+          // When in-progress edits are fetched over RPC, go straight back
+          // for more while the active is still writing them. Edits read
+          // from the segments themselves are costlier to fetch, so keep
+          // sleeping between those.
+          if (inProgressOk && editsTailed > 0 && lastTailInMemory) {
+            continue;
+          }
         } catch (EditLogInputException elie) {
           LOG.warn("Error while reading edits from disk. Will try again.", elie);
         } catch (InterruptedException ie) {
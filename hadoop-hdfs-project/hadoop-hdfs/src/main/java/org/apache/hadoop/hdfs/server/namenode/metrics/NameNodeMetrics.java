@@ -111,6 +111,9 @@ public long totalFileOps(){
   final MutableQuantiles[] syncsQuantiles;
   @Metric("Journal transactions batched in sync")
   MutableCounterLong transactionsBatchedInSync;
+  @Metric("Audit events dropped because the audit event queue was full")
+  MutableCounterLong auditEventsDropped;
+  @Metric("Time audit events wait to be logged") MutableRate auditEventQueueTime;
   @Metric("Block report") MutableRate blockReport;
   final MutableQuantiles[] blockReportQuantiles;
   @Metric("Cache report") MutableRate cacheReport;
@@ -299,6 +302,14 @@ public void incrTransactionsBatchedInSync(long count) {
     transactionsBatchedInSync.incr(count);
   }
 
+  public void incrAuditEventsDropped() {
+    auditEventsDropped.incr();
+  }
+
+  public void addAuditEventQueueTime(long latency) {
+    auditEventQueueTime.add(latency);
+  }
+
   public void addSync(long elapsed) {
     syncs.add(elapsed);
     for (MutableQuantiles q : syncsQuantiles) {
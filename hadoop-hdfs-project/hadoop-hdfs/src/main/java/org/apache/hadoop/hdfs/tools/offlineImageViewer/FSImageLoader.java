@@ -136,7 +136,7 @@ public int compare(FsImageProto.FileSummary.Section s1,
               if (n1 == null) {
                 return n2 == null ? 0 : -1;
               } else if (n2 == null) {
-                return -1;
+                return 1;
               } else {
                 return n1.ordinal() - n2.ordinal();
               }
@@ -153,7 +153,13 @@ public int compare(FsImageProto.FileSummary.Section s1,
           LOG.debug("Loading section " + s.getName() + " length: " + s.getLength
               ());
         }
-        switch (FSImageFormatProtobuf.SectionName.fromString(s.getName())) {
+        FSImageFormatProtobuf.SectionName name =
+            FSImageFormatProtobuf.SectionName.fromString(s.getName());
+        if (name == null) {
+          // Skip sections written by newer software.
+          continue;
+        }
+        switch (name) {
           case STRING_TABLE:
             stringTable = loadStringTable(is);
             break;
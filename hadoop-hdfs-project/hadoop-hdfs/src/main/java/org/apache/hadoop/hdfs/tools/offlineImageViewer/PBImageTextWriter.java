@@ -452,7 +452,7 @@ public int compare(FsImageProto.FileSummary.Section s1,
               if (n1 == null) {
                 return n2 == null ? 0 : -1;
               } else if (n2 == null) {
-                return -1;
+                return 1;
               } else {
                 return n1.ordinal() - n2.ordinal();
               }
@@ -465,7 +465,12 @@ public int compare(FsImageProto.FileSummary.Section s1,
         is = FSImageUtil.wrapInputStreamForCompression(conf,
             summary.getCodec(), new BufferedInputStream(new LimitInputStream(
                 fin, section.getLength())));
-        switch (SectionName.fromString(section.getName())) {
+        SectionName name = SectionName.fromString(section.getName());
+        if (name == null) {
+          // Skip sections written by newer software.
+          continue;
+        }
+        switch (name) {
         case STRING_TABLE:
           LOG.info("Loading string table");
           stringTable = FSImageLoader.loadStringTable(is);
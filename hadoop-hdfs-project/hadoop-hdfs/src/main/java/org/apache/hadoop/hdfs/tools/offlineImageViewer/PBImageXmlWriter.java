@@ -272,7 +272,7 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
           if (n1 == null) {
             return n2 == null ? 0 : -1;
           } else if (n2 == null) {
-            return -1;
+            return 1;
           } else {
             return n1.ordinal() - n2.ordinal();
           }
@@ -285,7 +285,12 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
             summary.getCodec(), new BufferedInputStream(new LimitInputStream(
                 fin, s.getLength())));
 
-        switch (SectionName.fromString(s.getName())) {
+        SectionName name = SectionName.fromString(s.getName());
+        if (name == null) {
+          // Skip sections written by newer software.
+          continue;
+        }
+        switch (name) {
         case NS_INFO:
           dumpNameSection(is);
           break;
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AsyncDistributedFileSystem}.
+ */
+public class TestAsyncDistributedFileSystem {
+  private static final int FILE_LEN = 10000;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private AsyncDistributedFileSystem afs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    afs = fs.getAsyncDistributedFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testConcurrentPreads() throws Exception {
+    final int numFiles = 10;
+    List<byte[]> contents = new ArrayList<>();
+    List<CompletableFuture<FSDataInputStream>> opens = new ArrayList<>();
+    for (int i = 0; i < numFiles; i++) {
+      Path file = new Path("/file" + i);
+      byte[] data = AppendTestUtil.randomBytes(i, FILE_LEN);
+      DFSTestUtil.writeFile(fs, file, data);
+      contents.add(data);
+      opens.add(afs.open(file));
+    }
+
+    List<byte[]> buffers = new ArrayList<>();
+    List<CompletableFuture<Integer>> reads = new ArrayList<>();
+    for (int i = 0; i < numFiles; i++) {
+      byte[] buf = new byte[100];
+      buffers.add(buf);
+      reads.add(afs.pread(opens.get(i).get(), 1000 + i, buf, 0, buf.length));
+    }
+    for (int i = 0; i < numFiles; i++) {
+      assertEquals(100, reads.get(i).get().intValue());
+      byte[] expected = new byte[100];
+      System.arraycopy(contents.get(i), 1000 + i, expected, 0, 100);
+      assertArrayEquals(expected, buffers.get(i));
+      afs.close(opens.get(i).get()).get();
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testAppendHflushAndClose() throws Exception {
+    Path file = new Path("/appended");
+    byte[] data = AppendTestUtil.randomBytes(0, FILE_LEN);
+    DFSTestUtil.writeFile(fs, file, data);
+
+    FSDataOutputStream out = afs.append(file).get();
+    out.write(data);
+    afs.hflush(out).get();
+    assertEquals(2 * FILE_LEN,
+        DFSTestUtil.readFileAsBytes(fs, file).length);
+    afs.close(out).get();
+
+    byte[] expected = new byte[2 * FILE_LEN];
+    System.arraycopy(data, 0, expected, 0, FILE_LEN);
+    System.arraycopy(data, 0, expected, FILE_LEN, FILE_LEN);
+    assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(fs, file));
+  }
+
+  @Test(timeout = 120000)
+  public void testFailuresCompleteFuture() throws Exception {
+    try {
+      afs.open(new Path("/nonexistent")).get();
+      fail("Expected opening a missing file to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof FileNotFoundException);
+    }
+  }
+
+  /**
+   * A stream whose first close blocks until it is released.
+   */
+  private static class StallingStream implements Closeable {
+    private final CountDownLatch release;
+    private final AtomicInteger closes = new AtomicInteger(0);
+
+    StallingStream(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closes.incrementAndGet() == 1) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testCallsOnAStreamRunInOrder() throws Exception {
+    assertTrue(afs == fs.getAsyncDistributedFileSystem());
+    CountDownLatch release = new CountDownLatch(1);
+    StallingStream stalled = new StallingStream(release);
+    CompletableFuture<Void> first = afs.close(stalled);
+    CompletableFuture<Void> second = afs.close(stalled);
+
+    // A call on another stream is not held up by the stalled one.
+    StallingStream other = new StallingStream(new CountDownLatch(0));
+    afs.close(other).get(30, TimeUnit.SECONDS);
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+    assertEquals(1, stalled.closes.get());
+
+    release.countDown();
+    first.get();
+    second.get();
+    assertEquals(2, stalled.closes.get());
+  }
+
+  @Test(timeout = 120000)
+  public void testPendingCallsAreBounded() throws Exception {
+    Configuration conf = new HdfsConfiguration(cluster.getConfiguration(0));
+    conf.setInt(HdfsClientConfigKeys.AsyncIo.MAX_PENDING_CALLS_KEY, 2);
+    DistributedFileSystem limitedFs =
+        (DistributedFileSystem) FileSystem.newInstance(cluster.getURI(), conf);
+    try {
+      AsyncDistributedFileSystem limitedAfs =
+          limitedFs.getAsyncDistributedFileSystem();
+      CountDownLatch release = new CountDownLatch(1);
+      CompletableFuture<Void> first =
+          limitedAfs.close(new StallingStream(release));
+      CompletableFuture<Void> second =
+          limitedAfs.close(new StallingStream(release));
+      try {
+        limitedAfs.close(new StallingStream(release)).get();
+        fail("Expected a call beyond the limit to be rejected");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+
+      release.countDown();
+      first.get();
+      second.get();
+      // The finished calls no longer count against the limit.
+      limitedAfs.close(new StallingStream(release)).get();
+    } finally {
+      limitedFs.close();
+    }
+  }
+}
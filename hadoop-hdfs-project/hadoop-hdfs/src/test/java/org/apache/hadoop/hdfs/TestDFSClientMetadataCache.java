@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.GlobalStorageStatistics;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the client-side metadata cache, {@link ClientMetadataCache}.
+ */
+public class TestDFSClientMetadataCache {
+  private static final int FILE_LEN = 4096;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_REPLICATION_KEY, 1);
+    conf.setLong(HdfsClientConfigKeys.MetadataCache.EXPIRY_MS_KEY, 600000);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private static long getOpStatistics(OpType op) {
+    return GlobalStorageStatistics.INSTANCE.get(DFSOpsCountStatistics.NAME)
+        .getLong(op.getSymbol());
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    DFSClient client = new DFSClient(cluster.getURI(),
+        new HdfsConfiguration());
+    try {
+      assertNull(client.getMetadataCache());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testOpenFromCache() throws Exception {
+    Path file = new Path("/file");
+    byte[] data = AppendTestUtil.randomBytes(0, FILE_LEN);
+    DFSTestUtil.writeFile(fs, file, data);
+
+    long hits = getOpStatistics(OpType.METADATA_CACHE_HIT);
+    long misses = getOpStatistics(OpType.METADATA_CACHE_MISS);
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    assertEquals(misses + 1, getOpStatistics(OpType.METADATA_CACHE_MISS));
+    assertEquals(hits, getOpStatistics(OpType.METADATA_CACHE_HIT));
+
+    // The second open is served from the cache.
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    assertEquals(hits + 1, getOpStatistics(OpType.METADATA_CACHE_HIT));
+
+    assertEquals(FILE_LEN, fs.getFileStatus(file).getLen());
+    assertEquals(FILE_LEN, fs.getFileStatus(file).getLen());
+    assertEquals(hits + 2, getOpStatistics(OpType.METADATA_CACHE_HIT));
+  }
+
+  @Test(timeout = 60000)
+  public void testFilesBeingWrittenAreNotCached() throws Exception {
+    Path file = new Path("/file");
+    ClientMetadataCache cache = fs.getClient().getMetadataCache();
+    FSDataOutputStream out = fs.create(file);
+    try {
+      out.write(AppendTestUtil.randomBytes(0, FILE_LEN));
+      out.hflush();
+      fs.getFileStatus(file);
+      fs.open(file).close();
+      fs.getFileStatus(file);
+      assertNull(cache.getBlockLocations(file.toString()));
+      assertNull(cache.getFileStatus(file.toString()));
+    } finally {
+      out.close();
+    }
+    // The status is cached once the file is known to be closed.
+    assertEquals(FILE_LEN, fs.getFileStatus(file).getLen());
+    assertNull(cache.getFileStatus(file.toString()));
+    fs.open(file).close();
+    assertNotNull(cache.getBlockLocations(file.toString()));
+    assertEquals(FILE_LEN, fs.getFileStatus(file).getLen());
+    assertNotNull(cache.getFileStatus(file.toString()));
+  }
+
+  @Test(timeout = 60000)
+  public void testChangesInvalidateCache() throws Exception {
+    Path dir = new Path("/dir");
+    Path file = new Path(dir, "file");
+    DFSTestUtil.writeFile(fs, file, AppendTestUtil.randomBytes(0, FILE_LEN));
+    fs.open(file).close();
+    assertEquals(1, fs.getFileStatus(file).getReplication());
+
+    fs.setReplication(file, (short) 2);
+    assertEquals(2, fs.getFileStatus(file).getReplication());
+
+    DFSTestUtil.appendFile(fs, file, FILE_LEN);
+    assertEquals(2 * FILE_LEN, fs.getFileStatus(file).getLen());
+    assertEquals(2 * FILE_LEN, DFSTestUtil.readFileAsBytes(fs, file).length);
+
+    // Renaming a parent drops the entries below it.
+    Path newDir = new Path("/newDir");
+    fs.rename(dir, newDir);
+    assertFalse(fs.exists(file));
+
+    Path newFile = new Path(newDir, "file");
+    assertEquals(2 * FILE_LEN, fs.getFileStatus(newFile).getLen());
+    fs.delete(newDir, true);
+    assertFalse(fs.exists(newFile));
+    assertEquals(0, fs.getClient().getMetadataCache().size());
+  }
+
+  private static LocatedBlocks closedFileBlocks() {
+    return new LocatedBlocks(0, false, new ArrayList<LocatedBlock>(), null,
+        true, null, null);
+  }
+
+  @Test
+  public void testInvalidateOnlyDropsEntriesBelowPath() {
+    ClientMetadataCache cache = new ClientMetadataCache(600000, 100);
+    String[] paths = {"/a/b", "/a/b/c", "/a/b/c/d", "/a/bc", "/a", "/x"};
+    for (String path : paths) {
+      cache.putBlockLocations(path, closedFileBlocks());
+    }
+    cache.invalidate("/a/b");
+    assertNull(cache.getBlockLocations("/a/b"));
+    assertNull(cache.getBlockLocations("/a/b/c"));
+    assertNull(cache.getBlockLocations("/a/b/c/d"));
+    assertNotNull(cache.getBlockLocations("/a/bc"));
+    assertNotNull(cache.getBlockLocations("/a"));
+    assertNotNull(cache.getBlockLocations("/x"));
+    assertEquals(3, cache.numPaths());
+
+    cache.invalidate("/");
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.numPaths());
+  }
+
+  @Test
+  public void testEvictedPathsAreForgotten() {
+    ClientMetadataCache cache = new ClientMetadataCache(600000, 4);
+    for (int i = 0; i < 100; i++) {
+      cache.putBlockLocations("/file" + i, closedFileBlocks());
+    }
+    assertTrue(cache.size() <= 4);
+    assertEquals(cache.size(), cache.numPaths());
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.apache.hadoop.hdfs.DatanodeReadLatencyTracker.MIN_BUCKET_BYTES;
+import static org.apache.hadoop.hdfs.DatanodeReadLatencyTracker.MIN_SAMPLES;
+import static org.apache.hadoop.hdfs.DatanodeReadLatencyTracker.NUM_BUCKETS;
+import static org.apache.hadoop.hdfs.DatanodeReadLatencyTracker.getBucket;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DatanodeReadLatencyTracker}.
+ */
+public class TestDatanodeReadLatencyTracker {
+  private final DatanodeInfo fastNode = DFSTestUtil.getDatanodeInfo("1.1.1.1");
+  private final DatanodeInfo slowNode = DFSTestUtil.getDatanodeInfo("2.2.2.2");
+  private static final int SMALL_READ = 4096;
+  private static final int LARGE_READ = 4 * 1024 * 1024;
+
+  @Test
+  public void testHedgedReadThreshold() {
+    DatanodeReadLatencyTracker tracker =
+        new DatanodeReadLatencyTracker(90, 0, 0);
+    // The configured threshold is used until there are enough reads.
+    for (int i = 1; i < MIN_SAMPLES; i++) {
+      tracker.addSample(fastNode, SMALL_READ, i);
+    }
+    assertEquals(500, tracker.getHedgedReadThresholdMillis(500, SMALL_READ));
+
+    // 1..100ms, so the 90th percentile is 90ms.
+    for (int i = MIN_SAMPLES; i <= 100; i++) {
+      tracker.addSample(fastNode, SMALL_READ, i);
+    }
+    assertEquals(90, tracker.getHedgedReadThresholdMillis(500, SMALL_READ));
+
+    // The percentile is only recomputed every MIN_SAMPLES reads.
+    for (int i = 1; i < MIN_SAMPLES; i++) {
+      tracker.addSample(fastNode, SMALL_READ, 1000);
+    }
+    assertEquals(90, tracker.getHedgedReadThresholdMillis(500, SMALL_READ));
+    tracker.addSample(fastNode, SMALL_READ, 1000);
+    assertEquals(1000,
+        tracker.getHedgedReadThresholdMillis(500, SMALL_READ));
+
+    // Very fast reads must not make the threshold zero.
+    DatanodeReadLatencyTracker zeroLatency =
+        new DatanodeReadLatencyTracker(90, 0, 0);
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      zeroLatency.addSample(fastNode, SMALL_READ, 0);
+    }
+    assertEquals(1, zeroLatency.getHedgedReadThresholdMillis(500, SMALL_READ));
+
+    DatanodeReadLatencyTracker fixed =
+        new DatanodeReadLatencyTracker(0, 3, 60000);
+    for (int i = 0; i < 100; i++) {
+      fixed.addSample(fastNode, SMALL_READ, i);
+    }
+    assertEquals(500, fixed.getHedgedReadThresholdMillis(500, SMALL_READ));
+  }
+
+  @Test
+  public void testReadLengthBuckets() {
+    assertEquals(0, getBucket(0));
+    assertEquals(0, getBucket(MIN_BUCKET_BYTES));
+    assertEquals(1, getBucket(MIN_BUCKET_BYTES + 1));
+    assertEquals(1, getBucket(2 * MIN_BUCKET_BYTES));
+    assertEquals(2, getBucket(2 * MIN_BUCKET_BYTES + 1));
+    assertEquals(NUM_BUCKETS - 1, getBucket(Long.MAX_VALUE));
+
+    // Large reads taking longer do not raise the threshold of small reads.
+    DatanodeReadLatencyTracker tracker =
+        new DatanodeReadLatencyTracker(90, 3, 60000);
+    for (int i = 0; i < 4 * MIN_SAMPLES; i++) {
+      tracker.addSample(fastNode, SMALL_READ, 10);
+      tracker.addSample(slowNode, LARGE_READ, 100);
+    }
+    assertEquals(10, tracker.getHedgedReadThresholdMillis(500, SMALL_READ));
+    assertEquals(100, tracker.getHedgedReadThresholdMillis(500, LARGE_READ));
+    // Nor do they make the DataNode serving them look slow.
+    assertFalse(tracker.isSlow(slowNode));
+  }
+
+  @Test
+  public void testSlowNodesArePassedOver() throws Exception {
+    DatanodeReadLatencyTracker tracker =
+        new DatanodeReadLatencyTracker(0, 3, 1000);
+    for (int i = 0; i < 4 * MIN_SAMPLES; i++) {
+      tracker.addSample(fastNode, SMALL_READ, 10);
+    }
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      assertFalse(tracker.isSlow(slowNode));
+      tracker.addSample(slowNode, SMALL_READ, 100);
+    }
+    assertTrue(tracker.isSlow(slowNode));
+    assertFalse(tracker.isSlow(fastNode));
+
+    // The node is given another chance once the period is over.
+    Thread.sleep(1500);
+    assertFalse(tracker.isSlow(slowNode));
+  }
+
+  @Test
+  public void testSlowNodeDetectionDisabled() {
+    DatanodeReadLatencyTracker tracker =
+        new DatanodeReadLatencyTracker(95, 0, 60000);
+    for (int i = 0; i < 4 * MIN_SAMPLES; i++) {
+      tracker.addSample(fastNode, SMALL_READ, 10);
+      tracker.addSample(slowNode, SMALL_READ, 1000);
+    }
+    assertFalse(tracker.isSlow(slowNode));
+  }
+}
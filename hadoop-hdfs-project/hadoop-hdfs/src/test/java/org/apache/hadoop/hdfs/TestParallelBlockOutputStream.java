@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InterruptedIOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelBlockOutputStream}.
+ */
+public class TestParallelBlockOutputStream {
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(HdfsClientConfigKeys.Write.PARALLEL_PIPELINES_KEY, 3);
+    // Less than the pipelines can take, so that the writer has to wait.
+    conf.setLong(HdfsClientConfigKeys.Write.PARALLEL_MAX_BUFFERED_BYTES_KEY,
+        2 * BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private FSDataOutputStream createParallel(Path file, boolean overwrite)
+      throws Exception {
+    return fs.createParallel(file, null, overwrite, 4096, (short) 3,
+        BLOCK_SIZE, null);
+  }
+
+  @Test(timeout = 120000)
+  public void testWriteMultipleBlocks() throws Exception {
+    Path dir = new Path("/dir");
+    Path file = new Path(dir, "file");
+    int len = 5 * BLOCK_SIZE + BLOCK_SIZE / 2;
+    byte[] data = AppendTestUtil.randomBytes(0, len);
+
+    FSDataOutputStream out = createParallel(file, false);
+    // Write in pieces which do not line up with the blocks.
+    for (int off = 0; off < len; off += 10000) {
+      out.write(data, off, Math.min(10000, len - off));
+    }
+    ParallelBlockOutputStream parallelOut =
+        (ParallelBlockOutputStream) out.getWrappedStream();
+    // Nothing appears at the path until the stream is closed.
+    assertFalse(fs.exists(file));
+    out.close();
+    assertEquals(6, parallelOut.getNumParts());
+
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    LocatedBlocks blocks = fs.getClient().getLocatedBlocks(
+        file.toString(), 0, len);
+    assertEquals(6, blocks.locatedBlockCount());
+    assertEquals(len, blocks.getFileLength());
+    // The other parts have been concatenated onto the file.
+    assertEquals(1, fs.listStatus(dir).length);
+  }
+
+  @Test(timeout = 120000)
+  public void testWriteSingleBlock() throws Exception {
+    Path file = new Path("/file");
+    byte[] data = AppendTestUtil.randomBytes(0, BLOCK_SIZE);
+    FSDataOutputStream out = createParallel(file, false);
+    out.write(data);
+    out.close();
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+
+    // An empty file is created too.
+    Path empty = new Path("/empty");
+    createParallel(empty, false).close();
+    assertEquals(0, fs.getFileStatus(empty).getLen());
+  }
+
+  @Test(timeout = 120000)
+  public void testOverwrite() throws Exception {
+    Path file = new Path("/file");
+    DFSTestUtil.writeFile(fs, file, "existing");
+    try {
+      createParallel(file, false);
+      fail("Created a file over an existing one");
+    } catch (FileAlreadyExistsException e) {
+      // expected
+    }
+
+    byte[] data = AppendTestUtil.randomBytes(0, 2 * BLOCK_SIZE + 1);
+    FSDataOutputStream out = fs.createParallel(file,
+        new FsPermission((short) 0600), true, 4096, (short) 3, BLOCK_SIZE,
+        null);
+    out.write(data);
+    // The existing file is only replaced once the stream is closed.
+    assertEquals("existing", DFSTestUtil.readFile(fs, file));
+    out.close();
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    assertEquals(new FsPermission((short) 0600),
+        fs.getFileStatus(file).getPermission());
+    assertEquals(1, fs.listStatus(new Path("/")).length);
+  }
+
+  @Test(timeout = 120000)
+  public void testFailureDeletesParts() throws Exception {
+    Path dir = new Path("/dir");
+    Path file = new Path(dir, "file");
+    FSDataOutputStream out = createParallel(file, false);
+    out.write(AppendTestUtil.randomBytes(0, 2 * BLOCK_SIZE + 1));
+    // A file created meanwhile is not overwritten.
+    DFSTestUtil.writeFile(fs, file, "existing");
+    try {
+      out.close();
+      fail("Overwrote a file created while writing");
+    } catch (FileAlreadyExistsException e) {
+      // expected
+    }
+    assertEquals("existing", DFSTestUtil.readFile(fs, file));
+    assertEquals(1, fs.listStatus(dir).length);
+  }
+
+  @Test(timeout = 120000)
+  public void testHflushAndHsyncAreUnsupported() throws Exception {
+    Path file = new Path("/file");
+    FSDataOutputStream out = createParallel(file, false);
+    out.write(AppendTestUtil.randomBytes(0, 1000));
+    try {
+      out.hflush();
+      fail("hflush succeeded on a file which does not exist yet");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      out.hsync();
+      fail("hsync succeeded on a file which does not exist yet");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    out.close();
+    assertEquals(1000, fs.getFileStatus(file).getLen());
+  }
+
+  @Test(timeout = 120000)
+  public void testInterruptedCloseDeletesParts() throws Exception {
+    Path dir = new Path("/dir");
+    Path file = new Path(dir, "file");
+    FSDataOutputStream out = createParallel(file, false);
+    out.write(AppendTestUtil.randomBytes(0, 2 * BLOCK_SIZE + 1));
+    out.flush();
+    assertEquals(3, fs.listStatus(dir).length);
+    assertTrue(fs.listStatus(dir)[0].getPath().getName().contains(
+        ParallelBlockOutputStream.PART_MARKER));
+    // Closing is interrupted while it waits for the last part.
+    Thread.currentThread().interrupt();
+    try {
+      out.close();
+      fail("Closing an interrupted stream succeeded");
+    } catch (InterruptedIOException e) {
+      // expected
+    } finally {
+      Thread.interrupted();
+    }
+    assertFalse(fs.exists(file));
+    assertEquals(0, fs.listStatus(dir).length);
+  }
+}
@@ -19,20 +19,27 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
@@ -468,6 +475,127 @@ private void dfsPreadTest(Configuration conf, boolean disableTransferTo, boolean
     }
   }
   
+  @Test
+  public void testVectoredRead() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.MAX_MERGE_GAP_KEY, 100);
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_KEY,
+        blockSize);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    DistributedFileSystem fileSys = cluster.getFileSystem();
+    try {
+      Path file = new Path("/vectoredReadTest.dat");
+      DFSTestUtil.createFile(fileSys, file, fileSize, fileSize,
+          blockSize, (short) 3, seed);
+      byte[] expected = DFSTestUtil.readFileAsBytes(fileSys, file);
+
+      // Close ranges, ranges spanning blocks and ranges far apart, given
+      // out of order.
+      List<FileRange> ranges = new ArrayList<>();
+      ranges.add(new FileRange(blockSize * 5 + 17, 3000));
+      ranges.add(new FileRange(0, 10));
+      ranges.add(new FileRange(50, 100));
+      ranges.add(new FileRange(blockSize - 10, 20));
+      ranges.add(new FileRange(fileSize - 1, 1));
+      ranges.add(new FileRange(1000, 0));
+      try (FSDataInputStream in = fileSys.open(file)) {
+        in.readVectored(ranges, new IntFunction<ByteBuffer>() {
+          @Override
+          public ByteBuffer apply(int size) {
+            return ByteBuffer.allocateDirect(size);
+          }
+        });
+        for (FileRange range : ranges) {
+          ByteBuffer data = range.getData().get();
+          assertEquals(range.getLength(), data.remaining());
+          byte[] actual = new byte[range.getLength()];
+          data.get(actual);
+          checkAndEraseData(actual, (int) range.getOffset(), expected,
+              "Vectored read " + range);
+        }
+      }
+
+      // A range past the end of the file fails without failing the others.
+      FileRange valid = new FileRange(0, 100);
+      FileRange pastEof = new FileRange(fileSize - 10, 20);
+      try (FSDataInputStream in = fileSys.open(file)) {
+        in.readVectored(Arrays.asList(valid, pastEof),
+            new IntFunction<ByteBuffer>() {
+              @Override
+              public ByteBuffer apply(int size) {
+                return ByteBuffer.allocate(size);
+              }
+            });
+        assertEquals(100, valid.getData().get().remaining());
+        try {
+          pastEof.getData().get();
+          fail("Expected the read past the end of the file to fail");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof EOFException);
+        }
+
+        // Nor does it fail a readable range which it is merged with.
+        FileRange mergedValid = new FileRange(fileSize - 200, 50);
+        FileRange mergedPastEof = new FileRange(fileSize - 100, 200);
+        assertEquals(1, DFSInputStream.mergeRanges(
+            Arrays.asList(mergedValid, mergedPastEof), 100, blockSize).size());
+        in.readVectored(Arrays.asList(mergedValid, mergedPastEof),
+            new IntFunction<ByteBuffer>() {
+              @Override
+              public ByteBuffer apply(int size) {
+                return ByteBuffer.allocate(size);
+              }
+            });
+        ByteBuffer data = mergedValid.getData().get();
+        assertEquals(50, data.remaining());
+        byte[] actual = new byte[50];
+        data.get(actual);
+        checkAndEraseData(actual, fileSize - 200, expected,
+            "Vectored read " + mergedValid);
+        try {
+          mergedPastEof.getData().get();
+          fail("Expected the read past the end of the file to fail");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof EOFException);
+        }
+
+        // Overlapping ranges are rejected.
+        try {
+          in.readVectored(Arrays.asList(new FileRange(0, 100),
+              new FileRange(99, 10)), new IntFunction<ByteBuffer>() {
+                @Override
+                public ByteBuffer apply(int size) {
+                  return ByteBuffer.allocate(size);
+                }
+              });
+          fail("Expected overlapping ranges to be rejected");
+        } catch (IllegalArgumentException e) {
+          GenericTestUtils.assertExceptionContains("Overlapping", e);
+        }
+      }
+    } finally {
+      fileSys.close();
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testMergeVectoredReadRanges() {
+    List<FileRange> sorted = Arrays.asList(new FileRange(0, 10),
+        new FileRange(20, 10), new FileRange(200, 10),
+        new FileRange(210, 1000), new FileRange(5000, 10));
+    List<List<FileRange>> merged =
+        DFSInputStream.mergeRanges(sorted, 100, 500);
+    assertEquals(4, merged.size());
+    assertEquals(Arrays.asList(sorted.get(0), sorted.get(1)), merged.get(0));
+    assertEquals(Arrays.asList(sorted.get(2)), merged.get(1));
+    // Too large to merge, but still read as a whole.
+    assertEquals(Arrays.asList(sorted.get(3)), merged.get(2));
+    assertEquals(Arrays.asList(sorted.get(4)), merged.get(3));
+  }
+
   @Test
   public void testPreadDFSSimulated() throws IOException {
     simulatedStorage = true;
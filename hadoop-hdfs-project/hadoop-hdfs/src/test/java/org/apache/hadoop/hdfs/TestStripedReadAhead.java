@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.namenode.ErasureCodingPolicyManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+/**
+ * Test reading striped files sequentially with stripes read ahead.
+ */
+public class TestStripedReadAhead {
+  private final ErasureCodingPolicy ecPolicy =
+      ErasureCodingPolicyManager.getSystemDefaultPolicy();
+  private final short dataBlocks = (short) ecPolicy.getNumDataUnits();
+  private final short parityBlocks = (short) ecPolicy.getNumParityUnits();
+  private final int cellSize = ecPolicy.getCellSize();
+  private final int stripesPerBlock = 4;
+  private final int blockSize = stripesPerBlock * cellSize;
+  private final int blockGroupSize = blockSize * dataBlocks;
+  // Ends with a partial stripe.
+  private final int fileLength = 2 * blockGroupSize + cellSize + 123;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private final Path file = new Path("/file");
+  private byte[] expected;
+
+  @Rule
+  public Timeout globalTimeout = new Timeout(300000);
+
+  @Before
+  public void setup() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_MAX_STREAMS_KEY, 0);
+    conf.setInt(HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY, 2);
+    cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(dataBlocks + parityBlocks).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    fs.getClient().setErasureCodingPolicy("/", ecPolicy);
+
+    expected = StripedFileTestUtil.generateBytes(fileLength);
+    DFSTestUtil.writeFile(fs, file, expected);
+    StripedFileTestUtil.waitBlockGroupsReported(fs, file.toString());
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private void verifyReads() throws IOException {
+    StripedFileTestUtil.verifyStatefulRead(fs, file, fileLength, expected,
+        new byte[1024]);
+    StripedFileTestUtil.verifyStatefulRead(fs, file, fileLength, expected,
+        new byte[fileLength + 100]);
+    StripedFileTestUtil.verifyStatefulRead(fs, file, fileLength, expected,
+        ByteBuffer.allocate(cellSize + 1));
+    // Seeks while stripes are being read ahead.
+    StripedFileTestUtil.verifySeek(fs, file, fileLength, ecPolicy,
+        blockGroupSize);
+  }
+
+  @Test
+  public void testReadAhead() throws Exception {
+    verifyReads();
+
+    // Read part of the file, and close it with stripes still read ahead.
+    byte[] buf = new byte[cellSize];
+    try (FSDataInputStream in = fs.open(file)) {
+      in.readFully(buf);
+    }
+    assertArrayEquals(Arrays.copyOf(expected, cellSize), buf);
+  }
+
+  @Test
+  public void testReadAheadWithMissingBlocks() throws Exception {
+    BlockLocation[] locs = fs.getFileBlockLocations(file, 0, cellSize);
+    // Without a data block and a parity block, stripes have to be decoded.
+    stopDataNode(locs[0].getNames()[0]);
+    stopDataNode(locs[0].getNames()[dataBlocks]);
+    verifyReads();
+  }
+
+  @Test
+  public void testStatefulReadsAndPreadsWithMissingBlocks()
+      throws Exception {
+    BlockLocation[] locs = fs.getFileBlockLocations(file, 0, cellSize);
+    stopDataNode(locs[0].getNames()[0]);
+    stopDataNode(locs[0].getNames()[dataBlocks]);
+
+    // Preads decode on other threads while the stream reads the stripes
+    // ahead of its stateful reads, and decodes those.
+    final FSDataInputStream in = fs.open(file);
+    final AtomicBoolean done = new AtomicBoolean(false);
+    ExecutorService preaders = Executors.newFixedThreadPool(2);
+    try {
+      Callable<Integer> preader = new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          Random random = new Random();
+          byte[] buf = new byte[cellSize + 1];
+          int preads = 0;
+          while (!done.get() || preads == 0) {
+            int len = 1 + random.nextInt(buf.length);
+            int pos = random.nextInt(fileLength - len + 1);
+            in.readFully(pos, buf, 0, len);
+            assertArrayEquals(Arrays.copyOfRange(expected, pos, pos + len),
+                Arrays.copyOf(buf, len));
+            preads++;
+          }
+          return preads;
+        }
+      };
+      Future<Integer> first = preaders.submit(preader);
+      Future<Integer> second = preaders.submit(preader);
+      for (int i = 0; i < 3; i++) {
+        byte[] buf = new byte[fileLength];
+        in.seek(0);
+        int off = 0;
+        while (off < fileLength) {
+          int n = in.read(buf, off, Math.min(1000, fileLength - off));
+          assertTrue(n > 0);
+          off += n;
+        }
+        assertArrayEquals(expected, buf);
+      }
+      done.set(true);
+      assertTrue(first.get() > 0);
+      assertTrue(second.get() > 0);
+    } finally {
+      done.set(true);
+      preaders.shutdownNow();
+      in.close();
+    }
+  }
+
+  @Test
+  public void testFailedReadAhead() throws Exception {
+    // Fail every other stripe read ahead; those are then read again.
+    final AtomicInteger readAheads = new AtomicInteger();
+    DFSClientFaultInjector oldInjector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+      @Override
+      public void readStripeAhead() throws IOException {
+        if (readAheads.incrementAndGet() % 2 == 0) {
+          throw new IOException("Injected read ahead failure");
+        }
+      }
+    });
+    try {
+      verifyReads();
+    } finally {
+      DFSClientFaultInjector.set(oldInjector);
+    }
+    assertTrue(readAheads.get() > 1);
+  }
+
+  private void stopDataNode(String name) throws IOException {
+    for (DataNode dn : cluster.getDataNodes()) {
+      if (name.contains(Integer.toString(dn.getXferPort()))) {
+        dn.shutdown();
+        cluster.setDataNodeDead(dn.getDatanodeId());
+        return;
+      }
+    }
+  }
+}
@@ -22,6 +22,7 @@
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 import org.apache.hadoop.hdfs.AppendTestUtil;
 import org.junit.Test;
@@ -106,4 +107,35 @@ private void doTestReceiveAndMirror(PacketReceiver pr,
 
     assertArrayEquals(packet, mirrored.toByteArray());
   }
+
+  @Test
+  public void testReceiveAndMirrorDirect() throws IOException {
+    PacketReceiver pr = new PacketReceiver(true);
+    try {
+      doTestReceiveAndMirrorDirect(pr, 100, 10);
+      doTestReceiveAndMirrorDirect(pr, 50, 10);
+      doTestReceiveAndMirrorDirect(pr, 150, 10);
+    } finally {
+      pr.close();
+    }
+  }
+
+  private void doTestReceiveAndMirrorDirect(PacketReceiver pr,
+      int dataLen, int checksumsLen) throws IOException {
+    final byte[] DATA = AppendTestUtil.initBuffer(dataLen);
+    final byte[] CHECKSUMS = AppendTestUtil.initBuffer(checksumsLen);
+
+    byte[] packet = prepareFakePacket(DATA, CHECKSUMS);
+    pr.receiveNextPacket(
+        Channels.newChannel(new ByteArrayInputStream(packet)));
+
+    ByteBuffer parsedData = pr.getDataSlice();
+    assertTrue(parsedData.isDirect());
+    assertArrayEquals(DATA, remainingAsArray(parsedData));
+    assertArrayEquals(CHECKSUMS, remainingAsArray(pr.getChecksumSlice()));
+
+    ByteArrayOutputStream mirrored = new ByteArrayOutputStream();
+    pr.mirrorPacketTo(Channels.newChannel(mirrored));
+    assertArrayEquals(packet, mirrored.toByteArray());
+  }
 }
@@ -44,6 +44,7 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.qjournal.MiniJournalCluster;
 import org.apache.hadoop.hdfs.qjournal.QJMTestUtil;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.SegmentStateProto;
@@ -934,6 +935,149 @@ public void testSelectInputStreamsNotOnBoundary() throws Exception {
     
     verifyEdits(streams, 25, 50);
   }
+
+  @Test
+  public void testSelectViaRpc() throws Exception {
+    writeInProgressSegment();
+
+    QuorumJournalManager readerQjm = createSpyingQJM();
+    List<EditLogInputStream> streams = Lists.newArrayList();
+    try {
+      readerQjm.selectInputStreams(streams, 2, true, true);
+      assertEquals(1, streams.size());
+      assertTrue(streams.get(0).isInMemory());
+      verifyEdits(streams, 2, 5);
+    } finally {
+      IOUtils.cleanup(LOG, streams.toArray(new Closeable[0]));
+    }
+    assertNoStreaming(readerQjm);
+  }
+
+  /**
+   * Only the txns which a majority of the JournalNodes have returned should
+   * be selected, even if the stream chosen has more.
+   */
+  @Test
+  public void testSelectViaRpcWithDifferentCounts() throws Exception {
+    EditLogOutputStream stm = writeSegment(cluster, qjm, 1, 3, false);
+    // Only logger 2 gets txns 4-5.
+    for (int i = 0; i < 2; i++) {
+      futureThrows(new IOException("injected")).when(spies.get(i))
+          .sendEdits(Mockito.anyLong(), Mockito.eq(4L), Mockito.anyInt(),
+              Mockito.<byte[]>any());
+    }
+    try {
+      writeTxns(stm, 4, 2);
+      fail("Did not fail to write");
+    } catch (QuorumException qe) {
+      GenericTestUtils.assertExceptionContains("injected", qe);
+    } finally {
+      stm.abort();
+    }
+
+    QuorumJournalManager readerQjm = createSpyingQJM();
+    List<EditLogInputStream> streams = Lists.newArrayList();
+    try {
+      readerQjm.selectInputStreams(streams, 1, true, true);
+      assertEquals(1, streams.size());
+      assertTrue(streams.get(0).isInMemory());
+      verifyEdits(streams, 1, 3);
+    } finally {
+      IOUtils.cleanup(LOG, streams.toArray(new Closeable[0]));
+      streams.clear();
+    }
+
+    // No txns after 3 are on a majority.
+    readerQjm.selectInputStreams(streams, 4, true, true);
+    assertTrue(streams.isEmpty());
+    assertNoStreaming(readerQjm);
+  }
+
+  @Test
+  public void testSelectViaRpcWithCacheMissOnMinority() throws Exception {
+    writeInProgressSegment();
+
+    QuorumJournalManager readerQjm = createSpyingQJM();
+    injectCacheMiss(
+        readerQjm.getLoggerSetForTests().getLoggersForTests().get(0));
+    List<EditLogInputStream> streams = Lists.newArrayList();
+    try {
+      readerQjm.selectInputStreams(streams, 1, true, true);
+      assertEquals(1, streams.size());
+      assertTrue(streams.get(0).isInMemory());
+      verifyEdits(streams, 1, 5);
+    } finally {
+      IOUtils.cleanup(LOG, streams.toArray(new Closeable[0]));
+    }
+    assertNoStreaming(readerQjm);
+  }
+
+  @Test
+  public void testSelectViaRpcWithCacheMissOnMajority() throws Exception {
+    writeInProgressSegment();
+
+    QuorumJournalManager readerQjm = createSpyingQJM();
+    List<AsyncLogger> readerSpies =
+        readerQjm.getLoggerSetForTests().getLoggersForTests();
+    injectCacheMiss(readerSpies.get(0));
+    injectCacheMiss(readerSpies.get(1));
+    List<EditLogInputStream> streams = Lists.newArrayList();
+    try {
+      // Falls back to streaming the segments, which only serves up to the
+      // committed txid.
+      readerQjm.selectInputStreams(streams, 1, true, true);
+      assertEquals(1, streams.size());
+      assertFalse(streams.get(0).isInMemory());
+      verifyEdits(streams, 1, 3);
+    } finally {
+      IOUtils.cleanup(LOG, streams.toArray(new Closeable[0]));
+    }
+    Mockito.verify(readerSpies.get(2)).getEditLogManifest(1L, true);
+  }
+
+  @Test
+  public void testSelectViaRpcDisabled() throws Exception {
+    writeInProgressSegment();
+
+    conf.setInt(DFSConfigKeys.DFS_HA_TAILEDITS_QJM_RPC_MAX_TXNS_KEY, 0);
+    QuorumJournalManager readerQjm = createSpyingQJM();
+    List<EditLogInputStream> streams = Lists.newArrayList();
+    try {
+      readerQjm.selectInputStreams(streams, 1, true, true);
+      assertEquals(1, streams.size());
+      assertFalse(streams.get(0).isInMemory());
+      verifyEdits(streams, 1, 3);
+    } finally {
+      IOUtils.cleanup(LOG, streams.toArray(new Closeable[0]));
+    }
+    for (AsyncLogger spy :
+        readerQjm.getLoggerSetForTests().getLoggersForTests()) {
+      Mockito.verify(spy, Mockito.never()).getJournaledEdits(
+          Mockito.anyLong(), Mockito.anyInt());
+    }
+  }
+
+  /**
+   * Write txns 1-3 and 4-5 to an in-progress segment, as two batches so
+   * that the JournalNodes know txns 1-3 to be committed.
+   */
+  private EditLogOutputStream writeInProgressSegment() throws IOException {
+    EditLogOutputStream stm = writeSegment(cluster, qjm, 1, 3, false);
+    writeTxns(stm, 4, 2);
+    return stm;
+  }
+
+  private static void injectCacheMiss(AsyncLogger spy) {
+    futureThrows(new IOException("injected cache miss")).when(spy)
+        .getJournaledEdits(Mockito.anyLong(), Mockito.anyInt());
+  }
+
+  private static void assertNoStreaming(QuorumJournalManager qjm) {
+    for (AsyncLogger spy : qjm.getLoggerSetForTests().getLoggersForTests()) {
+      Mockito.verify(spy, Mockito.never()).getEditLogManifest(
+          Mockito.anyLong(), Mockito.anyBoolean());
+    }
+  }
   
   
   private QuorumJournalManager createSpyingQJM()
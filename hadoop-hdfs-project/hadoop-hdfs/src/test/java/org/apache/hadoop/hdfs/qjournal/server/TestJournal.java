@@ -30,6 +30,7 @@
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.qjournal.QJMTestUtil;
 import org.apache.hadoop.hdfs.qjournal.protocol.JournalOutOfSyncException;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProtoOrBuilder;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.SegmentStateProto;
@@ -166,6 +167,29 @@ public void testMaintainCommittedTxId() throws Exception {
     assertEquals(3, journal.getCommittedTxnId());
   }
   
+  @Test (timeout = 10000)
+  public void testGetJournaledEdits() throws Exception {
+    journal.newEpoch(FAKE_NSINFO, 1);
+    journal.startLogSegment(makeRI(1), 1,
+        NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION);
+    journal.journal(makeRI(2), 1, 1, 3, QJMTestUtil.createTxnData(1, 3));
+    journal.journal(makeRI(3), 1, 4, 3, QJMTestUtil.createTxnData(4, 3));
+
+    GetJournaledEditsResponseProto resp = journal.getJournaledEdits(2, 100);
+    assertEquals(5, resp.getTxnCount());
+    assertTrue(resp.hasEditLog());
+    assertEquals(0, journal.getJournaledEdits(7, 100).getTxnCount());
+
+    // A new writer may replace the edits, so they are no longer served.
+    journal.newEpoch(FAKE_NSINFO, 2);
+    try {
+      journal.getJournaledEdits(2, 100);
+      fail("Edits should not be served after a new epoch");
+    } catch (JournaledEditsCache.CacheMissException e) {
+      // expected
+    }
+  }
+
   @Test (timeout = 10000)
   public void testRestartJournal() throws Exception {
     journal.newEpoch(FAKE_NSINFO, 1);
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.qjournal.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.qjournal.QJMTestUtil;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
+import org.apache.hadoop.hdfs.qjournal.server.JournaledEditsCache.CacheMissException;
+import org.apache.hadoop.hdfs.server.namenode.EditLogFileInputStream;
+import org.apache.hadoop.hdfs.server.namenode.EditLogInputStream;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp;
+import org.apache.hadoop.hdfs.server.namenode.NameNodeLayoutVersion;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JournaledEditsCache}.
+ */
+public class TestJournaledEditsCache {
+  private static final int LAYOUT_VERSION =
+      NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION;
+
+  private static void storeEdits(JournaledEditsCache cache, long segmentTxId,
+      int firstTxId, int numTxns) throws Exception {
+    cache.storeEdits(segmentTxId, LAYOUT_VERSION, firstTxId,
+        firstTxId + numTxns - 1,
+        QJMTestUtil.createTxnData(firstTxId, numTxns));
+  }
+
+  /**
+   * @return the txids of the edits in the response, from the first batch
+   *         returned onwards
+   */
+  private static List<Long> readTxIds(GetJournaledEditsResponseProto resp)
+      throws Exception {
+    List<Long> txIds = new ArrayList<>();
+    EditLogInputStream elis = EditLogFileInputStream.fromByteString(
+        resp.getEditLog(), "test", 1, Long.MAX_VALUE, true);
+    try {
+      FSEditLogOp op;
+      while ((op = elis.readOp()) != null) {
+        txIds.add(op.getTransactionId());
+      }
+    } finally {
+      elis.close();
+    }
+    return txIds;
+  }
+
+  private static void assertCacheMiss(JournaledEditsCache cache,
+      long sinceTxId, long highestTxId) throws Exception {
+    try {
+      cache.getEdits(sinceTxId, 100, highestTxId);
+      fail("Edits from txid " + sinceTxId + " should not be cached");
+    } catch (CacheMissException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGetEdits() throws Exception {
+    JournaledEditsCache cache = new JournaledEditsCache(1024 * 1024);
+    storeEdits(cache, 1, 1, 3);
+    storeEdits(cache, 1, 4, 3);
+    storeEdits(cache, 1, 7, 3);
+
+    // The whole batch containing the first txid is returned.
+    GetJournaledEditsResponseProto resp = cache.getEdits(5, 100, 9);
+    assertEquals(5, resp.getTxnCount());
+    assertEquals(Arrays.asList(4L, 5L, 6L, 7L, 8L, 9L), readTxIds(resp));
+
+    // Batches beyond the highest txid are left out.
+    resp = cache.getEdits(2, 100, 6);
+    assertEquals(5, resp.getTxnCount());
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), readTxIds(resp));
+
+    // No batches are added once maxTxns is reached.
+    resp = cache.getEdits(1, 4, 9);
+    assertEquals(6, resp.getTxnCount());
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), readTxIds(resp));
+
+    assertCacheMiss(cache, 10, 9);
+    assertCacheMiss(cache, 7, 6);
+  }
+
+  @Test
+  public void testSegments() throws Exception {
+    JournaledEditsCache cache = new JournaledEditsCache(1024 * 1024);
+    storeEdits(cache, 1, 1, 3);
+    storeEdits(cache, 4, 4, 3);
+
+    // The edits returned stay within one segment.
+    GetJournaledEditsResponseProto resp = cache.getEdits(1, 100, 6);
+    assertEquals(3, resp.getTxnCount());
+    assertEquals(Arrays.asList(1L, 2L, 3L), readTxIds(resp));
+    resp = cache.getEdits(4, 100, 6);
+    assertEquals(3, resp.getTxnCount());
+    assertEquals(Arrays.asList(4L, 5L, 6L), readTxIds(resp));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    // Room for the last two batches only.
+    JournaledEditsCache cache = new JournaledEditsCache(
+        QJMTestUtil.createTxnData(11, 10).length +
+        QJMTestUtil.createTxnData(21, 10).length);
+    storeEdits(cache, 1, 1, 10);
+    storeEdits(cache, 1, 11, 10);
+    storeEdits(cache, 1, 21, 10);
+
+    assertCacheMiss(cache, 5, 30);
+    assertEquals(20, cache.getEdits(11, 100, 30).getTxnCount());
+
+    // A gap in the txids drops the edits before it.
+    storeEdits(cache, 1, 41, 10);
+    assertCacheMiss(cache, 21, 50);
+    assertEquals(10, cache.getEdits(41, 100, 50).getTxnCount());
+
+    cache.clear();
+    assertCacheMiss(cache, 41, 50);
+
+    // Nothing is cached without any capacity.
+    cache = new JournaledEditsCache(0);
+    storeEdits(cache, 1, 1, 10);
+    assertCacheMiss(cache, 1, 10);
+  }
+}
@@ -98,6 +98,7 @@
 import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.MetricsAsserts;
+import org.apache.hadoop.util.LightWeightGSet;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
@@ -189,6 +190,24 @@ public void testBasicReplication() throws Exception {
       doBasicTest(i);
     }
   }
+
+  @Test
+  public void testBlocksMapAllocationPercent() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setFloat(DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT,
+        0.5f);
+    BlockManager blockManager = new BlockManager(fsn, false, conf);
+    assertEquals(LightWeightGSet.computeCapacity(0.5f, "BlocksMap"),
+        blockManager.blocksMap.getCapacity());
+    assertTrue(blockManager.blocksMap.getCapacity() <
+        bm.blocksMap.getCapacity());
+
+    // Values below the minimum are raised to the minimum.
+    conf.setFloat(DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT,
+        0.0f);
+    blockManager = new BlockManager(fsn, false, conf);
+    assertTrue(blockManager.blocksMap.getCapacity() > 0);
+  }
   
   private void doBasicTest(int testIndex) {
     List<DatanodeStorageInfo> origStorages = getStorages(0, 1);
@@ -905,6 +924,49 @@ public void testFullBR() throws Exception {
     }
   }
 
+  @Test
+  public void testUnsortedFullBRRemovesUnreportedBlocks() throws Exception {
+    doReturn(true).when(fsn).isRunning();
+
+    DatanodeDescriptor node = nodes.get(0);
+    DatanodeStorageInfo ds = node.getStorageInfos()[0];
+    node.setAlive(true);
+    DatanodeRegistration nodeReg =  new DatanodeRegistration(node, null, null, "");
+
+    // register new node
+    bm.getDatanodeManager().registerDatanode(nodeReg);
+    bm.getDatanodeManager().addDatanode(node);
+
+    ArrayList<BlockInfo> blocks = new ArrayList<>();
+    for (int id = 24; id > 0; id--) {
+      blocks.add(addBlockToBM(id));
+    }
+    bm.processReport(node, new DatanodeStorage(ds.getStorageID()),
+                     generateReport(blocks),
+                     new BlockReportContext(1, 0, System.nanoTime(), 0, false));
+    assertEquals(24, ds.numBlocks());
+
+    // Send an unsorted report which drops every third block and repeats
+    // one of the remaining blocks.
+    ArrayList<BlockInfo> reported = new ArrayList<>();
+    ArrayList<BlockInfo> dropped = new ArrayList<>();
+    for (int i = 0; i < blocks.size(); i++) {
+      (i % 3 == 0 ? dropped : reported).add(blocks.get(i));
+    }
+    reported.add(reported.get(0));
+    bm.processReport(node, new DatanodeStorage(ds.getStorageID()),
+                     generateReport(reported),
+                     new BlockReportContext(1, 0, System.nanoTime(), 0, false));
+    assertEquals(2, ds.getBlockReportCount());
+    assertEquals(blocks.size() - dropped.size(), ds.numBlocks());
+    for (BlockInfo block : dropped) {
+      assertTrue(bm.getStoredBlock(block).findStorageInfo(ds) < 0);
+    }
+    for (BlockInfo block : reported) {
+      assertTrue(bm.getStoredBlock(block).findStorageInfo(ds) >= 0);
+    }
+  }
+
   private BlockListAsLongs generateReport(List<BlockInfo> blocks) {
     BlockListAsLongs.Builder builder = BlockListAsLongs.builder();
     for (BlockInfo block : blocks) {
@@ -47,6 +47,8 @@
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -250,6 +252,24 @@ public void testIncrementSafeBlockCount() {
     }
   }
 
+  /**
+   * Test that live datanodes are not counted for every safe block while the
+   * block threshold has not been reached.
+   */
+  @Test(timeout = 30000)
+  public void testNoLiveDatanodeCountBelowBlockThreshold() {
+    bmSafeMode.activate(BLOCK_TOTAL);
+
+    for (long i = 1; i < BLOCK_THRESHOLD; i++) {
+      BlockInfo blockInfo = mock(BlockInfo.class);
+      doReturn(false).when(blockInfo).isStriped();
+      bmSafeMode.incrementSafeBlockCount(1, blockInfo);
+    }
+    assertTrue(bmSafeMode.isInSafeMode());
+    // Only the status report on activation counts the live datanodes.
+    verify(dn, times(1)).getNumLiveDataNodes();
+  }
+
   /**
    * Test that the block safe increases up to block threshold.
    *
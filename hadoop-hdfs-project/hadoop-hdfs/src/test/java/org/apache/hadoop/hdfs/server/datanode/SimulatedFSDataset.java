@@ -865,6 +865,10 @@ public boolean isCached(String bpid, long blockId) {
     return false;
   }
 
+  @Override // FSDatasetSpi
+  public void onShortCircuitRead(String bpid, long blockId) {
+  }
+
   private BInfo getBInfo(final ExtendedBlock b) {
     final Map<Block, BInfo> map = blockMap.get(b.getBlockPoolId());
     return map == null? null: map.get(b.getLocalBlock());
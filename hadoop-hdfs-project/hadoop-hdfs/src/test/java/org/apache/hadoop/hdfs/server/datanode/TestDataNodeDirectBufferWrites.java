@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.AppendTestUtil;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test writing blocks with the DataNode receiving packets into direct
+ * buffers.
+ */
+public class TestDataNodeDirectBufferWrites {
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private DataNodeFaultInjector oldInjector;
+  private final AtomicInteger directReceivers = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void receiveIntoDirectBuffers() {
+        directReceivers.incrementAndGet();
+      }
+    });
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_WRITE_DIRECT_BUFFERS_ENABLED_KEY, true);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+    DataNodeFaultInjector.set(oldInjector);
+  }
+
+  private void assertDirectBuffersUsed() {
+    assertTrue("No block was received into direct buffers",
+        directReceivers.get() > 0);
+  }
+
+  @Test(timeout = 120000)
+  public void testWriteThroughPipeline() throws Exception {
+    Path file = new Path("/testWriteThroughPipeline");
+    byte[] data = AppendTestUtil.initBuffer(BLOCK_SIZE * 2 + 12345);
+    try (FSDataOutputStream out = fs.create(file, (short) 3)) {
+      out.write(data);
+    }
+    DFSTestUtil.waitReplication(fs, file, (short) 3);
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    assertDirectBuffersUsed();
+  }
+
+  @Test(timeout = 120000)
+  public void testHflushAndAppend() throws Exception {
+    // Unaligned hflushes and appends exercise the partial chunk handling.
+    Path file = new Path("/testHflushAndAppend");
+    byte[] data = AppendTestUtil.initBuffer(10000);
+    try (FSDataOutputStream out = fs.create(file, (short) 3)) {
+      out.write(data, 0, 1000);
+      out.hflush();
+      out.write(data, 1000, 3333);
+      out.hflush();
+    }
+    try (FSDataOutputStream out = fs.append(file)) {
+      out.write(data, 4333, data.length - 4333);
+    }
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+    assertDirectBuffersUsed();
+  }
+}
@@ -36,6 +36,8 @@
 import org.apache.hadoop.hdfs.server.namenode.ErasureCodingPolicyManager;
 import org.apache.hadoop.hdfs.server.namenode.NameNodeAdapter;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import static org.apache.hadoop.test.MetricsAsserts.getIntGauge;
 import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertNotNull;
@@ -46,6 +48,10 @@
 import org.junit.Before;
 import org.junit.Test;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Supplier;
 
 /**
  * This file tests the erasure coding metrics in DataNode.
@@ -72,7 +78,12 @@ public void setup() throws IOException {
     conf = new Configuration();
     conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
     conf.setInt(DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY, 1);
-    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(numDNs).build();
+    startCluster(numDNs);
+  }
+
+  private void startCluster(int numDataNodes) throws IOException {
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(numDataNodes)
+        .build();
     cluster.waitActive();
     cluster.getFileSystem().getClient().setErasureCodingPolicy("/", null);
     fs = cluster.getFileSystem();
@@ -139,6 +150,91 @@ public void testReconstructionBytesPartialGroup3() throws Exception {
         getLongMetric("EcReconstructionBytesWritten"));
   }
 
+  // Several block groups, whose tasks read from the same sources
+  @Test(timeout = 120000)
+  public void testReconstructionTasksQueued() throws Exception {
+    cluster.shutdown();
+    conf.setInt(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_MAX_STREAMS_PER_SOURCE_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_MAX_STREAMS_KEY, 3);
+    // All the block groups are written to the same DataNodes, so that they
+    // are all reconstructed on the one DataNode added afterwards.
+    startCluster(groupSize);
+    final int numGroups = 3;
+    final int fileLen = numGroups * blockGroupSize;
+    Path file = writeFile("/testEcTasks", fileLen);
+    cluster.startDataNodes(conf, 1, true, null, null);
+    cluster.waitActive();
+    final DataNode target = cluster.getDataNodes().get(groupSize);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger started = new AtomicInteger(0);
+    final AtomicInteger maxSourceStreams = new AtomicInteger(0);
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void startStripedBlockReconstruction() {
+        started.incrementAndGet();
+        for (int streams : target.getErasureCodingWorker()
+            .getSourceStreams().values()) {
+          if (streams > maxSourceStreams.get()) {
+            maxSourceStreams.set(streams);
+          }
+        }
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    try {
+      killDataNode(file, 0);
+      // The tasks read from the same sources, so they wait for the first.
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return target.getErasureCodingWorker().getNumPendingTasks() > 0;
+        }
+      }, 100, 30000);
+      Assert.assertEquals(1, started.get());
+      Assert.assertEquals(1, getIntMetric("EcReconstructionRunningTasks"));
+      Assert.assertTrue(getIntMetric("EcReconstructionQueuedTasks") > 0);
+
+      // The queued tasks start as the ones before them finish.
+      release.countDown();
+      waitReconstructed(file, fileLen);
+    } finally {
+      release.countDown();
+      DataNodeFaultInjector.set(oldInjector);
+    }
+
+    // The tasks may still be closing after their blocks are reported.
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return getIntMetric("EcReconstructionQueuedTasks") == 0 &&
+            getIntMetric("EcReconstructionRunningTasks") == 0;
+      }
+    }, 100, 10000);
+    Assert.assertEquals(numGroups, started.get());
+    Assert.assertEquals(1, maxSourceStreams.get());
+    Assert.assertEquals(numGroups, getLongMetric("EcReconstructionTasks"));
+    Assert.assertEquals("EcFailedReconstructionTasks should be ",
+        0, getLongMetric("EcFailedReconstructionTasks"));
+    Assert.assertEquals(0,
+        target.getErasureCodingWorker().getNumPendingTasks());
+  }
+
+  private int getIntMetric(String metricName) {
+    int metricValue = 0;
+    for (DataNode dn : cluster.getDataNodes()) {
+      MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+      metricValue += getIntGauge(metricName, rb);
+    }
+    return metricValue;
+  }
+
   private long getLongMetric(String metricName) {
     long metricValue = 0;
     // Add all reconstruction metric value from all data nodes
@@ -151,13 +247,26 @@ private long getLongMetric(String metricName) {
 
   private void doTest(String fileName, int fileLen,
       int deadNodeIndex) throws Exception {
+    Path file = writeFile(fileName, fileLen);
+    killDataNode(file, deadNodeIndex);
+    waitReconstructed(file, fileLen);
+  }
+
+  private Path writeFile(String fileName, int fileLen) throws Exception {
     assertTrue(fileLen > 0);
-    assertTrue(deadNodeIndex >= 0 && deadNodeIndex < numDNs);
     Path file = new Path(fileName);
     final byte[] data = StripedFileTestUtil.generateBytes(fileLen);
     DFSTestUtil.writeFile(fs, file, data);
     StripedFileTestUtil.waitBlockGroupsReported(fs, fileName);
+    return file;
+  }
 
+  /**
+   * Kill a DataNode holding a block of the last block group of the file, and
+   * have the NameNode send out the reconstruction tasks.
+   */
+  private void killDataNode(Path file, int deadNodeIndex) throws Exception {
+    assertTrue(deadNodeIndex >= 0 && deadNodeIndex < numDNs);
     final LocatedBlocks locatedBlocks =
         StripedFileTestUtil.getLocatedBlocks(file, fs);
     final LocatedStripedBlock lastBlock =
@@ -176,6 +285,9 @@ private void doTest(String fileName, int fileLen,
     final int workCount = getComputedDatanodeWork();
     assertTrue("Wrongly computed block reconstruction work", workCount > 0);
     cluster.triggerHeartbeats();
+  }
+
+  private void waitReconstructed(Path file, int fileLen) throws Exception {
     int totalBlocks =  (fileLen / blockGroupSize) * groupSize;
     final int remainder = fileLen % blockGroupSize;
     totalBlocks += (remainder == 0) ? 0 :
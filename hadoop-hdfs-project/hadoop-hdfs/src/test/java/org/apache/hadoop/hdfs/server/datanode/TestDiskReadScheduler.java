@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests for {@link DiskReadScheduler}.
+ */
+public class TestDiskReadScheduler {
+  private static final String FILE = "/data/current/blk_1";
+
+  private final FsVolumeSpi volume = Mockito.mock(FsVolumeSpi.class);
+
+  /**
+   * Start readers of one file which wait for their turn one after another,
+   * and return the offsets in the order the readers got their turn.
+   */
+  private List<Long> runReaders(final DiskReadScheduler scheduler,
+      long... offsets) throws Exception {
+    String[] files = new String[offsets.length];
+    Arrays.fill(files, FILE);
+    List<Long> order = new ArrayList<>();
+    for (String read : runReaders(scheduler, files, offsets)) {
+      order.add(Long.parseLong(read.substring(FILE.length() + 1)));
+    }
+    return order;
+  }
+
+  /**
+   * Start readers which wait for their turn one after another, and return
+   * the reads, as file:offset, in the order the readers got their turn.
+   */
+  private List<String> runReaders(final DiskReadScheduler scheduler,
+      String[] files, long[] offsets) throws Exception {
+    final List<String> order =
+        Collections.synchronizedList(new ArrayList<String>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < offsets.length; i++) {
+      final String file = files[i];
+      final long offset = offsets[i];
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          try {
+            scheduler.acquire(volume, file, offset);
+            order.add(file + ":" + offset);
+            scheduler.release(volume);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      t.start();
+      threads.add(t);
+      final int waiting = i + 1;
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return scheduler.getNumWaiting(volume) == waiting;
+        }
+      }, 10, 10000);
+    }
+    // Let the first reader finish, and the others follow.
+    scheduler.release(volume);
+    for (Thread t : threads) {
+      t.join();
+    }
+    return order;
+  }
+
+  @Test(timeout=60000)
+  public void testArrivalOrder() throws Exception {
+    DiskReadScheduler scheduler = new DiskReadScheduler(1, false);
+    assertTrue(scheduler.acquire(volume, FILE, 150));
+    assertEquals(Arrays.asList(300L, 100L, 200L),
+        runReaders(scheduler, 300, 100, 200));
+  }
+
+  @Test(timeout=60000)
+  public void testElevatorOrder() throws Exception {
+    DiskReadScheduler scheduler = new DiskReadScheduler(1, true);
+    assertTrue(scheduler.acquire(volume, FILE, 150));
+    // Upwards from 150, then around to the lowest offset.
+    assertEquals(Arrays.asList(200L, 300L, 100L, 120L),
+        runReaders(scheduler, 300, 100, 200, 120));
+  }
+
+  @Test(timeout=60000)
+  public void testElevatorGroupsReadsByFile() throws Exception {
+    DiskReadScheduler scheduler = new DiskReadScheduler(1, true);
+    assertTrue(scheduler.acquire(volume, "/b", 150));
+    // The rest of the file last read, then the other files in turn.
+    assertEquals(Arrays.asList("/b:200", "/c:0", "/c:100", "/a:50", "/b:100"),
+        runReaders(scheduler, new String[] {"/c", "/a", "/b", "/b", "/c"},
+            new long[] {100, 50, 200, 100, 0}));
+  }
+
+  @Test(timeout=60000)
+  public void testQueueDepth() throws Exception {
+    DiskReadScheduler scheduler = new DiskReadScheduler(2, true);
+    assertTrue(scheduler.acquire(volume, FILE, 0));
+    assertTrue(scheduler.acquire(volume, FILE, 0));
+    assertEquals(0, scheduler.getNumWaiting(volume));
+    // The other volumes are not held up.
+    assertTrue(
+        scheduler.acquire(Mockito.mock(FsVolumeSpi.class), FILE, 0));
+    assertEquals(Arrays.asList(10L), runReaders(scheduler, 10));
+
+    DiskReadScheduler disabled = new DiskReadScheduler(0, false);
+    assertFalse(disabled.isEnabled());
+    assertFalse(disabled.acquire(volume, FILE, 0));
+  }
+}
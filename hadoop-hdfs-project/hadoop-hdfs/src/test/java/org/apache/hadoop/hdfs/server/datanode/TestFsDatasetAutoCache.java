@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.io.nativeio.NativeIO.POSIX.CacheManipulator;
+import org.apache.hadoop.io.nativeio.NativeIO.POSIX.NoMlockCacheManipulator;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests the caching of blocks which are often opened for short-circuit
+ * reads, without the NameNode asking for them to be cached.
+ */
+public class TestFsDatasetAutoCache {
+  private static final long CACHE_CAPACITY = 64 * 1024;
+  private static final long BLOCK_SIZE =
+      NativeIO.POSIX.getCacheManipulator().getOperatingSystemPageSize();
+  private static final long AUTO_CACHE_CAPACITY = 2 * BLOCK_SIZE;
+
+  private MiniDFSCluster cluster;
+  private FileSystem fs;
+  private FsDatasetSpi<?> fsd;
+  private String bpid;
+  private List<LocatedBlock> blocks;
+  private CacheManipulator prevCacheManipulator;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_MAX_LOCKED_MEMORY_KEY,
+        CACHE_CAPACITY);
+    conf.setLong(
+        DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_MAX_BYTES_KEY,
+        AUTO_CACHE_CAPACITY);
+    conf.setInt(
+        DFSConfigKeys.DFS_DATANODE_SHORT_CIRCUIT_AUTO_CACHE_THRESHOLD_KEY, 2);
+
+    prevCacheManipulator = NativeIO.POSIX.getCacheManipulator();
+    NativeIO.POSIX.setCacheManipulator(new NoMlockCacheManipulator());
+
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    fsd = cluster.getDataNodes().get(0).getFSDataset();
+    bpid = cluster.getNamesystem().getBlockPoolId();
+
+    Path file = new Path("/file");
+    DFSTestUtil.createFile(fs, file, 3 * BLOCK_SIZE, (short) 1, 0xFEED);
+    blocks = DFSTestUtil.getAllBlocks(fs, file);
+    assertEquals(3, blocks.size());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (fs != null) {
+      fs.close();
+      fs = null;
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+    NativeIO.POSIX.setCacheManipulator(prevCacheManipulator);
+  }
+
+  private long blockId(int index) {
+    return blocks.get(index).getBlock().getBlockId();
+  }
+
+  private void readShortCircuit(int index, int times) {
+    for (int i = 0; i < times; i++) {
+      fsd.onShortCircuitRead(bpid, blockId(index));
+    }
+  }
+
+  private void waitForCached(final int index, final boolean cached)
+      throws Exception {
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return fsd.isCached(bpid, blockId(index)) == cached;
+      }
+    }, 100, 60000);
+  }
+
+  @Test(timeout=120000)
+  public void testCacheAfterShortCircuitReads() throws Exception {
+    assertEquals(CACHE_CAPACITY - AUTO_CACHE_CAPACITY,
+        fsd.getCacheCapacity());
+
+    readShortCircuit(0, 1);
+    Thread.sleep(500);
+    assertFalse(fsd.isCached(bpid, blockId(0)));
+
+    readShortCircuit(0, 1);
+    waitForCached(0, true);
+    assertEquals(1, fsd.getNumBlocksCached());
+    // The NameNode does not see the block or the space it takes.
+    assertTrue(fsd.getCacheReport(bpid).isEmpty());
+    assertEquals(0, fsd.getCacheUsed());
+
+    // Once the NameNode asks for the block, it is reported.
+    fsd.cache(bpid, new long[] {blockId(0)});
+    assertEquals(1, fsd.getCacheReport(bpid).size());
+    assertEquals(BLOCK_SIZE, fsd.getCacheUsed());
+
+    fsd.uncache(bpid, new long[] {blockId(0)});
+    DFSTestUtil.verifyExpectedCacheUsage(0, 0, fsd);
+  }
+
+  @Test(timeout=120000)
+  public void testLeastRecentlyReadBlockIsUncached() throws Exception {
+    readShortCircuit(0, 2);
+    waitForCached(0, true);
+    readShortCircuit(1, 2);
+    waitForCached(1, true);
+
+    // Block 1 is now the least recently read, and makes room for block 2.
+    readShortCircuit(0, 1);
+    readShortCircuit(2, 2);
+    waitForCached(2, true);
+    waitForCached(1, false);
+    assertTrue(fsd.isCached(bpid, blockId(0)));
+    DFSTestUtil.verifyExpectedCacheUsage(0, 2, fsd);
+  }
+}
@@ -17,7 +17,9 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
@@ -32,7 +34,9 @@
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocolPB.DatanodeProtocolClientSideTranslatorPB;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
@@ -214,4 +218,50 @@ public void testReplaceReceivedBlock() throws InterruptedException, IOException
       cluster = null;
     }
   }
+
+  /**
+   * Ensure that an IBR is sent before the interval elapses once enough
+   * blocks are waiting to be reported.
+   */
+  @Test (timeout=60000)
+  public void testMaxPendingBlocks() throws IOException {
+    try {
+      IncrementalBlockReportManager ibrManager =
+          new IncrementalBlockReportManager(600000, 3);
+      DatanodeProtocol nn = Mockito.mock(DatanodeProtocol.class);
+      DataNodeMetrics metrics = Mockito.mock(DataNodeMetrics.class);
+      DatanodeStorage storage =
+          singletonDn.getFSDataset().getStorage(storageUuid);
+
+      ibrManager.notifyNamenodeBlock(new ReceivedDeletedBlockInfo(
+          new Block(1), BlockStatus.RECEIVED_BLOCK, null), storage, false);
+      ibrManager.sendIBRs(nn, null, "bpid", metrics);
+      assertEquals(0, ibrManager.getNumPendingBlocks());
+
+      // The interval has not elapsed since the last IBR.
+      for (long id = 2; id <= 3; id++) {
+        ibrManager.notifyNamenodeBlock(new ReceivedDeletedBlockInfo(
+            new Block(id), BlockStatus.RECEIVED_BLOCK, null), storage, false);
+      }
+      // Replacing a pending block does not add to the count.
+      ibrManager.notifyNamenodeBlock(new ReceivedDeletedBlockInfo(
+          new Block(3), BlockStatus.RECEIVED_BLOCK, null), storage, false);
+      assertEquals(2, ibrManager.getNumPendingBlocks());
+      assertFalse(ibrManager.sendImmediately());
+
+      ibrManager.notifyNamenodeBlock(new ReceivedDeletedBlockInfo(
+          new Block(4), BlockStatus.RECEIVED_BLOCK, null), storage, false);
+      assertTrue(ibrManager.sendImmediately());
+      ibrManager.sendIBRs(nn, null, "bpid", metrics);
+      assertEquals(0, ibrManager.getNumPendingBlocks());
+      assertFalse(ibrManager.sendImmediately());
+      Mockito.verify(nn, times(2)).blockReceivedAndDeleted(
+          any(DatanodeRegistration.class),
+          anyString(),
+          any(StorageReceivedDeletedBlocks[].class));
+    } finally {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
 }
@@ -238,6 +238,10 @@ public boolean isCached(String bpid, long blockId) {
     return false;
   }
 
+  @Override
+  public void onShortCircuitRead(String bpid, long blockId) {
+  }
+
   @Override
   public Set<StorageLocation> checkDataDir() {
     return null;
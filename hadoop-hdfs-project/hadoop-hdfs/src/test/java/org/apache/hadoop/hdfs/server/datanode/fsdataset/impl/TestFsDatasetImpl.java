@@ -43,9 +43,11 @@
 import org.apache.hadoop.hdfs.server.datanode.BlockScanner;
 import org.apache.hadoop.hdfs.server.datanode.DNConf;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
 import org.apache.hadoop.hdfs.server.datanode.DataStorage;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaAlreadyExistsException;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaHandler;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.hdfs.server.datanode.ShortCircuitRegistry;
@@ -87,6 +89,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
@@ -257,6 +260,144 @@ public void testAddVolumeWithSameStorageUuid() throws IOException {
     }
   }
 
+  @Test(timeout = 30000)
+  public void testConcurrentCreateRbw() throws Exception {
+    final ExtendedBlock duplicate = new ExtendedBlock(BLOCK_POOL_IDS[0], 0);
+    final CountDownLatch fileCreating = new CountDownLatch(1);
+    final CountDownLatch resume = new CountDownLatch(1);
+    final List<IOException> errors =
+        Collections.synchronizedList(new ArrayList<IOException>());
+    final Thread creator = new Thread() {
+      @Override
+      public void run() {
+        try (ReplicaHandler replica =
+            dataset.createRbw(StorageType.DEFAULT, duplicate, false)) {
+        } catch (IOException e) {
+          errors.add(e);
+        }
+      }
+    };
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void createRbwWithoutLock() throws IOException {
+        if (Thread.currentThread() == creator) {
+          fileCreating.countDown();
+          try {
+            resume.await();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+        }
+      }
+    });
+    try {
+      creator.start();
+      fileCreating.await();
+
+      // The first writer is creating its rbw file outside the lock, so a
+      // second writer of the same block is rejected.
+      try (ReplicaHandler replica =
+          dataset.createRbw(StorageType.DEFAULT, duplicate, false)) {
+        fail("Block " + duplicate + " should already be being created");
+      } catch (ReplicaAlreadyExistsException e) {
+        GenericTestUtils.assertExceptionContains("being created", e);
+      }
+      // Other blocks can still be created meanwhile.
+      ExtendedBlock other = new ExtendedBlock(BLOCK_POOL_IDS[0], 1);
+      try (ReplicaHandler replica =
+          dataset.createRbw(StorageType.DEFAULT, other, false)) {
+      }
+    } finally {
+      resume.countDown();
+      creator.join();
+      DataNodeFaultInjector.set(oldInjector);
+    }
+    assertTrue("Unexpected errors: " + errors, errors.isEmpty());
+    for (int i = 0; i <= 1; i++) {
+      ReplicaInfo replica = dataset.fetchReplicaInfo(BLOCK_POOL_IDS[0], i);
+      assertNotNull("Missing replica for block " + i, replica);
+      assertTrue(replica.blockDataExists());
+    }
+    assertEquals(2, dataset.volumeMap.size(BLOCK_POOL_IDS[0]));
+
+    // Once created, the block cannot be created again.
+    try (ReplicaHandler replica =
+        dataset.createRbw(StorageType.DEFAULT, duplicate, false)) {
+      fail("Block " + duplicate + " should already exist");
+    } catch (ReplicaAlreadyExistsException e) {
+      GenericTestUtils.assertExceptionContains("already exists", e);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRemoveVolumesDuringCreateRbw() throws Exception {
+    final ExtendedBlock block = new ExtendedBlock(BLOCK_POOL_IDS[0], 0);
+    final CountDownLatch fileCreating = new CountDownLatch(1);
+    final CountDownLatch resume = new CountDownLatch(1);
+    final List<IOException> errors =
+        Collections.synchronizedList(new ArrayList<IOException>());
+    final Thread creator = new Thread() {
+      @Override
+      public void run() {
+        try (ReplicaHandler replica =
+            dataset.createRbw(StorageType.DEFAULT, block, false)) {
+        } catch (IOException e) {
+          errors.add(e);
+        }
+      }
+    };
+    // Leave a single volume, so that the block is created on it.
+    final String[] dataDirs =
+        conf.get(DFSConfigKeys.DFS_DATANODE_DATA_DIR_KEY).split(",");
+    Set<StorageLocation> otherVolumes = new HashSet<>();
+    for (int i = 1; i < dataDirs.length; i++) {
+      otherVolumes.add(StorageLocation.parse(dataDirs[i]));
+    }
+    dataset.removeVolumes(otherVolumes, true);
+    final Set<StorageLocation> volumesToRemove =
+        Collections.singleton(StorageLocation.parse(dataDirs[0]));
+    final Thread remover = new Thread() {
+      @Override
+      public void run() {
+        dataset.removeVolumes(volumesToRemove, true);
+      }
+    };
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void createRbwWithoutLock() throws IOException {
+        fileCreating.countDown();
+        try {
+          resume.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+    });
+    try {
+      creator.start();
+      fileCreating.await();
+      // Removal waits for the creator to release its volume reference.
+      remover.start();
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return getNumVolumes() == 0;
+        }
+      }, 10, 10000);
+    } finally {
+      resume.countDown();
+      creator.join();
+      remover.join();
+      DataNodeFaultInjector.set(oldInjector);
+    }
+    assertEquals(1, errors.size());
+    GenericTestUtils.assertExceptionContains("was removed", errors.get(0));
+    assertNull(dataset.fetchReplicaInfo(BLOCK_POOL_IDS[0], 0));
+    assertEquals(0, dataset.volumeMap.size(BLOCK_POOL_IDS[0]));
+  }
+
   @Test(timeout = 30000)
   public void testRemoveVolumes() throws IOException {
     // Feed FsDataset with block metadata.
@@ -71,10 +71,11 @@ public static LocatedBlocks getBlockLocations(NameNode namenode,
   public static HdfsFileStatus getFileInfo(NameNode namenode, String src,
       boolean resolveLink) throws AccessControlException, UnresolvedLinkException,
         StandbyException, IOException {
+    FSDirectory fsd = namenode.getNamesystem().getFSDirectory();
+    FSPermissionChecker pc = fsd.getPermissionChecker();
     namenode.getNamesystem().readLock();
     try {
-      return FSDirStatAndListingOp.getFileInfo(namenode.getNamesystem()
-          .getFSDirectory(), src, resolveLink);
+      return FSDirStatAndListingOp.getFileInfo(fsd, pc, src, resolveLink);
     } finally {
       namenode.getNamesystem().readUnlock();
     }
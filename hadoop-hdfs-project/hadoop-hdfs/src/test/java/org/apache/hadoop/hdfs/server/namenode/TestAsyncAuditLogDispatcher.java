@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.AdditionalMatchers.geq;
+import static org.mockito.AdditionalMatchers.leq;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.impl.Log4JLogger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem.DefaultAuditLogger;
+import org.apache.hadoop.ipc.CallerContext;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.Time;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests for {@link AsyncAuditLogDispatcher}.
+ */
+public class TestAsyncAuditLogDispatcher {
+
+  private static void logEvent(AsyncAuditLogDispatcher dispatcher,
+      String src) throws Exception {
+    dispatcher.logAuditEvent(true, "bob", InetAddress.getLoopbackAddress(),
+        "open", src, null, null, null, null, null);
+  }
+
+  @Test(timeout = 60000)
+  public void testEventsAreDispatched() throws Exception {
+    DefaultAuditLogger logger = mock(DefaultAuditLogger.class);
+    AsyncAuditLogDispatcher dispatcher = new AsyncAuditLogDispatcher(
+        Collections.<AuditLogger>singletonList(logger), 16, true);
+    dispatcher.start();
+    try {
+      for (int i = 0; i < 100; i++) {
+        logEvent(dispatcher, "/file" + i);
+      }
+      verify(logger, timeout(30000).times(100)).logAuditEvent(eq(true),
+          eq("bob"), any(InetAddress.class), eq("open"), anyString(),
+          (String) any(), (FileStatus) any(), (CallerContext) any(),
+          (UserGroupInformation) any(),
+          (DelegationTokenSecretManager) any(), (String) any(), anyLong());
+      verify(logger).logAuditEvent(anyBoolean(), anyString(),
+          any(InetAddress.class), anyString(), eq("/file99"), (String) any(),
+          (FileStatus) any(), (CallerContext) any(),
+          (UserGroupInformation) any(),
+          (DelegationTokenSecretManager) any(), (String) any(), anyLong());
+    } finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testEventsAreDroppedWhenFull() throws Exception {
+    DefaultAuditLogger logger = mock(DefaultAuditLogger.class);
+    AsyncAuditLogDispatcher dispatcher = new AsyncAuditLogDispatcher(
+        Collections.<AuditLogger>singletonList(logger), 2, false);
+    // Without a running dispatch thread, nothing is taken off the queue.
+    for (int i = 0; i < 5; i++) {
+      logEvent(dispatcher, "/file" + i);
+    }
+    assertEquals(2, dispatcher.getPendingEventCount());
+
+    // Events still queued are logged when the dispatcher stops.
+    dispatcher.stop();
+    assertEquals(0, dispatcher.getPendingEventCount());
+    verify(logger, times(2)).logAuditEvent(anyBoolean(), anyString(),
+        any(InetAddress.class), anyString(), anyString(), (String) any(),
+        (FileStatus) any(), (CallerContext) any(),
+        (UserGroupInformation) any(),
+        (DelegationTokenSecretManager) any(), (String) any(), anyLong());
+  }
+
+  @Test(timeout = 60000)
+  public void testEventsAfterStop() throws Exception {
+    DefaultAuditLogger logger = mock(DefaultAuditLogger.class);
+    final AsyncAuditLogDispatcher dispatcher = new AsyncAuditLogDispatcher(
+        Collections.<AuditLogger>singletonList(logger), 1, true);
+    logEvent(dispatcher, "/file0");
+    // A handler waiting for room in the full queue.
+    final Thread blocked = new Thread() {
+      @Override
+      public void run() {
+        try {
+          logEvent(dispatcher, "/file1");
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    blocked.start();
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return blocked.getState() == Thread.State.TIMED_WAITING;
+      }
+    }, 10, 10000);
+
+    dispatcher.stop();
+    blocked.join();
+    // Events after stopping are logged right away, rather than waiting.
+    logEvent(dispatcher, "/file2");
+    logEvent(dispatcher, "/file3");
+    assertEquals(0, dispatcher.getPendingEventCount());
+    verify(logger, times(4)).logAuditEvent(anyBoolean(), anyString(),
+        any(InetAddress.class), anyString(), anyString(), (String) any(),
+        (FileStatus) any(), (CallerContext) any(),
+        (UserGroupInformation) any(),
+        (DelegationTokenSecretManager) any(), (String) any(), anyLong());
+  }
+
+  @Test(timeout = 60000)
+  public void testEventTimeIsCapturedOnHandler() throws Exception {
+    DefaultAuditLogger logger = mock(DefaultAuditLogger.class);
+    AsyncAuditLogDispatcher dispatcher = new AsyncAuditLogDispatcher(
+        Collections.<AuditLogger>singletonList(logger), 16, true);
+    long before = Time.now();
+    logEvent(dispatcher, "/file0");
+    long after = Time.now();
+    Thread.sleep(100);
+    // Logged only now, but with the time the event was queued.
+    dispatcher.stop();
+    verify(logger).logAuditEvent(anyBoolean(), anyString(),
+        any(InetAddress.class), anyString(), anyString(), (String) any(),
+        (FileStatus) any(), (CallerContext) any(),
+        (UserGroupInformation) any(),
+        (DelegationTokenSecretManager) any(), (String) any(),
+        and(geq(before), leq(after)));
+  }
+
+  @Test
+  public void testAuditLineHasEventTime() {
+    final List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+    AppenderSkeleton appender = new AppenderSkeleton() {
+      @Override
+      protected void append(LoggingEvent event) {
+        events.add(event);
+      }
+
+      @Override
+      public void close() {
+      }
+
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+    };
+    Logger auditLog = ((Log4JLogger) FSNamesystem.auditLog).getLogger();
+    Level level = auditLog.getLevel();
+    auditLog.setLevel(Level.INFO);
+    auditLog.addAppender(appender);
+    try {
+      DefaultAuditLogger logger = new DefaultAuditLogger();
+      logger.initialize(new Configuration());
+      logger.logAuditEvent(true, "bob", InetAddress.getLoopbackAddress(),
+          "open", "/file0", null, null, null, null, null, "rpc", 12345L);
+      assertEquals(1, events.size());
+      assertEquals(12345L, events.get(0).getTimeStamp());
+      assertTrue(events.get(0).getRenderedMessage().contains("src=/file0"));
+    } finally {
+      auditLog.removeAppender(appender);
+      auditLog.setLevel(level);
+    }
+  }
+
+  @Test
+  public void testCanDispatch() {
+    assertTrue(AsyncAuditLogDispatcher.canDispatch(new DefaultAuditLogger()));
+    assertFalse(AsyncAuditLogDispatcher.canDispatch(
+        mock(HdfsAuditLogger.class)));
+  }
+}
@@ -23,6 +23,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
@@ -43,6 +44,7 @@
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.LightWeightGSet;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -51,6 +53,7 @@
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -116,6 +119,19 @@ public void tearDown() throws Exception {
     }
   }
 
+  @Test
+  public void testINodeMapAllocationPercent() {
+    INodeMap inodeMap = INodeMap.newInstance(fsdir.getRoot(), 0.5f);
+    assertEquals(LightWeightGSet.computeCapacity(0.5f, "INodeMap"),
+        inodeMap.getCapacity());
+    assertTrue(inodeMap.getCapacity() <
+        INodeMap.newInstance(fsdir.getRoot(), 1.0f).getCapacity());
+
+    // Values below the minimum are raised to the minimum.
+    inodeMap = INodeMap.newInstance(fsdir.getRoot(), 0.0f);
+    assertTrue(inodeMap.getCapacity() > 0);
+  }
+
   /** Dump the tree, make some changes, and then dump the tree again. */
   @Test
   public void testDumpTree() throws Exception {
@@ -177,6 +193,38 @@ public void testSkipQuotaCheck() throws Exception {
     }
   }
   
+  @Test
+  public void testContentSummaryCache() throws Exception {
+    // The cache is disabled by default.
+    assertEquals(3, hdfs.getContentSummary(sub1).getFileCount());
+    DFSTestUtil.createFile(hdfs, file6, 1024, REPLICATION, seed);
+    assertEquals(1, hdfs.getContentSummary(sub2).getFileCount());
+    hdfs.delete(file6, false);
+    assertEquals(0, hdfs.getContentSummary(sub2).getFileCount());
+
+    cluster.getConfiguration(0).setLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_EXPIRY_MS_KEY, 3600 * 1000L);
+    cluster.restartNameNode();
+    hdfs = cluster.getFileSystem();
+    fsdir = cluster.getNamesystem().getFSDirectory();
+
+    assertEquals(0, hdfs.getContentSummary(sub2).getFileCount());
+    DFSTestUtil.createFile(hdfs, file6, 1024, REPLICATION, seed);
+    // The summary computed before the file was created is returned.
+    assertEquals(0, hdfs.getContentSummary(sub2).getFileCount());
+    // Files are not cached.
+    assertEquals(1, hdfs.getContentSummary(file6).getFileCount());
+    assertTrue(fsdir.getCachedContentSummary(
+        fsdir.getINode(sub2.toString()).asDirectory()) != null);
+
+    // Loading edits, as a standby does when tailing, drops the cache.
+    cluster.getNamesystem().getFSImage().loadEdits(
+        Collections.<EditLogInputStream>emptyList(), cluster.getNamesystem());
+    assertNull(fsdir.getCachedContentSummary(
+        fsdir.getINode(sub2.toString()).asDirectory()));
+    assertEquals(1, hdfs.getContentSummary(sub2).getFileCount());
+  }
+
   static void checkClassName(String line) {
     int i = line.lastIndexOf('(');
     int j = line.lastIndexOf('@');
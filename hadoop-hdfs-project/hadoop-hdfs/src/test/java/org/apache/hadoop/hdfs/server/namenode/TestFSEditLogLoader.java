@@ -19,6 +19,7 @@
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doNothing;
@@ -146,6 +147,43 @@ public void testDisplayRecentEditLogOpCodes() throws IOException {
     }
   }
   
+  /**
+   * Test that edits decoded ahead of being applied are replayed in order
+   * and each op is applied as it was read, when the NN restarts.
+   */
+  @Test
+  public void testReplayWithPrefetchedOps() throws IOException {
+    Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_OPS_KEY, 4);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(NUM_DATA_NODES)
+          .enableManagedDfsDirsRedundancy(false).build();
+      cluster.waitActive();
+      FileSystem fileSys = cluster.getFileSystem();
+      for (int i = 0; i < 50; i++) {
+        Path dir = new Path("/tmp/tmp" + i);
+        fileSys.mkdirs(dir);
+        fileSys.setPermission(dir, new FsPermission((short) (0700 + i % 8)));
+      }
+      fileSys.delete(new Path("/tmp/tmp0"), true);
+
+      cluster.restartNameNode();
+      fileSys = cluster.getFileSystem();
+      assertFalse(fileSys.exists(new Path("/tmp/tmp0")));
+      for (int i = 1; i < 50; i++) {
+        Path dir = new Path("/tmp/tmp" + i);
+        assertTrue("Should exist: " + dir, fileSys.exists(dir));
+        assertEquals(new FsPermission((short) (0700 + i % 8)),
+            fileSys.getFileStatus(dir).getPermission());
+      }
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   /**
    * Test that, if the NN restarts with a new minimum replication,
    * any files created with the old replication count will get
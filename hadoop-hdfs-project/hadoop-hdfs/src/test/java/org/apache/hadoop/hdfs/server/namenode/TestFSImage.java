@@ -29,6 +29,7 @@
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.EnumSet;
 
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -58,6 +59,7 @@
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.BlockUCState;
 import org.apache.hadoop.hdfs.server.namenode.LeaseManager.Lease;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.FileSummary;
 import org.apache.hadoop.hdfs.server.namenode.NNStorage.NameNodeDirType;
 import org.apache.hadoop.hdfs.util.MD5FileUtils;
 import org.apache.hadoop.test.GenericTestUtils;
@@ -89,6 +91,85 @@ public void testCompression() throws IOException {
     testPersistHelper(conf);
   }
 
+  @Test
+  public void testParallelSaveAndLoad() throws IOException {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 0);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY, 2);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 2);
+    testPersistHelper(conf);
+  }
+
+  /**
+   * Ensure that the inode sections of an image are split into sub-sections
+   * when parallel loading is enabled, and that such an image can still be
+   * loaded serially.
+   */
+  @Test
+  public void testImageSubSections() throws IOException {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 0);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY, 4);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        Path dir = new Path("/dir" + i);
+        fs.mkdirs(dir);
+        for (int j = 0; j < 2; j++) {
+          fs.create(new Path(dir, "file" + j)).close();
+        }
+      }
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+
+      File currentDir = FSImageTestUtil.getNameNodeCurrentDirs(cluster, 0).get(
+          0);
+      File fsimage = FSImageTestUtil.findNewestImageFile(currentDir
+          .getAbsolutePath());
+      int inodeSubSections = 0;
+      int inodeDirSubSections = 0;
+      RandomAccessFile raFile = new RandomAccessFile(fsimage, "r");
+      try {
+        for (FileSummary.Section s :
+            FSImageUtil.loadSummary(raFile).getSectionsList()) {
+          if (FSImageFormatProtobuf.SectionName.INODE_SUB ==
+              FSImageFormatProtobuf.SectionName.fromString(s.getName())) {
+            inodeSubSections++;
+          } else if (FSImageFormatProtobuf.SectionName.INODE_DIR_SUB ==
+              FSImageFormatProtobuf.SectionName.fromString(s.getName())) {
+            inodeDirSubSections++;
+          }
+        }
+      } finally {
+        raFile.close();
+      }
+      assertTrue(inodeSubSections > 1);
+      // The directory section is split by the number of directories, so it
+      // is cut into about as many sub-sections as the inode section.
+      assertTrue("Only " + inodeDirSubSections + " directory sub-sections",
+          inodeDirSubSections >= 4);
+
+      // The image with sub-sections can be loaded serially too.
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, false);
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        assertEquals(2, fs.listStatus(new Path("/dir" + i)).length);
+      }
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   private void testPersistHelper(Configuration conf) throws IOException {
     MiniDFSCluster cluster = null;
     try {